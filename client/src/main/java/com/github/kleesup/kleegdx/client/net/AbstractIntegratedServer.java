@@ -4,12 +4,21 @@ import com.esotericsoftware.kryonet.Connection;
 import com.esotericsoftware.kryonet.Listener;
 import com.github.kleesup.kleegdx.core.net.GameServer;
 import com.github.kleesup.kleegdx.core.net.packet.PacketQueue;
+import com.github.kleesup.kleegdx.core.net.transport.LoopbackTransport;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.io.IOException;
+
 /**
  * An implementation of {@link GameServer} that can be used for SinglePlayer and localhost implementations.
  * To make network games less complicated, it is mostly easier to use an integrated server into the application.
+ * <p>
+ * Besides {@link #processDirectly(Object)}, local clients can connect through the {@link #getLoopback() loopback
+ * transport} which is opened when the server starts (see {@link LoopbackCommunicator}). Such clients get a regular
+ * connection and are handled by the same listeners as remote clients, so integrated and remote servers share one
+ * code path.
+ * </p>
  */
 public abstract class AbstractIntegratedServer extends GameServer {
 
@@ -25,13 +34,13 @@ public abstract class AbstractIntegratedServer extends GameServer {
         }
         @Override
         public void update(float delta) {
-            if(server.allListeners.isEmpty())return;
+            if(server.listenerGroup.isEmpty())return;
             Object obj;
             int reads = 0;
             Connection host = server.host instanceof Connection ? (Connection) server.host : null;
             while (reads <= getMaxPacketsPerRead() && (obj = poll()) != null) {
                 reads++;
-                for(Listener listener : server.allListeners) listener.received(host, obj);
+                for(Listener listener : server.listenerGroup.getListeners()) listener.received(host, obj);
             }
         }
         @Override
@@ -41,9 +50,12 @@ public abstract class AbstractIntegratedServer extends GameServer {
     @Setter @Getter
     private Object host;
     private final HostQueue hostQueue;
+    @Getter
+    private final LoopbackTransport loopback;
     public AbstractIntegratedServer(boolean useUDP, int maxHostPacketsPerRead) {
         super(useUDP);
         this.hostQueue = new HostQueue(this, maxHostPacketsPerRead);
+        this.loopback = new LoopbackTransport();
     }
     public AbstractIntegratedServer(boolean useUDP) {
         this(useUDP, 50);
@@ -58,6 +70,20 @@ public abstract class AbstractIntegratedServer extends GameServer {
         }
     }
 
+    @Override
+    public void start() {
+        super.start();
+        if(!getTransports().contains(loopback))openLoopback();
+    }
+
+    private void openLoopback(){
+        try {
+            openTransport(loopback);
+        } catch (IOException e) { //never thrown by loopback transports
+            throw new RuntimeException(e);
+        }
+    }
+
     /* -- Listeners and packet processing -- */
 
     /**
@@ -73,7 +99,7 @@ public abstract class AbstractIntegratedServer extends GameServer {
         if(updatesAutomatically){ //give to queue
             hostQueue.add(obj);
         }else{
-            for(Listener listener : allListeners)
+            for(Listener listener : listenerGroup.getListeners())
                 listener.received(host instanceof Connection ? (Connection) host : null, obj);
         }
     }
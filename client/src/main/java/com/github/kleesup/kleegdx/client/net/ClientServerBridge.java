@@ -4,6 +4,8 @@ import com.esotericsoftware.kryonet.Client;
 import com.esotericsoftware.kryonet.Connection;
 import com.github.kleesup.kleegdx.core.net.packet.IPacketQueueable;
 import com.github.kleesup.kleegdx.core.net.packet.TypePacketProcessor;
+import com.github.kleesup.kleegdx.core.net.sync.ClockSync;
+import com.github.kleesup.kleegdx.core.net.transport.LoopbackTransport;
 import lombok.Getter;
 
 import java.util.function.Consumer;
@@ -65,6 +67,22 @@ public abstract class ClientServerBridge implements Communicator, IPacketQueueab
         this.canReceivePackets = true;
     }
 
+    /**
+     * Builds a bridge that connects to a server in the same JVM through a loopback transport, e.g.
+     * {@link AbstractIntegratedServer#getLoopback()}. The server handles this client like a remote one. This will use
+     * the {@link LoopbackCommunicator}.
+     * @param transport The opened transport of the server.
+     * @param maxPacketsPerRead The max amount of packets that will be read per {@link #update(float)}.
+     */
+    public ClientServerBridge(LoopbackTransport transport, int maxPacketsPerRead){
+        LoopbackCommunicator loopback = new LoopbackCommunicator(transport, maxPacketsPerRead);
+        loopback.onConnect(connection -> onConnect());
+        loopback.onDisconnect(connection -> onDisconnect());
+        this.communicator = loopback;
+        registerIncomingPackets(loopback);
+        this.canReceivePackets = true;
+    }
+
     /**
      * Builds a new bridge that connects to a local integrated server. This will use the {@link LocalCommunicator}.
      * @param server The local server instance to use.
@@ -144,6 +162,36 @@ public abstract class ClientServerBridge implements Communicator, IPacketQueueab
         return communicator.isConnected();
     }
 
+    @Override
+    public ClockSync getClockSync() {
+        return communicator.getClockSync();
+    }
+
+    @Override
+    public long getRoundTripNanos() {
+        return communicator.getRoundTripNanos();
+    }
+
+    @Override
+    public long getJitterNanos() {
+        return communicator.getJitterNanos();
+    }
+
+    @Override
+    public long getClockOffsetNanos() {
+        return communicator.getClockOffsetNanos();
+    }
+
+    @Override
+    public double getEstimatedServerTick() {
+        return communicator.getEstimatedServerTick();
+    }
+
+    @Override
+    public long getArrivalTick() {
+        return communicator.getArrivalTick();
+    }
+
     @Override
     public void dispose() {
         communicator.dispose();
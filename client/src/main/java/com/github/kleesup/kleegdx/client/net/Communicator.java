@@ -1,11 +1,16 @@
 package com.github.kleesup.kleegdx.client.net;
 
 import com.badlogic.gdx.utils.Disposable;
+import com.github.kleesup.kleegdx.core.net.sync.ClockSync;
 import com.github.kleesup.kleegdx.core.util.Updateable;
 
 /**
  * Simple base interface for a client implementation that can communicate to a server instance.
  * It can be implemented to send both TCP and UDP packets.
+ * <p>
+ * Communicators that measure the connection via a {@link ClockSync} expose the round-trip time, jitter and the
+ * estimated server tick. Without measurement, the latency is reported as {@code 0} and the server tick as unknown.
+ * </p>
  */
 public interface Communicator extends Updateable, Disposable {
 
@@ -26,4 +31,54 @@ public interface Communicator extends Updateable, Disposable {
      */
     boolean isConnected();
 
+    /* -- Network quality -- */
+
+    /**
+     * @return The clock synchronization of this communicator or {@code null} if it does not measure the connection.
+     */
+    default ClockSync getClockSync(){
+        return null;
+    }
+
+    /**
+     * @return The smoothed round-trip time to the server in nanoseconds.
+     */
+    default long getRoundTripNanos(){
+        ClockSync sync = getClockSync();
+        return sync != null ? sync.getRoundTripNanos() : 0;
+    }
+
+    /**
+     * @return The mean deviation of the round-trip time in nanoseconds.
+     */
+    default long getJitterNanos(){
+        ClockSync sync = getClockSync();
+        return sync != null ? sync.getJitterNanos() : 0;
+    }
+
+    /**
+     * @return The estimated difference between the server clock and the client clock in nanoseconds.
+     */
+    default long getClockOffsetNanos(){
+        ClockSync sync = getClockSync();
+        return sync != null ? sync.getClockOffsetNanos() : 0;
+    }
+
+    /**
+     * @return The estimated current server tick including the fraction of the running tick or {@code -1} if unknown.
+     */
+    default double getEstimatedServerTick(){
+        ClockSync sync = getClockSync();
+        return sync != null ? sync.getEstimatedServerTick(System.nanoTime()) : -1;
+    }
+
+    /**
+     * @return The first server tick that can handle a packet sent now or {@code -1} if unknown, see
+     * {@link ClockSync#getArrivalTick(long)}.
+     */
+    default long getArrivalTick(){
+        ClockSync sync = getClockSync();
+        return sync != null ? sync.getArrivalTick(System.nanoTime()) : -1;
+    }
+
 }
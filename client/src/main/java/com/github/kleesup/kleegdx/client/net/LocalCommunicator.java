@@ -33,6 +33,19 @@ public class LocalCommunicator implements Communicator {
         return server.isServerRunning();
     }
 
+    /**
+     * @return The current tick of the integrated server, as there is no latency.
+     */
+    @Override
+    public double getEstimatedServerTick() {
+        return server.getTick();
+    }
+
+    @Override
+    public long getArrivalTick() {
+        return server.getTick();
+    }
+
     @Override
     public void update(float delta) {}
 
@@ -0,0 +1,89 @@
+package com.github.kleesup.kleegdx.client.net;
+
+import com.esotericsoftware.kryonet.Connection;
+import com.github.kleesup.kleegdx.core.net.listener.QueuedTypeListenerClient;
+import com.github.kleesup.kleegdx.core.net.sync.ClockSync;
+import com.github.kleesup.kleegdx.core.net.sync.TimePong;
+import com.github.kleesup.kleegdx.core.net.transport.LoopbackConnection;
+import com.github.kleesup.kleegdx.core.net.transport.LoopbackTransport;
+import com.github.kleesup.kleegdx.core.util.Verify;
+import lombok.Getter;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Implementation of {@link Communicator} which connects to a server in the same JVM through a
+ * {@link LoopbackTransport}. Contrary to {@link LocalCommunicator}, the server sees a regular connection, so the same
+ * listeners handle local and remote clients. This makes it possible to connect many simulated clients in a single JVM,
+ * e.g. for tests and benchmarks.
+ * <p>
+ * Like {@link RemoteCommunicator}, received packets are queued and need to be registered first via
+ * {@link #register(Class, BiConsumer)}. The connection can be measured with a {@link ClockSync} as well (see
+ * {@link #setClockSyncEnabled(boolean)}), which is useful to check the overhead of the server tick on the round-trip
+ * time. The server needs a {@link com.github.kleesup.kleegdx.core.net.sync.TimeSyncResponder} to answer.
+ * </p>
+ */
+@Getter
+public class LoopbackCommunicator extends QueuedTypeListenerClient implements Communicator {
+
+    private final ClockSync clockSync = new ClockSync(false);
+    private volatile boolean clockSyncEnabled;
+    private final LoopbackConnection connection;
+    public LoopbackCommunicator(LoopbackTransport transport, int maxPacketsPerRead){
+        super(maxPacketsPerRead);
+        Verify.nonNullArg(transport, "Transport cannot be null!");
+        this.connection = transport.connect(this);
+    }
+
+    /* -- Clock sync -- */
+
+    /**
+     * Enables or disables pinging the server. Disabled by default, as the server has to answer the pings.
+     * @param enabled {@code true} to measure the connection, {@code false} otherwise.
+     */
+    public void setClockSyncEnabled(boolean enabled){
+        this.clockSyncEnabled = enabled;
+    }
+
+    public boolean isClockSyncEnabled(){
+        return clockSyncEnabled;
+    }
+
+    @Override
+    public void update(float delta) {
+        if(clockSyncEnabled && connection.isConnected())clockSync.update(System.nanoTime(), connection::sendToServer);
+        super.update(delta);
+    }
+
+    @Override
+    public void received(Connection connection, Object object) {
+        if(object instanceof TimePong){
+            clockSync.onPong((TimePong) object, System.nanoTime());
+            return;
+        }
+        super.received(connection, object);
+    }
+
+    /* -- Communicator implementation -- */
+
+    @Override
+    public void sendTCP(Object obj) {
+        connection.sendToServer(obj);
+    }
+
+    @Override
+    public void sendUPD(Object obj) {
+        connection.sendToServer(obj);
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connection.isConnected();
+    }
+
+    @Override
+    public void dispose() {
+        connection.close();
+    }
+
+}
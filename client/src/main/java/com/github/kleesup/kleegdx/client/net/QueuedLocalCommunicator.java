@@ -1,14 +1,20 @@
 package com.github.kleesup.kleegdx.client.net;
 
 import com.github.kleesup.kleegdx.core.net.NetParticipant;
+import com.github.kleesup.kleegdx.core.net.SerializedPacket;
 import com.github.kleesup.kleegdx.core.net.listener.QueuedTypeListenerClient;
 import com.github.kleesup.kleegdx.core.net.packet.IPacketQueueable;
+import com.github.kleesup.kleegdx.core.net.packet.PooledPacket;
 import lombok.Getter;
 
 /**
  * An implementation of {@link LocalCommunicator} that queues packets incoming from the integrated server directly
  * without net overhead. This class also implements {@link NetParticipant} so it can be registered somewhere on the
  * server site to send packets to. Packets send to this participant will be queued instantly.
+ * <p>
+ * As packets are queued by reference, pooled packets are retained for the local queue (see
+ * {@link PooledPacket#share(Object)}), so the server can forward or broadcast a packet it is still handling.
+ * </p>
  */
 @Getter
 public class QueuedLocalCommunicator extends LocalCommunicator implements NetParticipant, IPacketQueueable {
@@ -33,12 +39,22 @@ public class QueuedLocalCommunicator extends LocalCommunicator implements NetPar
      */
     @Override
     public void send(Object obj, boolean udp) {
-        listener.queuePacket(obj);
+        listener.queuePacket(PooledPacket.share(obj));
+    }
+
+    /**
+     * Queues the original packet directly, so shared packets never have to be serialized for this participant.
+     * @param packet The wrapped packet.
+     * @param udp Whether to use UDP.
+     */
+    @Override
+    public void sendSerialized(SerializedPacket packet, boolean udp) {
+        listener.queuePacket(PooledPacket.share(packet.getPacket()));
     }
 
     @Override
     public void queuePacket(Object obj) {
-        listener.queuePacket(obj);
+        listener.queuePacket(PooledPacket.share(obj));
     }
 
     @Override
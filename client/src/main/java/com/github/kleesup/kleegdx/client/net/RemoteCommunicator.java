@@ -1,6 +1,11 @@
 package com.github.kleesup.kleegdx.client.net;
 
+import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryonet.Client;
+import com.esotericsoftware.kryonet.Connection;
+import com.github.kleesup.kleegdx.core.net.sync.ClockSync;
+import com.github.kleesup.kleegdx.core.net.sync.TimePing;
+import com.github.kleesup.kleegdx.core.net.sync.TimePong;
 import com.github.kleesup.kleegdx.core.net.listener.QueuedTypeListenerClient;
 import com.github.kleesup.kleegdx.core.util.Verify;
 import lombok.Getter;
@@ -15,17 +20,30 @@ import java.util.function.BiConsumer;
  * In contrary to {@link LocalCommunicator}, this class extends from a listener, the {@link QueuedTypeListenerClient}.
  * This means to be able to read packets, they need to be registered first via {@link #register(Class, BiConsumer)}.
  * </p>
+ * <p>
+ * Once enabled via {@link #setClockSyncEnabled(boolean)}, the communicator pings the server regularly to measure the
+ * connection (see {@link ClockSync}). Pongs are evaluated on the network thread as soon as they arrive. This requires
+ * the time sync packets to be registered on both sides (see
+ * {@link com.github.kleesup.kleegdx.core.serialize.KryoRegisterer#registerTimeSyncPackets()}) and a
+ * {@link com.github.kleesup.kleegdx.core.net.sync.TimeSyncResponder} on the server, otherwise the pings are unknown
+ * packets to the server.
+ * </p>
  */
 @Getter
 public class RemoteCommunicator extends QueuedTypeListenerClient implements Communicator{
 
     private boolean ownsClient;
     private final Client client;
+    private final boolean udp;
+    private final ClockSync clockSync;
+    private volatile boolean clockSyncEnabled;
     public RemoteCommunicator(Client clientObj, String host, int port, boolean udp, int maxPacketsPerRead){
         super(maxPacketsPerRead);
         Verify.nonNullArg(clientObj, "Client cannot be null!");
         ownsClient = true;
         this.client = clientObj;
+        this.udp = udp;
+        this.clockSync = new ClockSync(udp);
         this.client.addListener(this);
         this.client.start();
         try {
@@ -40,6 +58,53 @@ public class RemoteCommunicator extends QueuedTypeListenerClient implements Comm
         ownsClient = false;
     }
 
+    private static boolean isRegistered(Kryo kryo, Class<?> clazz){
+        return kryo.getClassResolver().getRegistration(clazz) != null;
+    }
+
+    /* -- Clock sync -- */
+
+    /**
+     * Enables or disables pinging the server. Disabled by default, as the server has to answer the pings.
+     * @param enabled {@code true} to measure the connection, {@code false} otherwise.
+     * @throws IllegalArgumentException If enabling while the time sync packets are not registered.
+     */
+    public void setClockSyncEnabled(boolean enabled){
+        Verify.checkArg(enabled && !(isRegistered(client.getKryo(), TimePing.class) &&
+                isRegistered(client.getKryo(), TimePong.class)), "Time sync packets are not registered!");
+        this.clockSyncEnabled = enabled;
+    }
+
+    public boolean isClockSyncEnabled(){
+        return clockSyncEnabled;
+    }
+
+    @Override
+    public void update(float delta) {
+        if(clockSyncEnabled && client.isConnected())clockSync.update(System.nanoTime(), this::sendPing);
+        super.update(delta);
+    }
+
+    private void sendPing(Object ping){
+        if(udp)client.sendUDP(ping);
+        else client.sendTCP(ping);
+    }
+
+    @Override
+    public void received(Connection connection, Object object) {
+        if(object instanceof TimePong){
+            clockSync.onPong((TimePong) object, System.nanoTime());
+            return;
+        }
+        super.received(connection, object);
+    }
+
+    @Override
+    public void disconnected(Connection connection) {
+        clockSync.reset();
+        super.disconnected(connection);
+    }
+
     /* -- Communicator implementation -- */
 
     @Override
@@ -0,0 +1,181 @@
+package com.github.kleesup.kleegdx.client.net.interpolation;
+
+import com.badlogic.gdx.utils.IntMap;
+import com.badlogic.gdx.utils.Pool;
+import com.github.kleesup.kleegdx.client.net.Communicator;
+import com.github.kleesup.kleegdx.core.util.Verify;
+import lombok.Getter;
+
+/**
+ * Renders remote entities a fixed delay behind the server time, so states received with jitter can be interpolated
+ * smoothly instead of being applied as soon as they are handled. Every entity has its own {@link InterpolationBuffer},
+ * buffers of removed entities are pooled.
+ * <p>
+ * Times are measured in server ticks, e.g. the tick a state was captured at and the estimated server tick of
+ * {@link Communicator#getEstimatedServerTick()}. The delay should cover the interval between two states plus the
+ * jitter of the connection, otherwise states are extrapolated regularly.
+ * </p>
+ * <pre>{@code
+ *     //packet handler
+ *     interpolator.add(packet.entityId, packet.tick, packet.values, 0);
+ *     //render loop
+ *     interpolator.update(bridge);
+ *     for(Entity entity : entities){
+ *         if(interpolator.sample(entity.id, values, 0))entity.setPosition(values[0], values[1]);
+ *     }
+ * }</pre>
+ * <p>
+ * This class is not thread-safe, states should be added and sampled by the same thread.
+ * </p>
+ */
+public class EntityInterpolator {
+
+    /** Default render delay in ticks. */
+    public static final double DEFAULT_DELAY = 2;
+    /** Default amount of states kept per entity. */
+    public static final int DEFAULT_CAPACITY = 16;
+
+    private final IntMap<InterpolationBuffer> buffers = new IntMap<>();
+    private final Pool<InterpolationBuffer> pool;
+    @Getter
+    private final int components;
+    private final boolean[] angles;
+    @Getter
+    private double delay = DEFAULT_DELAY;
+    @Getter
+    private double maxExtrapolation;
+    @Getter
+    private double renderTime = Double.NaN;
+
+    /**
+     * Builds a new interpolator.
+     * @param components The amount of components per state, must be greater than {@code 0}.
+     * @param capacity The amount of states kept per entity, must be at least {@code 2}.
+     */
+    public EntityInterpolator(int components, int capacity){
+        Verify.checkArg(components <= 0, "Components must be greater than 0!");
+        Verify.checkArg(capacity < 2, "Capacity must be at least 2!");
+        this.components = components;
+        this.angles = new boolean[components];
+        this.pool = new Pool<InterpolationBuffer>() {
+            @Override
+            protected InterpolationBuffer newObject() {
+                return new InterpolationBuffer(capacity, components);
+            }
+        };
+    }
+    public EntityInterpolator(int components){
+        this(components, DEFAULT_CAPACITY);
+    }
+
+    /* -- Configuration -- */
+
+    /**
+     * @param delay The time the render time stays behind the server time, must not be negative.
+     */
+    public void setDelay(double delay){
+        Verify.checkArg(delay < 0, "Delay cannot be negative!");
+        this.delay = delay;
+    }
+
+    /**
+     * @param maxExtrapolation The max time after the newest state of an entity which is extrapolated, {@code 0} to
+     *                         hold the newest state instead.
+     */
+    public void setMaxExtrapolation(double maxExtrapolation){
+        Verify.checkArg(maxExtrapolation < 0, "Max extrapolation cannot be negative!");
+        this.maxExtrapolation = maxExtrapolation;
+        for(InterpolationBuffer buffer : buffers.values()) buffer.setMaxExtrapolation(maxExtrapolation);
+    }
+
+    /**
+     * Marks a component as angle in radians, which is interpolated along the shortest direction.
+     * @param component The index of the component.
+     * @param angle {@code true} if the component is an angle.
+     */
+    public void setAngle(int component, boolean angle){
+        angles[component] = angle;
+        for(InterpolationBuffer buffer : buffers.values()) buffer.setAngle(component, angle);
+    }
+
+    /* -- Entities -- */
+
+    /**
+     * Adds a received state of an entity.
+     * @param entityId The id of the entity.
+     * @param time The time of the state, e.g. the server tick it was captured at.
+     * @param state The array containing the components.
+     * @param offset The index of the first component in the array.
+     * @return {@code true} if the state was added, {@code false} if it is outdated.
+     */
+    public boolean add(int entityId, double time, float[] state, int offset){
+        InterpolationBuffer buffer = buffers.get(entityId);
+        if(buffer == null){
+            buffer = pool.obtain();
+            buffer.setMaxExtrapolation(maxExtrapolation);
+            for(int i = 0; i < components; i++) buffer.setAngle(i, angles[i]);
+            buffers.put(entityId, buffer);
+        }
+        return buffer.add(time, state, offset);
+    }
+
+    /**
+     * Removes an entity, e.g. when it was destroyed or left the area of interest.
+     * @param entityId The id of the entity.
+     */
+    public void remove(int entityId){
+        InterpolationBuffer buffer = buffers.remove(entityId);
+        if(buffer != null)pool.free(buffer);
+    }
+
+    public void clear(){
+        for(InterpolationBuffer buffer : buffers.values()) pool.free(buffer);
+        buffers.clear();
+    }
+
+    /**
+     * @param entityId The id of the entity.
+     * @return The buffer of the entity or {@code null} if no state was added.
+     */
+    public InterpolationBuffer getBuffer(int entityId){
+        return buffers.get(entityId);
+    }
+
+    public int size(){
+        return buffers.size;
+    }
+
+    /* -- Rendering -- */
+
+    /**
+     * Sets the render time to the given server time minus the delay. Should be called once per frame.
+     * @param serverTime The current server time.
+     */
+    public void update(double serverTime){
+        this.renderTime = serverTime - delay;
+    }
+
+    /**
+     * Sets the render time based on the estimated server tick of a communicator. If the server tick is not known yet,
+     * the render time is left unchanged.
+     * @param communicator The communicator measuring the connection.
+     */
+    public void update(Communicator communicator){
+        double tick = communicator.getEstimatedServerTick();
+        if(tick >= 0)update(tick);
+    }
+
+    /**
+     * Samples an entity at the current render time.
+     * @param entityId The id of the entity.
+     * @param out The array to write the components to.
+     * @param offset The index of the first component in the array.
+     * @return {@code true} if a state was written, {@code false} if the entity has no states or no render time is set.
+     */
+    public boolean sample(int entityId, float[] out, int offset){
+        if(Double.isNaN(renderTime))return false;
+        InterpolationBuffer buffer = buffers.get(entityId);
+        return buffer != null && buffer.sample(renderTime, out, offset);
+    }
+
+}
@@ -0,0 +1,179 @@
+package com.github.kleesup.kleegdx.client.net.interpolation;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.Pool;
+import com.github.kleesup.kleegdx.core.util.Verify;
+import lombok.Getter;
+
+/**
+ * Time indexed ring buffer of the received states of one remote entity. A state is a fixed amount of float components
+ * (e.g. x, y and rotation). All data is stored in primitive arrays allocated once, so adding and sampling do not
+ * allocate.
+ * <p>
+ * States have to be added in order of their time, older or equal states are ignored (e.g. reordered UDP packets).
+ * {@link #sample(double, float[], int)} interpolates between the two states around the requested time and
+ * extrapolates linearly from the two newest states if the time is after the newest one, at most by
+ * {@link #getMaxExtrapolation()}.
+ * </p>
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ */
+public class InterpolationBuffer implements Pool.Poolable {
+
+    private final double[] times;
+    private final float[] values;
+    private final boolean[] angles;
+    @Getter
+    private final int components;
+    private int head, size;
+    /** Max time after the newest state which is extrapolated. */
+    @Getter
+    private double maxExtrapolation;
+
+    /* -- Statistics -- */
+    @Getter
+    private long outdatedStates;
+
+    /**
+     * Builds a new buffer.
+     * @param capacity The amount of stored states, must be at least {@code 2}.
+     * @param components The amount of components per state, must be greater than {@code 0}.
+     */
+    public InterpolationBuffer(int capacity, int components){
+        Verify.checkArg(capacity < 2, "Capacity must be at least 2!");
+        Verify.checkArg(components <= 0, "Components must be greater than 0!");
+        this.times = new double[capacity];
+        this.values = new float[capacity * components];
+        this.angles = new boolean[components];
+        this.components = components;
+    }
+
+    /**
+     * Marks a component as angle in radians, which is interpolated along the shortest direction.
+     * @param component The index of the component.
+     * @param angle {@code true} if the component is an angle.
+     */
+    public void setAngle(int component, boolean angle){
+        angles[component] = angle;
+    }
+
+    /**
+     * @param maxExtrapolation The max time after the newest state which is extrapolated, {@code 0} to hold the newest
+     *                         state instead.
+     */
+    public void setMaxExtrapolation(double maxExtrapolation){
+        Verify.checkArg(maxExtrapolation < 0, "Max extrapolation cannot be negative!");
+        this.maxExtrapolation = maxExtrapolation;
+    }
+
+    /* -- Adding -- */
+
+    /**
+     * Adds a state as the newest one. If the buffer is full, the oldest state is overwritten.
+     * @param time The time of the state, e.g. the server tick it was captured at.
+     * @param state The array containing the components.
+     * @param offset The index of the first component in the array.
+     * @return {@code true} if the state was added, {@code false} if it is not newer than the newest state.
+     */
+    public boolean add(double time, float[] state, int offset){
+        if(size > 0 && time <= times[index(size - 1)]){
+            outdatedStates++;
+            return false;
+        }
+        if(size == times.length){
+            head = (head + 1) % times.length;
+            size--;
+        }
+        int index = index(size);
+        times[index] = time;
+        System.arraycopy(state, offset, values, index * components, components);
+        size++;
+        return true;
+    }
+
+    /* -- Sampling -- */
+
+    /**
+     * Computes the state at a time and discards states that are no longer needed for later times.
+     * @param time The time to sample, usually the render time behind the server time.
+     * @param out The array to write the components to.
+     * @param offset The index of the first component in the array.
+     * @return {@code true} if a state was written, {@code false} if the buffer is empty.
+     */
+    public boolean sample(double time, float[] out, int offset){
+        if(size == 0)return false;
+        //keep the newest state that is older than the time as start of the interpolation
+        while (size > 2 && times[index(1)] <= time) {
+            head = (head + 1) % times.length;
+            size--;
+        }
+        int newest = index(size - 1);
+        if(size == 1 || time <= times[head]){
+            System.arraycopy(values, (time <= times[head] ? head : newest) * components, out, offset, components);
+            return true;
+        }
+        int from, to;
+        if(time >= times[newest]){
+            //extrapolate from the two newest states
+            from = index(size - 2);
+            to = newest;
+            time = Math.min(time, times[newest] + maxExtrapolation);
+        }else{
+            from = head;
+            to = index(1);
+        }
+        double alpha = (time - times[from]) / (times[to] - times[from]);
+        interpolate(from, to, (float) alpha, out, offset);
+        return true;
+    }
+
+    private void interpolate(int from, int to, float alpha, float[] out, int offset){
+        int a = from * components, b = to * components;
+        for(int i = 0; i < components; i++){
+            float start = values[a + i], end = values[b + i];
+            if(angles[i]){
+                float diff = (end - start) % MathUtils.PI2;
+                if(diff > MathUtils.PI)diff -= MathUtils.PI2;
+                else if(diff < -MathUtils.PI)diff += MathUtils.PI2;
+                out[offset + i] = start + diff * alpha;
+            }else{
+                out[offset + i] = start + (end - start) * alpha;
+            }
+        }
+    }
+
+    private int index(int i){
+        return (head + i) % times.length;
+    }
+
+    /* -- Getter -- */
+
+    /**
+     * @return The time of the newest state or {@link Double#NaN} if the buffer is empty.
+     */
+    public double getNewestTime(){
+        return size == 0 ? Double.NaN : times[index(size - 1)];
+    }
+
+    /**
+     * @return The time of the oldest state or {@link Double#NaN} if the buffer is empty.
+     */
+    public double getOldestTime(){
+        return size == 0 ? Double.NaN : times[head];
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public int getCapacity(){
+        return times.length;
+    }
+
+    @Override
+    public void reset() {
+        head = size = 0;
+        outdatedStates = 0;
+    }
+}
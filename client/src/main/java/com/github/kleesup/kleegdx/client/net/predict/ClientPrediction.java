@@ -0,0 +1,174 @@
+package com.github.kleesup.kleegdx.client.net.predict;
+
+import com.github.kleesup.kleegdx.client.net.Communicator;
+import com.github.kleesup.kleegdx.core.net.predict.ISequencedInput;
+import com.github.kleesup.kleegdx.core.net.predict.InputTracker;
+import com.github.kleesup.kleegdx.core.util.Verify;
+import lombok.Getter;
+
+import java.util.function.Supplier;
+
+/**
+ * Client side prediction with server reconciliation. Inputs are numbered and applied to a local state immediately via
+ * {@link #predict(ISequencedInput, float)}, so the player does not wait for the server. When the authoritative state
+ * arrives with the sequence of the last input the server processed (see {@link InputTracker}),
+ * {@link #reconcile(Object, int)} resets the local state to it and replays all inputs the server did not process yet.
+ * <p>
+ * Unacknowledged inputs are stored in an {@link InputHistory}, which is allocated once. If more inputs than the history
+ * can hold are not acknowledged (e.g. the connection stalls), the oldest ones are dropped and can no longer be
+ * replayed, see {@link #getOverflows()}.
+ * </p>
+ * <p>
+ * This class is not thread-safe. Inputs and states should be handled by the same thread, e.g. by registering the state
+ * packet to the {@link com.github.kleesup.kleegdx.client.net.ClientServerBridge} and predicting in the render loop.
+ * </p>
+ * <pre>{@code
+ *     //render loop
+ *     input.set(keys);
+ *     prediction.predict(input, delta, bridge, true);
+ *     //packet handler
+ *     prediction.reconcile(packet.state, packet.lastProcessedInput);
+ * }</pre>
+ * @param <I> The type of the input packets.
+ * @param <S> The type of the predicted state.
+ */
+public class ClientPrediction<I extends ISequencedInput, S> {
+
+    /** Default amount of stored unacknowledged inputs, 2 seconds at 60 inputs per second. */
+    public static final int DEFAULT_HISTORY_SIZE = 128;
+
+    @Getter
+    private final Predictor<I, S> predictor;
+    @Getter
+    private final InputHistory<I> history;
+    private final S state;
+    private final S predicted;
+    private int nextSequence;
+    @Getter
+    private int lastAcknowledged = InputTracker.NONE;
+    private boolean acknowledged;
+
+    /* -- Statistics -- */
+    @Getter
+    private long reconciliations;
+    @Getter
+    private long replayedInputs;
+    @Getter
+    private long overflows;
+
+    /**
+     * Builds a new prediction.
+     * @param predictor The game specific simulation.
+     * @param inputFactory Creates the input objects of the history.
+     * @param stateFactory Creates the predicted state and a copy used to compare corrections.
+     * @param historySize The max amount of unacknowledged inputs, must be greater than {@code 0}.
+     */
+    public ClientPrediction(Predictor<I, S> predictor, Supplier<I> inputFactory, Supplier<S> stateFactory,
+                            int historySize){
+        Verify.nonNullArg(predictor, "Predictor cannot be null!");
+        Verify.nonNullArg(stateFactory, "State factory cannot be null!");
+        this.predictor = predictor;
+        this.history = new InputHistory<>(historySize, inputFactory, predictor::copyInput);
+        this.state = stateFactory.get();
+        this.predicted = stateFactory.get();
+    }
+    public ClientPrediction(Predictor<I, S> predictor, Supplier<I> inputFactory, Supplier<S> stateFactory){
+        this(predictor, inputFactory, stateFactory, DEFAULT_HISTORY_SIZE);
+    }
+
+    /* -- Prediction -- */
+
+    /**
+     * Assigns the next sequence to an input, stores a copy of it and applies it to the predicted state. The input
+     * should be sent to the server afterwards.
+     * @param input The input, it is not kept and can be reused once it was sent.
+     * @param delta The time the input lasted.
+     * @return The assigned sequence.
+     */
+    public int predict(I input, float delta){
+        Verify.nonNullArg(input, "Input cannot be null!");
+        int sequence = nextSequence++;
+        input.setSequence(sequence);
+        if(history.record(sequence, input, delta))overflows++;
+        predictor.apply(state, input, delta);
+        return sequence;
+    }
+
+    /**
+     * Predicts an input and sends it to the server. Communicators that pass packets by reference (e.g. a
+     * {@link com.github.kleesup.kleegdx.client.net.LocalCommunicator}) keep the input object, so it must not be reused
+     * in that case.
+     * @param input The input to predict and send.
+     * @param delta The time the input lasted.
+     * @param communicator The communicator to send the input with.
+     * @param udp Whether to send the input via UDP.
+     * @return The assigned sequence.
+     */
+    public int predict(I input, float delta, Communicator communicator, boolean udp){
+        int sequence = predict(input, delta);
+        if(udp)communicator.sendUPD(input);
+        else communicator.sendTCP(input);
+        return sequence;
+    }
+
+    /**
+     * Resets the predicted state to an authoritative state of the server and replays all inputs the server did not
+     * process yet. States that acknowledge an older input than a previous state are ignored, as they were reordered.
+     * @param authoritative The state computed by the server, it is copied and not kept.
+     * @param lastProcessed The sequence of the last input the server applied to the state or
+     *                      {@link InputTracker#NONE}.
+     * @return {@code true} if the state was applied, {@code false} if it was outdated.
+     */
+    public boolean reconcile(S authoritative, int lastProcessed){
+        Verify.nonNullArg(authoritative, "State cannot be null!");
+        if(lastProcessed != InputTracker.NONE){
+            if(acknowledged && lastProcessed - lastAcknowledged < 0)return false;
+            acknowledged = true;
+            lastAcknowledged = lastProcessed;
+            history.discardUpTo(lastProcessed);
+        }
+        predictor.copyState(state, predicted);
+        predictor.copyState(authoritative, state);
+        int replays = history.size();
+        for(int i = 0; i < replays; i++) predictor.apply(state, history.get(i), history.getDelta(i));
+        replayedInputs += replays;
+        reconciliations++;
+        predictor.corrected(predicted, state);
+        return true;
+    }
+
+    /**
+     * Discards all stored inputs and sets the predicted state, e.g. after a teleport or reconnect. Sequences keep
+     * increasing.
+     * @param state The new state, it is copied and not kept.
+     */
+    public void reset(S state){
+        Verify.nonNullArg(state, "State cannot be null!");
+        history.clear();
+        predictor.copyState(state, this.state);
+    }
+
+    /* -- Getter -- */
+
+    /**
+     * @return The predicted state. It is modified by this prediction and should only be read.
+     */
+    public S getState(){
+        return state;
+    }
+
+    /**
+     * @return The amount of inputs that were sent but not acknowledged yet.
+     */
+    public int getPendingInputs(){
+        return history.size();
+    }
+
+    /**
+     * @return The sequence the next predicted input gets.
+     */
+    public int getNextSequence(){
+        return nextSequence;
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.github.kleesup.kleegdx.client.net.predict;
+
+import com.github.kleesup.kleegdx.core.util.Verify;
+
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Bounded ring buffer of inputs that were not acknowledged by the server yet. All input objects are created when the
+ * history is built and recorded inputs are copied into them, so recording does not allocate.
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ * @param <I> The type of the inputs.
+ */
+public class InputHistory<I> {
+
+    private final Object[] inputs;
+    private final int[] sequences;
+    private final float[] deltas;
+    private final BiConsumer<I, I> copier;
+    private int head, size;
+
+    /**
+     * Builds a new history.
+     * @param capacity The max amount of stored inputs, must be greater than {@code 0}.
+     * @param factory Creates the reused input objects.
+     * @param copier Copies the values of the first input into the second one.
+     */
+    public InputHistory(int capacity, Supplier<I> factory, BiConsumer<I, I> copier){
+        Verify.checkArg(capacity <= 0, "Capacity must be greater than 0!");
+        Verify.nonNullArg(factory, "Factory cannot be null!");
+        Verify.nonNullArg(copier, "Copier cannot be null!");
+        this.inputs = new Object[capacity];
+        for(int i = 0; i < capacity; i++) inputs[i] = factory.get();
+        this.sequences = new int[capacity];
+        this.deltas = new float[capacity];
+        this.copier = copier;
+    }
+
+    /**
+     * Stores a copy of an input as the newest input. If the history is full, the oldest input is overwritten.
+     * @param sequence The sequence of the input.
+     * @param input The input to copy.
+     * @param delta The time the input lasted.
+     * @return {@code true} if the oldest input was overwritten, {@code false} otherwise.
+     */
+    @SuppressWarnings("unchecked")
+    public boolean record(int sequence, I input, float delta){
+        boolean overwrite = size == inputs.length;
+        if(overwrite)removeOldest();
+        int index = (head + size) % inputs.length;
+        copier.accept(input, (I) inputs[index]);
+        sequences[index] = sequence;
+        deltas[index] = delta;
+        size++;
+        return overwrite;
+    }
+
+    /**
+     * Removes all inputs with a sequence older than or equal to the given one.
+     * @param sequence The last acknowledged sequence.
+     * @return The amount of removed inputs.
+     */
+    public int discardUpTo(int sequence){
+        int removed = 0;
+        while (size > 0 && sequences[head] - sequence <= 0) {
+            removeOldest();
+            removed++;
+        }
+        return removed;
+    }
+
+    private void removeOldest(){
+        head = (head + 1) % inputs.length;
+        size--;
+    }
+
+    public void clear(){
+        head = size = 0;
+    }
+
+    /* -- Access -- */
+
+    /**
+     * @param index The index, {@code 0} being the oldest stored input.
+     * @return The stored input. It is reused once the input is removed, so it must not be kept.
+     */
+    @SuppressWarnings("unchecked")
+    public I get(int index){
+        return (I) inputs[slot(index)];
+    }
+
+    public int getSequence(int index){
+        return sequences[slot(index)];
+    }
+
+    public float getDelta(int index){
+        return deltas[slot(index)];
+    }
+
+    private int slot(int index){
+        if(index < 0 || index >= size)throw new IndexOutOfBoundsException("Index: "+index+", size: "+size);
+        return (head + index) % inputs.length;
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public boolean isEmpty(){
+        return size == 0;
+    }
+
+    public int getCapacity(){
+        return inputs.length;
+    }
+
+}
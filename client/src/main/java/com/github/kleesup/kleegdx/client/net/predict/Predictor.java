@@ -0,0 +1,42 @@
+package com.github.kleesup.kleegdx.client.net.predict;
+
+/**
+ * The game specific part of a {@link ClientPrediction}: how an input changes the predicted state and how inputs and
+ * states are copied. Inputs and states are mutable and reused, so implementations must copy values instead of
+ * references.
+ * @param <I> The type of the inputs.
+ * @param <S> The type of the predicted state.
+ */
+public interface Predictor<I, S> {
+
+    /**
+     * Simulates one input, the same way the server does.
+     * @param state The state to modify.
+     * @param input The input to apply.
+     * @param delta The time the input lasted, e.g. the frame or tick delta.
+     */
+    void apply(S state, I input, float delta);
+
+    /**
+     * Copies all values of an input.
+     * @param from The input to copy.
+     * @param to The input to write to.
+     */
+    void copyInput(I from, I to);
+
+    /**
+     * Copies all values of a state.
+     * @param from The state to copy.
+     * @param to The state to write to.
+     */
+    void copyState(S from, S to);
+
+    /**
+     * Called after a reconciliation, e.g. to measure the prediction error or to smooth the visible correction. By
+     * default, nothing happens.
+     * @param predicted The state that was predicted before the authoritative state arrived.
+     * @param corrected The reconciled state.
+     */
+    default void corrected(S predicted, S corrected){}
+
+}
@@ -0,0 +1,129 @@
+package com.github.kleesup.kleegdx.client.test;
+
+import com.github.kleesup.kleegdx.core.net.packet.RingPacketBuffer;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+public class RingPacketBufferTest {
+
+    public static void main(String[] args) throws InterruptedException {
+        testEmpty();
+        testFull();
+        testWraparound();
+        testIterator();
+        testConcurrentProducers();
+        System.out.println("All ring buffer tests passed!");
+    }
+
+    private static void testEmpty(){
+        RingPacketBuffer buffer = new RingPacketBuffer(4);
+        check(buffer.isEmpty(), "New buffer should be empty");
+        check(buffer.size() == 0, "New buffer should have size 0");
+        check(buffer.poll() == null, "Polling an empty buffer should return null");
+        check(buffer.peek() == null, "Peeking an empty buffer should return null");
+        check(buffer.drain(obj -> fail("Empty buffer drained a packet"), 10) == 0, "Empty buffer drained packets");
+        check(!buffer.iterator().hasNext(), "Iterator of an empty buffer should have no elements");
+    }
+
+    private static void testFull(){
+        RingPacketBuffer buffer = new RingPacketBuffer(3); //rounded up to 4
+        check(buffer.getCapacity() == 4, "Size should be rounded up to the next power of two");
+        for(int i = 0; i < 4; i++) check(buffer.offer(i), "Offer "+i+" should fit");
+        check(!buffer.offer(4), "Offer into a full buffer should fail");
+        check(buffer.size() == 4, "Full buffer should have size 4");
+        check((Integer) buffer.poll() == 0, "Poll should return the oldest packet");
+        check(buffer.offer(4), "Offer after poll should fit again");
+        check(!buffer.offer(5), "Buffer should be full again");
+
+        buffer.setCapacity(2);
+        while (buffer.poll() != null);
+        check(buffer.offer(0) && buffer.offer(1), "Two packets should fit into the lowered capacity");
+        check(!buffer.offer(2), "Offer beyond the lowered capacity should fail");
+        buffer.setCapacity(0);
+        check(buffer.getCapacity() == 4, "Capacity 0 should restore the physical size");
+    }
+
+    private static void testWraparound(){
+        RingPacketBuffer buffer = new RingPacketBuffer(4);
+        int next = 0, expected = 0;
+        for(int round = 0; round < 1000; round++){
+            int batch = 1 + round % 4;
+            for(int i = 0; i < batch; i++) check(buffer.offer(next++), "Offer should fit in round "+round);
+            check(buffer.size() == batch, "Size should be "+batch+" in round "+round);
+            if(round % 2 == 0){
+                for(int i = 0; i < batch; i++) check((Integer) buffer.poll() == expected++, "Wrong order after wrap");
+            }else{
+                int[] expect = {expected};
+                int reads = buffer.drain(obj -> check((Integer) obj == expect[0]++, "Wrong drain order"), batch);
+                check(reads == batch, "Drain should read the whole batch");
+                expected = expect[0];
+            }
+            check(buffer.isEmpty(), "Buffer should be empty after each round");
+        }
+    }
+
+    private static void testIterator(){
+        RingPacketBuffer buffer = new RingPacketBuffer(4);
+        for(int i = 0; i < 6; i++){ //move the head past the physical end
+            buffer.offer(i);
+            buffer.poll();
+        }
+        for(int i = 0; i < 4; i++) buffer.offer(i);
+        Iterator<Object> iterator = buffer.iterator();
+        for(int i = 0; i < 4; i++) check((Integer) iterator.next() == i, "Iterator should follow the queue order");
+        check(!iterator.hasNext(), "Iterator should end at the tail");
+        check(buffer.size() == 4, "Iterating should not remove packets");
+    }
+
+    private static void testConcurrentProducers() throws InterruptedException {
+        final int producers = 4, perProducer = 200_000;
+        RingPacketBuffer buffer = new RingPacketBuffer(1024);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for(int p = 0; p < producers; p++){
+            final int producer = p;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for(int i = 0; i < perProducer; i++){
+                    long packet = (long) producer << 32 | i;
+                    while (!buffer.offer(packet)) Thread.yield();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        int[] nextOf = new int[producers];
+        int received = 0;
+        while (received < producers * perProducer){
+            Object obj = buffer.poll();
+            if(obj == null){
+                Thread.yield();
+                continue;
+            }
+            long packet = (Long) obj;
+            int producer = (int) (packet >>> 32), index = (int) packet;
+            check(index == nextOf[producer]++, "Packets of producer "+producer+" arrived out of order");
+            received++;
+        }
+        for(Thread thread : threads) thread.join();
+        check(buffer.isEmpty(), "Buffer should be empty after all packets were consumed");
+        for(int p = 0; p < producers; p++) check(nextOf[p] == perProducer, "Producer "+p+" lost packets");
+    }
+
+    private static void check(boolean condition, String message){
+        if(!condition)fail(message);
+    }
+
+    private static void fail(String message){
+        throw new AssertionError(message);
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.github.kleesup.kleegdx.client.test;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.github.kleesup.kleegdx.core.serialize.TaggedRecord;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class TaggedRecordTest {
+
+    public static void main(String[] args) {
+        testTypes();
+        testGrowAndRemove();
+        testRandomOperations();
+        testSerialization();
+        System.out.println("All tagged record tests passed!");
+    }
+
+    private static void testTypes(){
+        TaggedRecord record = new TaggedRecord();
+        record.putInt("a", 1).putLong("b", Long.MIN_VALUE).putFloat("c", -2.5f).putDouble("d", Math.PI)
+                .putBoolean("e", true).putString("f", "text").putObject("g", null);
+        check(record.size() == 7, "Record should contain 7 entries");
+        check(record.getInt("a", 0) == 1, "int was not stored");
+        check(record.getLong("b", 0) == Long.MIN_VALUE, "long was not stored");
+        check(record.getFloat("c", 0) == -2.5f, "float was not stored");
+        check(record.getDouble("d", 0) == Math.PI, "double was not stored");
+        check(record.getBoolean("e", false), "boolean was not stored");
+        check("text".equals(record.getString("f", null)), "String was not stored");
+        check(record.has("g") && record.getObject("g", "default") == null, "null object was not stored");
+        check(record.getInt("c", -1) == -1, "A value of another type should return the default");
+        check(record.getInt("missing", -1) == -1, "A missing tag should return the default");
+
+        record.putString("a", "replaced");
+        check(record.size() == 7, "Replacing a value should not change the size");
+        check(record.getInt("a", -1) == -1 && "replaced".equals(record.getString("a", null)),
+                "Replacing a value should change its type");
+    }
+
+    private static void testGrowAndRemove(){
+        TaggedRecord record = new TaggedRecord(0);
+        int count = 500;
+        for(int i = 0; i < count; i++) record.putInt("tag"+i, i);
+        check(record.size() == count, "Record should contain all entries after growing");
+        for(int i = 0; i < count; i++) check(record.getInt("tag"+i, -1) == i, "Entry "+i+" was lost while growing");
+
+        for(int i = 0; i < count; i += 2) check(record.remove("tag"+i), "Entry "+i+" should be removed");
+        check(!record.remove("tag0"), "Removing a missing tag should return false");
+        check(record.size() == count / 2, "Half of the entries should be left");
+        for(int i = 0; i < count; i++){
+            boolean kept = i % 2 == 1;
+            check(record.has("tag"+i) == kept, "Entry "+i+" should "+(kept ? "" : "not ")+"be present");
+            if(kept)check(record.getInt("tag"+i, -1) == i, "Entry "+i+" changed after removals");
+        }
+
+        record.clear();
+        check(record.isEmpty() && !record.has("tag1"), "Clear should remove all entries");
+        record.putInt("tag1", 1);
+        check(record.size() == 1 && record.getInt("tag1", -1) == 1, "Record should be reusable after clear");
+    }
+
+    /**
+     * Compares random puts and removes on a small set of tags against a {@link HashMap}, so probe sequences with many
+     * collisions are removed from and refilled repeatedly, including ones wrapping around the end of the table.
+     */
+    private static void testRandomOperations(){
+        Random random = new Random(42);
+        for(int run = 0; run < 20; run++){
+            TaggedRecord record = new TaggedRecord(random.nextInt(8));
+            HashMap<String, Integer> expected = new HashMap<>();
+            int tags = 8 + random.nextInt(120);
+            for(int op = 0; op < 5000; op++){
+                String tag = "t"+random.nextInt(tags);
+                if(random.nextInt(3) == 0){
+                    check(record.remove(tag) == (expected.remove(tag) != null), "remove("+tag+") returned wrong");
+                }else{
+                    int value = random.nextInt();
+                    record.putInt(tag, value);
+                    expected.put(tag, value);
+                }
+                check(record.size() == expected.size(), "Size differs after operation "+op);
+            }
+            for(int i = 0; i < tags; i++){
+                String tag = "t"+i;
+                Integer value = expected.get(tag);
+                check(record.has(tag) == (value != null), "Presence of "+tag+" differs in run "+run);
+                if(value != null)check(record.getInt(tag, 0) == value, "Value of "+tag+" differs in run "+run);
+            }
+        }
+    }
+
+    private static void testSerialization(){
+        Kryo kryo = new Kryo();
+        TaggedRecord.RecordSerializer serializer = new TaggedRecord.RecordSerializer();
+        TaggedRecord record = new TaggedRecord(0);
+        for(int i = 0; i < 40; i++) record.putLong("l"+i, (long) i << 40);
+        for(int i = 0; i < 40; i += 3) record.remove("l"+i);
+        record.putString("name", "Klee").putBoolean("alive", true);
+
+        Output output = new Output(256, -1);
+        kryo.writeObject(output, record, serializer);
+        TaggedRecord read = new TaggedRecord();
+        read.putInt("stale", 1);
+        serializer.readInto(kryo, new Input(output.toBytes()), read);
+        check(read.size() == record.size(), "Read record should have the same size");
+        check(!read.has("stale"), "readInto should clear the record first");
+        for(Map.Entry<String, Long> entry : longs(record).entrySet())
+            check(read.getLong(entry.getKey(), -1) == entry.getValue(), "Value of "+entry.getKey()+" differs");
+        check("Klee".equals(read.getString("name", null)) && read.getBoolean("alive", false),
+                "String and boolean values were not read");
+    }
+
+    private static HashMap<String, Long> longs(TaggedRecord record){
+        HashMap<String, Long> values = new HashMap<>();
+        for(int i = 0; i < 40; i++) if(record.has("l"+i))values.put("l"+i, record.getLong("l"+i, -1));
+        return values;
+    }
+
+    private static void check(boolean condition, String message){
+        if(!condition)throw new AssertionError(message);
+    }
+
+}
@@ -0,0 +1,271 @@
+package com.github.kleesup.kleegdx.client.test;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.github.kleesup.kleegdx.core.serialize.BaseTaggedSerializer;
+
+public class TaggedSerializerTest {
+
+    public static void main(String[] args) {
+        Kryo kryo = new Kryo();
+        testInline(kryo);
+        testSkippedTags(kryo);
+        testStream(kryo);
+        testLegacy(kryo);
+        testCorrupt(kryo);
+        System.out.println("All tagged serializer tests passed!");
+    }
+
+    /** Writes records with the current tags. */
+    private static final OldPlayerSerializer OLD = new OldPlayerSerializer();
+    /** Reads records after "health" changed its type, "flag" was removed and "level" was added. */
+    private static final NewPlayerSerializer NEW = new NewPlayerSerializer();
+
+    private static void testInline(Kryo kryo){
+        Player player = new Player();
+        player.xp = -300;
+        player.health = 12.5f;
+        player.name = "Klee";
+        player.flag = true;
+        Player read = kryo.readObject(new Input(write(kryo, player, OLD)), Player.class, OLD);
+        check(read.xp == -300, "xp was not read");
+        check(read.health == 12.5f, "health was not read");
+        check("Klee".equals(read.name), "name was not read");
+        check(read.flag, "flag was not read");
+    }
+
+    private static void testSkippedTags(Kryo kryo){
+        Player player = new Player();
+        player.xp = 42;
+        player.health = 3f;
+        player.name = "Klee";
+        player.flag = true;
+        Player read = kryo.readObject(new Input(write(kryo, player, OLD)), Player.class, NEW);
+        check(read.xp == 42 && "Klee".equals(read.name), "Tags should be resolved by name, not by id");
+        check(read.precise == 0, "A tag with a changed type should be skipped");
+        check(read.level == Player.DEFAULT_LEVEL, "A tag that was not written should keep its default");
+        check(!read.flag, "A removed tag should be skipped");
+        check(read.upgradedFrom == 0, "The written schema version should be passed to upgrade");
+    }
+
+    private static void testStream(Kryo kryo){
+        Output output = new Output(256, -1);
+        OLD.writeSchema(kryo, output);
+        for(int i = 0; i < 3; i++){
+            Player player = new Player();
+            player.xp = i;
+            player.name = "P"+i;
+            kryo.writeObject(output, player, OLD);
+        }
+        OLD.endStream(kryo);
+        int streamSize = output.position();
+
+        Input input = new Input(output.toBytes());
+        NEW.readSchema(kryo, input);
+        for(int i = 0; i < 3; i++){
+            Player read = kryo.readObject(input, Player.class, NEW);
+            check(read.xp == i && ("P"+i).equals(read.name), "Stream record "+i+" was not read");
+            check(read.level == Player.DEFAULT_LEVEL, "Stream record "+i+" should keep the default level");
+        }
+        NEW.endStream(kryo);
+        check(input.end(), "The whole stream should be read");
+
+        int inlineSize = write(kryo, new Player(), OLD).length;
+        check(streamSize < inlineSize * 3, "Stream records should be smaller than inline records");
+
+        boolean thrown = false;
+        try {
+            Output record = new Output(64, -1);
+            OLD.writeSchema(kryo, new Output(64, -1));
+            kryo.writeObject(record, new Player(), OLD);
+            OLD.endStream(kryo);
+            kryo.readObject(new Input(record.toBytes()), Player.class, NEW);
+        }catch (KryoException e){
+            thrown = true;
+        }
+        check(thrown, "Reading a stream record without a schema should fail");
+    }
+
+    private static void testLegacy(Kryo kryo){
+        //previous format: tag, type ordinal and value until the end, int and long values with a fixed size
+        Output output = new Output(64, -1);
+        output.writeString("xp");
+        output.writeByte(4); //INT
+        output.writeInt(1234);
+        output.writeString("name");
+        output.writeByte(1); //STRING
+        output.writeString("Legacy");
+        output.writeString("flag");
+        output.writeByte(9); //BOOL
+        output.writeBoolean(true);
+        output.writeString("health");
+        output.writeByte(6); //FLOAT, registered as DOUBLE now
+        output.writeFloat(8f);
+        Player read = kryo.readObject(new Input(output.toBytes()), Player.class, NEW);
+        check(read.xp == 1234 && "Legacy".equals(read.name), "Legacy record was not read");
+        check(read.precise == 0 && read.level == Player.DEFAULT_LEVEL, "Legacy record should skip unknown tags");
+        check(!read.flag, "Legacy record should skip removed tags");
+
+        Player empty = kryo.readObject(new Input(new byte[0]), Player.class, NEW);
+        check(empty.level == Player.DEFAULT_LEVEL, "Empty legacy record should read as a new instance");
+    }
+
+    private static void testCorrupt(Kryo kryo){
+        Output output = new Output(64, -1);
+        output.writeByte(1); //inline schema
+        output.writeVarInt(0, true); //version
+        output.writeVarInt(1, true); //tag count
+        output.writeString("xp");
+        output.writeByte(99); //no such type
+        boolean thrown = false;
+        try {
+            kryo.readObject(new Input(output.toBytes()), Player.class, NEW);
+        }catch (KryoException e){
+            thrown = true;
+        }
+        check(thrown, "An unknown type in an inline schema should throw a KryoException");
+
+        output = new Output(64, -1);
+        output.writeString("xp");
+        output.writeByte(-3);
+        thrown = false;
+        try {
+            kryo.readObject(new Input(output.toBytes()), Player.class, NEW);
+        }catch (KryoException e){
+            thrown = true;
+        }
+        check(thrown, "An unknown type in a legacy record should throw a KryoException");
+    }
+
+    private static byte[] write(Kryo kryo, Player player, BaseTaggedSerializer<Player> serializer){
+        Output output = new Output(128, -1);
+        kryo.writeObject(output, player, serializer);
+        return output.toBytes();
+    }
+
+    private static void check(boolean condition, String message){
+        if(!condition)throw new AssertionError(message);
+    }
+
+    public static class Player {
+        static final int DEFAULT_LEVEL = 7;
+        int xp;
+        float health;
+        double precise;
+        String name;
+        boolean flag;
+        int level = DEFAULT_LEVEL;
+        int upgradedFrom = -1;
+    }
+
+    private static class OldPlayerSerializer extends BaseTaggedSerializer<Player> {
+        @Override
+        protected Player buildNewInstance() {
+            return new Player();
+        }
+        @Override
+        protected void init() {
+            register("xp", new VarSupplierInt() {
+                @Override
+                public void set(Player instance, int value) {
+                    instance.xp = value;
+                }
+                @Override
+                public int get(Player instance) {
+                    return instance.xp;
+                }
+            });
+            register("health", new VarSupplierFloat() {
+                @Override
+                public void set(Player instance, float value) {
+                    instance.health = value;
+                }
+                @Override
+                public float get(Player instance) {
+                    return instance.health;
+                }
+            });
+            register("name", new VarSupplierString() {
+                @Override
+                public void set(Player instance, String value) {
+                    instance.name = value;
+                }
+                @Override
+                public String get(Player instance) {
+                    return instance.name;
+                }
+            });
+            register("flag", new VarSupplierBool() {
+                @Override
+                public void set(Player instance, boolean value) {
+                    instance.flag = value;
+                }
+                @Override
+                public boolean get(Player instance) {
+                    return instance.flag;
+                }
+            });
+        }
+    }
+
+    private static class NewPlayerSerializer extends BaseTaggedSerializer<Player> {
+        @Override
+        protected Player buildNewInstance() {
+            return new Player();
+        }
+        @Override
+        protected int getSchemaVersion() {
+            return 1;
+        }
+        @Override
+        protected void upgrade(int version, Player instance) {
+            instance.upgradedFrom = version;
+        }
+        @Override
+        protected void init() {
+            register("name", new VarSupplierString() {
+                @Override
+                public void set(Player instance, String value) {
+                    instance.name = value;
+                }
+                @Override
+                public String get(Player instance) {
+                    return instance.name;
+                }
+            });
+            register("xp", new VarSupplierInt() {
+                @Override
+                public void set(Player instance, int value) {
+                    instance.xp = value;
+                }
+                @Override
+                public int get(Player instance) {
+                    return instance.xp;
+                }
+            });
+            register("health", new VarSupplierDouble() {
+                @Override
+                public void set(Player instance, double value) {
+                    instance.precise = value;
+                }
+                @Override
+                public double get(Player instance) {
+                    return instance.precise;
+                }
+            });
+            register("level", new VarSupplierInt() {
+                @Override
+                public void set(Player instance, int value) {
+                    instance.level = value;
+                }
+                @Override
+                public int get(Player instance) {
+                    return instance.level;
+                }
+            });
+        }
+    }
+
+}
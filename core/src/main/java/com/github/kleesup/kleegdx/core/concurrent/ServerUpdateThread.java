@@ -1,48 +1,185 @@
 package com.github.kleesup.kleegdx.core.concurrent;
 
 import com.github.kleesup.kleegdx.core.net.GameServer;
+import com.github.kleesup.kleegdx.core.net.TickStatistics;
+import com.github.kleesup.kleegdx.core.util.Updateable;
+import com.github.kleesup.kleegdx.core.util.Verify;
 import lombok.Getter;
 
+import java.util.concurrent.locks.LockSupport;
+
 /**
- * A simple thread updating a server. Usually activated when automatic updating is enabled in {@link GameServer}.
+ * A fixed-timestep thread updating a server. Usually activated when automatic updating is enabled in
+ * {@link GameServer}. Any other {@link Updateable} with its own {@link TickStatistics} can be updated as well, e.g. a
+ * {@link com.github.kleesup.kleegdx.core.net.shard.WorldShard}.
+ * <p>
+ * Timing is based on {@link System#nanoTime()}. Between two ticks the thread is parked and only the last
+ * {@link #getSpinNanos()} before a tick are spent yielding, so an idle server does not occupy a full core while ticks
+ * still start close to their schedule. If a tick is due later than planned (e.g. because the previous tick took too
+ * long), the configured {@link CatchUpPolicy} decides how the missed ticks are treated.
+ * </p>
  */
 public class ServerUpdateThread extends Thread {
 
-    private final GameServer server;
-    private final float inv;
-    private final long max;
+    /** Default time before a tick in which the thread yields instead of parking. */
+    public static final long DEFAULT_SPIN_NANOS = 1_000_000L;
+    /** Default max amount of ticks run back-to-back with {@link CatchUpPolicy#CATCH_UP}. */
+    public static final int DEFAULT_MAX_CATCH_UP_STEPS = 5;
+    private static final float NANOS_TO_SEC = 1f / 1_000_000_000f;
+
+    /**
+     * Determines how the thread reacts when one or more ticks were missed.
+     */
+    public enum CatchUpPolicy {
+        /** Missed ticks are dropped, a single tick runs with the fixed step and the schedule re-aligns. */
+        SKIP,
+        /** Missed ticks are run back-to-back with the fixed step until {@link #getMaxCatchUpSteps()} is reached. */
+        CATCH_UP,
+        /** A single tick runs with the real elapsed time and the schedule restarts from that tick. */
+        STRETCH
+    }
+
+    private final Updateable target;
+    private final TickStatistics statistics;
+    @Getter
+    private volatile boolean running = true;
+    @Getter
+    private volatile long intervalNanos;
+    @Getter
+    private volatile CatchUpPolicy policy;
+    @Getter
+    private volatile int maxCatchUpSteps;
     @Getter
-    private boolean running = true;
+    private volatile long spinNanos = DEFAULT_SPIN_NANOS;
+
+    /* -- Statistics -- */
+    @Getter
+    private volatile long tickCount;
+    /** Amount of ticks which were dropped by the catch-up policy. */
+    @Getter
+    private volatile long skippedTicks;
+
+    /**
+     * Builds a new thread updating any target.
+     * @param name The name of the thread.
+     * @param target The target to update each tick.
+     * @param statistics The statistics to record the tick durations to.
+     * @param ticks The amount of ticks per second.
+     * @param policy The policy for missed ticks.
+     * @param maxCatchUpSteps The max amount of ticks run back-to-back with {@link CatchUpPolicy#CATCH_UP}.
+     */
+    public ServerUpdateThread(String name, Updateable target, TickStatistics statistics, int ticks,
+                              CatchUpPolicy policy, int maxCatchUpSteps){
+        super(name);
+        Verify.nonNullArg(target, "Target cannot be null!");
+        Verify.nonNullArg(statistics, "Statistics cannot be null!");
+        Verify.nonNullArg(policy, "Catch-up policy cannot be null!");
+        this.target = target;
+        this.statistics = statistics;
+        this.policy = policy;
+        setTicks(ticks);
+        setMaxCatchUpSteps(maxCatchUpSteps);
+    }
+    public ServerUpdateThread(GameServer server, int ticks, CatchUpPolicy policy, int maxCatchUpSteps){
+        this("ServerTick", server, statisticsOf(server), ticks, policy, maxCatchUpSteps);
+    }
     public ServerUpdateThread(GameServer server, int ticks){
-        super("ServerTick");
-        this.server = server;
-        this.inv = 1f / 1000f;
-        this.max = 1000 / ticks;
+        this(server, ticks, CatchUpPolicy.CATCH_UP, DEFAULT_MAX_CATCH_UP_STEPS);
     }
 
-    private long last;
+    private static TickStatistics statisticsOf(GameServer server){
+        Verify.nonNullArg(server, "Server cannot be null!");
+        return server.getTickStatistics();
+    }
 
-    @Override
-    public synchronized void start() {
-        super.start();
-        last = System.currentTimeMillis();
+    /* -- Configuration -- */
+
+    /**
+     * Changes the tick rate of this thread. Takes effect from the next scheduled tick on.
+     * @param ticks The amount of ticks per second, must be greater than {@code 0}.
+     */
+    public void setTicks(int ticks){
+        Verify.checkArg(ticks <= 0, "Ticks must be greater than 0!");
+        this.intervalNanos = 1_000_000_000L / ticks;
+    }
+
+    public void setPolicy(CatchUpPolicy policy){
+        Verify.nonNullArg(policy, "Catch-up policy cannot be null!");
+        this.policy = policy;
+    }
+
+    public void setMaxCatchUpSteps(int maxCatchUpSteps){
+        Verify.checkArg(maxCatchUpSteps <= 0, "Max catch-up steps must be greater than 0!");
+        this.maxCatchUpSteps = maxCatchUpSteps;
+    }
+
+    /**
+     * Sets the time before a tick in which the thread yields instead of parking. Higher values increase precision on
+     * systems with a coarse timer but also increase cpu usage.
+     * @param spinNanos The spin time in nanoseconds.
+     */
+    public void setSpinNanos(long spinNanos){
+        Verify.checkArg(spinNanos < 0, "Spin time cannot be negative!");
+        this.spinNanos = spinNanos;
     }
 
     /**
      * Terminates this thread without the need to call {@link #stop()} (safe killing thread).
      */
-    public synchronized void terminate(){
+    public void terminate(){
         running = false;
+        LockSupport.unpark(this);
     }
 
+    /* -- Loop -- */
+
     @Override
     public void run() {
+        long last = System.nanoTime();
+        long next = last + intervalNanos;
         while (running){
-            long delta = System.currentTimeMillis() - last;
-            if(delta >= max){
-                server.update(delta * inv);
-                last = System.currentTimeMillis();
+            long now = System.nanoTime();
+            long remaining = next - now;
+            if(remaining > 0){
+                if(remaining > spinNanos) LockSupport.parkNanos(remaining - spinNanos);
+                else Thread.yield();
+                continue;
+            }
+            long interval = intervalNanos;
+            long missed = -remaining / interval; //ticks that should have already happened after this one
+            switch (policy){
+                case SKIP:
+                    tick(interval);
+                    if(missed > 0)skippedTicks += missed;
+                    next += interval * (missed + 1);
+                    break;
+                case CATCH_UP:
+                    long steps = Math.min(missed + 1, maxCatchUpSteps);
+                    for(long i = 0; i < steps && running; i++) tick(interval);
+                    if(steps <= missed){ //still behind, drop the remaining backlog
+                        skippedTicks += missed + 1 - steps;
+                        next += interval * (missed + 1);
+                    }else next += interval * steps;
+                    break;
+                case STRETCH:
+                    tick(now - last);
+                    next = now + interval;
+                    break;
             }
+            last = now;
         }
     }
+
+    /**
+     * Runs a single update of the target and records its duration to the tick statistics, e.g.
+     * {@link GameServer#getTickStatistics()}, which also count the overrun ticks.
+     * @param deltaNanos The delta time to pass to the server in nanoseconds.
+     */
+    private void tick(long deltaNanos){
+        long start = System.nanoTime();
+        target.update(deltaNanos * NANOS_TO_SEC);
+        long duration = System.nanoTime() - start;
+        tickCount++;
+        statistics.recordTick(duration, intervalNanos);
+    }
 }
@@ -1,20 +1,33 @@
 package com.github.kleesup.kleegdx.core.net;
 
 import com.badlogic.gdx.utils.Logger;
+import com.esotericsoftware.kryonet.Connection;
 import com.esotericsoftware.kryonet.Listener;
 import com.esotericsoftware.kryonet.Server;
 import com.github.kleesup.kleegdx.core.concurrent.ServerUpdateThread;
+import com.github.kleesup.kleegdx.core.net.packet.IPacketDrainable;
+import com.github.kleesup.kleegdx.core.net.transport.KryoNetTransport;
+import com.github.kleesup.kleegdx.core.net.transport.LoopbackTransport;
+import com.github.kleesup.kleegdx.core.net.transport.ServerTransport;
 import com.github.kleesup.kleegdx.core.util.Updateable;
+import com.github.kleesup.kleegdx.core.util.Verify;
 import lombok.Getter;
 import lombok.Setter;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Abstract expansion of {@link Server} from KryoNet which supports server binding, logging and updating.
+ * <p>
+ * Besides its own sockets (see {@link #bind()} or {@link KryoNetTransport}), clients can reach the server through
+ * further {@link ServerTransport}s opened via {@link #openTransport(ServerTransport)}, e.g. a
+ * {@link LoopbackTransport} for clients in the same JVM. Connections of all transports are delivered to the same
+ * listeners and are part of {@link #getConnections()}.
+ * </p>
  */
 public abstract class GameServer extends Server implements Updateable {
 
@@ -22,21 +35,44 @@ public abstract class GameServer extends Server implements Updateable {
     @Getter protected final Logger logger;
     @Getter private int port = -1;
     @Getter private int ticks = 60;
+    @Getter private ServerUpdateThread.CatchUpPolicy catchUpPolicy = ServerUpdateThread.CatchUpPolicy.CATCH_UP;
+    @Getter private int maxCatchUpSteps = ServerUpdateThread.DEFAULT_MAX_CATCH_UP_STEPS;
     protected final AtomicBoolean running = new AtomicBoolean(false);
     protected final AtomicBoolean socketOpen = new AtomicBoolean(false);
     protected boolean useUDP;
     protected volatile boolean updatesAutomatically;
-    protected final Object listenerLock = new Object();
+    /** @deprecated Lock of the {@link #listenerGroup}, only needed to read the deprecated lists consistently. */
+    @Deprecated
+    protected final Object listenerLock;
     protected final Object updateLock = new Object();
+    /**
+     * @deprecated Live list of the {@link #listenerGroup}, must only be read while holding {@link #listenerLock} and
+     * never be modified. Use {@link ListenerGroup#getListeners()} instead.
+     */
+    @Deprecated
     protected final ArrayList<Listener> allListeners;
+    /**
+     * @deprecated Live list of the {@link #listenerGroup}, must only be read while holding {@link #listenerLock} and
+     * never be modified. Updated listeners are updated via {@link #updateAllListeners(float)}.
+     */
+    @Deprecated
     protected final ArrayList<Listener> updateListeners;
-    private ServerUpdateThread updateThread;
+    @Getter protected final TickStatistics tickStatistics;
+    /** All listeners of this server, also notified about connections of transports not using KryoNet sockets. */
+    @Getter protected final ListenerGroup listenerGroup;
+    private volatile ServerUpdateThread updateThread;
+    /** Amount of finished {@link #update(float)} calls, used by clients to estimate the server tick. */
+    @Getter private volatile long tick;
+    private final CopyOnWriteArrayList<ServerTransport> transports = new CopyOnWriteArrayList<>();
     public GameServer(boolean useUDP){
         this.logger = buildLogger();
         if(this.logger != null)this.logger.setLevel(Logger.DEBUG);
         this.useUDP = useUDP;
-        this.allListeners = new ArrayList<>(2);
-        this.updateListeners = new ArrayList<>(2);
+        this.tickStatistics = new TickStatistics();
+        this.listenerGroup = new ListenerGroup(tickStatistics);
+        this.listenerLock = listenerGroup.getLock();
+        this.allListeners = listenerGroup.getAllListeners();
+        this.updateListeners = listenerGroup.getUpdateListeners();
         this.updatesAutomatically = true;
     }
 
@@ -59,38 +95,95 @@ public abstract class GameServer extends Server implements Updateable {
      * @param enable {@code true} enables the automatic updating through KryoNet, {@code false} otherwise.
      */
     protected void setUpdateAutomatically(boolean enable){
+        ServerUpdateThread stopped = null;
         synchronized (updateLock){
             updatesAutomatically = enable;
             if(enable && this.updateThread == null) {
                 startUpdateThread();
                 log("Update thread started!");
-            }else if(this.updateThread != null){
-                stopUpdateThread();
-                log("Update thread stopped!");
-            }
+            }else if(!enable)stopped = detachUpdateThread();
         }
+        if(stopped == null)return;
+        awaitTermination(stopped);
+        log("Update thread stopped!");
     }
     protected boolean doesUpdateAutomatically(){
         return updatesAutomatically;
     }
 
+    /**
+     * Sets the amount of updates per second of the update thread. A running update thread adopts the new rate
+     * without being restarted.
+     * @param ticks The amount of ticks per second.
+     */
     protected void setUpdateTicks(int ticks){
+        Verify.checkArg(ticks <= 0, "Ticks must be greater than 0!");
         synchronized (updateLock){
             this.ticks = ticks;
-            if(updatesAutomatically){
-                stopUpdateThread();
-                startUpdateThread();
+            if(updateThread != null)updateThread.setTicks(ticks);
+        }
+    }
+
+    /**
+     * Sets how the update thread treats ticks that were missed because a previous tick took too long.
+     * @param policy The policy to use.
+     * @param maxCatchUpSteps The max amount of ticks run back-to-back with
+     *                        {@link ServerUpdateThread.CatchUpPolicy#CATCH_UP}.
+     */
+    protected void setCatchUpPolicy(ServerUpdateThread.CatchUpPolicy policy, int maxCatchUpSteps){
+        Verify.nonNullArg(policy, "Catch-up policy cannot be null!");
+        Verify.checkArg(maxCatchUpSteps <= 0, "Max catch-up steps must be greater than 0!");
+        synchronized (updateLock){
+            this.catchUpPolicy = policy;
+            this.maxCatchUpSteps = maxCatchUpSteps;
+            if(updateThread != null){
+                updateThread.setPolicy(policy);
+                updateThread.setMaxCatchUpSteps(maxCatchUpSteps);
             }
         }
     }
 
+    /**
+     * @return The amount of ticks whose execution took longer than one tick interval, counted by the
+     * {@link #tickStatistics} while they are enabled.
+     */
+    public long getTickOverruns(){
+        return tickStatistics.getOverrunTicks();
+    }
+
+    /**
+     * @return The amount of ticks dropped by the catch-up policy since the update thread was started or {@code 0} if
+     * there is no update thread.
+     */
+    public long getSkippedTicks(){
+        ServerUpdateThread thread = updateThread;
+        return thread != null ? thread.getSkippedTicks() : 0;
+    }
+
     private void startUpdateThread(){
-        this.updateThread = new ServerUpdateThread(this, ticks);
+        this.updateThread = new ServerUpdateThread(this, ticks, catchUpPolicy, maxCatchUpSteps);
         this.updateThread.start();
     }
-    private void stopUpdateThread(){
-        this.updateThread.terminate();
+    /**
+     * Terminates the update thread. Must be called while holding the {@link #updateLock}, the returned thread has to
+     * be awaited via {@link #awaitTermination(ServerUpdateThread)} after releasing it, as a running tick may need the
+     * lock to finish.
+     * @return The terminated thread or {@code null} if there was none.
+     */
+    private ServerUpdateThread detachUpdateThread(){
+        ServerUpdateThread thread = this.updateThread;
+        if(thread == null)return null;
         this.updateThread = null;
+        thread.terminate();
+        return thread;
+    }
+    private static void awaitTermination(ServerUpdateThread thread){
+        if(thread == Thread.currentThread())return;
+        try { //make sure no tick is still running after stopping
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     /* -- Listeners -- */
@@ -98,31 +191,140 @@ public abstract class GameServer extends Server implements Updateable {
     @Override
     public void addListener(Listener listener) {
         super.addListener(listener);
-        if(listener == null)return;
-        synchronized (listenerLock){
-            allListeners.add(listener);
-            if(listener instanceof Updateable)updateListeners.add(listener);
-        }
+        listenerGroup.add(listener);
     }
 
     @Override
     public void removeListener(Listener listener) {
         super.removeListener(listener);
-        if(listener == null)return;
-        synchronized (listenerLock){
-            allListeners.remove(listener);
-            if(listener instanceof Updateable)updateListeners.remove(listener);
-        }
+        listenerGroup.remove(listener);
     }
 
     /**
      * Will update all listeners that require an update. Should be called in main {@link #update(float)} when update
-     * listeners are added.
+     * listeners are added. If the {@link #tickStatistics} are enabled, the time spent in each listener and the amount
+     * of drained packets of {@link IPacketDrainable} listeners are recorded, see {@link ListenerGroup#update(float)}.
      * @param delta The delta time since the last update.
      */
     protected void updateAllListeners(float delta){
-        if(updateListeners.isEmpty())return;
-        for(Listener listener : updateListeners) ((Updateable) listener).update(delta);
+        listenerGroup.update(delta);
+    }
+
+    /* -- Transports -- */
+
+    /**
+     * Opens a transport through which clients can connect to this server in addition to the servers own sockets.
+     * The transport is closed together with the server via {@link #close()}.
+     * @param transport The transport to open.
+     * @throws IOException If the transport could not be opened.
+     */
+    public void openTransport(ServerTransport transport) throws IOException {
+        transport.open(this);
+        if(!transports.contains(transport))transports.add(transport);
+    }
+
+    /**
+     * Closes a transport opened via {@link #openTransport(ServerTransport)}, disconnecting all of its connections.
+     * @param transport The transport to close.
+     */
+    public void closeTransport(ServerTransport transport){
+        if(transports.remove(transport))transport.close();
+    }
+
+    /**
+     * @return An unmodifiable view of all opened transports.
+     */
+    public List<ServerTransport> getTransports(){
+        return Collections.unmodifiableList(transports);
+    }
+
+    /**
+     * Notifies all listeners about a new connection. Called by transports that do not use KryoNet sockets.
+     * @param connection The new connection.
+     */
+    public void notifyConnected(Connection connection){
+        for(Listener listener : listenerGroup.getListeners()) listener.connected(connection);
+    }
+
+    /**
+     * Notifies all listeners about a received packet. Called by transports that do not use KryoNet sockets.
+     * @param connection The connection that received the packet.
+     * @param obj The received packet.
+     */
+    public void notifyReceived(Connection connection, Object obj){
+        for(Listener listener : listenerGroup.getListeners()) listener.received(connection, obj);
+    }
+
+    /**
+     * Notifies all listeners about a closed connection. Called by transports that do not use KryoNet sockets.
+     * @param connection The closed connection.
+     */
+    public void notifyDisconnected(Connection connection){
+        for(Listener listener : listenerGroup.getListeners()) listener.disconnected(connection);
+    }
+
+    /**
+     * @return The socket connections of this server and the connections of all opened transports.
+     */
+    @Override
+    public Connection[] getConnections() {
+        Connection[] all = super.getConnections();
+        for(ServerTransport transport : transports){
+            Connection[] other = transport.getConnections();
+            if(other.length == 0)continue;
+            int size = all.length;
+            all = Arrays.copyOf(all, size + other.length);
+            System.arraycopy(other, 0, all, size, other.length);
+        }
+        return all;
+    }
+
+    /* -- Broadcasting -- */
+
+    /**
+     * Sends a packet to a group of participants. The packet is serialized at most once and the resulting bytes are
+     * shared between all participants, see {@link SerializedPacket}. Participants that are not connected are skipped.
+     * The wrapper has to be registered on both sides, see
+     * {@link com.github.kleesup.kleegdx.core.serialize.KryoRegisterer#registerSerializedPacket()}.
+     * @param packet The packet to send.
+     * @param participants The participants to send the packet to.
+     * @param udp Whether to use UDP.
+     */
+    public void broadcast(Object packet, Iterable<? extends NetParticipant> participants, boolean udp){
+        broadcastExcept(packet, participants, null, udp);
+    }
+
+    /**
+     * Sends a packet to a group of participants except one, see {@link #broadcast(Object, Iterable, boolean)}.
+     * @param packet The packet to send.
+     * @param participants The participants to send the packet to.
+     * @param except The participant to skip, can be {@code null}.
+     * @param udp Whether to use UDP.
+     */
+    public void broadcastExcept(Object packet, Iterable<? extends NetParticipant> participants,
+                                NetParticipant except, boolean udp){
+        SerializedPacket serialized = new SerializedPacket(packet);
+        for(NetParticipant participant : participants){
+            if(participant == except || !participant.isConnected())continue;
+            participant.sendSerialized(serialized, udp);
+        }
+    }
+
+    /**
+     * Sends a packet to all connections of this server, serializing it only once if the {@link SerializedPacket}
+     * wrapper is registered, otherwise the packet is sent as it is.
+     * @param packet The packet to send.
+     * @param except The connection to skip, can be {@code null}.
+     * @param udp Whether to use UDP.
+     */
+    public void broadcastToAll(Object packet, Connection except, boolean udp){
+        Object serialized = getKryo().getClassResolver().getRegistration(SerializedPacket.class) != null ?
+                new SerializedPacket(packet) : packet;
+        for(Connection connection : getConnections()){
+            if(connection == except || !connection.isConnected())continue;
+            if(udp)connection.sendUDP(serialized);
+            else connection.sendTCP(serialized);
+        }
     }
 
     /* -- Lifecycle -- */
@@ -144,12 +346,29 @@ public abstract class GameServer extends Server implements Updateable {
         super.stop();
         running.set(false);
         log("Server stopped!");
-        stopUpdateThread();
+        ServerUpdateThread stopped;
+        synchronized (updateLock){
+            stopped = detachUpdateThread();
+        }
+        if(stopped != null)awaitTermination(stopped);
     }
 
+    /**
+     * Updates all listeners and advances the {@link #tick}. Subclasses overriding this method should call it.
+     * <p>
+     * Ticks run by the update thread are recorded to the {@link #tickStatistics} by the thread itself. If the server
+     * is updated manually, the duration of this method is recorded instead, measured against the interval of
+     * {@link #getTicks()}.
+     * </p>
+     * @param delta The delta time since the last update.
+     */
     @Override
     public void update(float delta) {
+        long start = System.nanoTime();
         updateAllListeners(delta);
+        tick++;
+        if(Thread.currentThread() != updateThread)
+            tickStatistics.recordTick(System.nanoTime() - start, 1_000_000_000L / ticks);
     }
 
     /* -- Socket -- */
@@ -193,8 +412,12 @@ public abstract class GameServer extends Server implements Updateable {
 
     /* -- Saving and Disposing -- */
 
+    /**
+     * Closes all opened transports and the socket of this server.
+     */
     @Override
     public void close() {
+        for(ServerTransport transport : transports) closeTransport(transport);
         if(!socketOpen.get())return; //kryo closes server even if it is not open on bind()
         log("Closing socket...");
         super.close();
@@ -0,0 +1,120 @@
+package com.github.kleesup.kleegdx.core.net;
+
+import com.esotericsoftware.kryonet.Listener;
+import com.github.kleesup.kleegdx.core.net.TickStatistics.ListenerTiming;
+import com.github.kleesup.kleegdx.core.net.packet.IPacketDrainable;
+import com.github.kleesup.kleegdx.core.util.Updateable;
+import com.github.kleesup.kleegdx.core.util.Verify;
+
+import java.util.ArrayList;
+
+/**
+ * The listeners of a {@link GameServer} or {@link com.github.kleesup.kleegdx.core.net.shard.WorldShard}. Adding and
+ * removing listeners rebuilds array snapshots under a lock, so events and updates iterate them from any thread without
+ * locking. Listeners implementing {@link Updateable} are additionally registered to the {@link TickStatistics} of the
+ * owner and updated via {@link #update(float)}. Their snapshot holds the {@link ListenerTiming} of each listener, which
+ * carries the listener itself, so listeners removed during a tick never get timings of other listeners recorded.
+ */
+public class ListenerGroup {
+
+    private static final Listener[] EMPTY = new Listener[0];
+    private static final ListenerTiming[] EMPTY_TIMINGS = new ListenerTiming[0];
+
+    private final TickStatistics statistics;
+    private final Object lock = new Object();
+    private final ArrayList<Listener> allListeners = new ArrayList<>(2);
+    private final ArrayList<Listener> updateListeners = new ArrayList<>(2);
+    private final ArrayList<ListenerTiming> updateTimings = new ArrayList<>(2);
+    private volatile Listener[] listenerArray = EMPTY;
+    private volatile ListenerTiming[] updateArray = EMPTY_TIMINGS;
+
+    /**
+     * @param statistics The statistics the time spent in each updated listener is recorded to.
+     */
+    public ListenerGroup(TickStatistics statistics){
+        Verify.nonNullArg(statistics, "Statistics cannot be null!");
+        this.statistics = statistics;
+    }
+
+    public void add(Listener listener){
+        Verify.nonNullArg(listener, "Listener cannot be null!");
+        synchronized (lock){
+            allListeners.add(listener);
+            listenerArray = allListeners.toArray(EMPTY);
+            if(listener instanceof Updateable){
+                updateListeners.add(listener);
+                updateTimings.add(statistics.listenerAdded(listener));
+                updateArray = updateTimings.toArray(EMPTY_TIMINGS);
+            }
+        }
+    }
+
+    /**
+     * @param listener The listener to remove.
+     * @return {@code true} if the listener was part of this group.
+     */
+    public boolean remove(Listener listener){
+        if(listener == null)return false;
+        synchronized (lock){
+            if(!allListeners.remove(listener))return false;
+            listenerArray = allListeners.toArray(EMPTY);
+            int index = updateListeners.indexOf(listener);
+            if(index != -1){
+                updateListeners.remove(index);
+                ListenerTiming timing = updateTimings.remove(index);
+                updateArray = updateTimings.toArray(EMPTY_TIMINGS);
+                statistics.listenerRemoved(timing);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * @return A snapshot of all listeners in the order they were added, which must not be modified.
+     */
+    public Listener[] getListeners(){
+        return listenerArray;
+    }
+
+    /* -- Live lists, only kept for the deprecated members of GameServer -- */
+
+    Object getLock(){
+        return lock;
+    }
+
+    ArrayList<Listener> getAllListeners(){
+        return allListeners;
+    }
+
+    ArrayList<Listener> getUpdateListeners(){
+        return updateListeners;
+    }
+
+    public boolean isEmpty(){
+        return listenerArray.length == 0;
+    }
+
+    /**
+     * Updates all listeners implementing {@link Updateable}. If the statistics are enabled, the time spent in each
+     * listener and the amount of drained packets of {@link IPacketDrainable} listeners are recorded.
+     * @param delta The delta time since the last update.
+     */
+    public void update(float delta){
+        ListenerTiming[] timings = updateArray;
+        if(timings.length == 0)return;
+        if(!statistics.isEnabled()){
+            for(int i = 0; i < timings.length; i++) ((Updateable) timings[i].getListener()).update(delta);
+            return;
+        }
+        for(int i = 0; i < timings.length; i++){
+            ListenerTiming timing = timings[i];
+            Object listener = timing.getListener();
+            long start = System.nanoTime();
+            ((Updateable) listener).update(delta);
+            statistics.recordListener(timing, System.nanoTime() - start);
+            if(listener instanceof IPacketDrainable)
+                statistics.addPacketsDrained(((IPacketDrainable) listener).getLastDrainCount());
+        }
+    }
+
+}
@@ -44,6 +44,17 @@ public interface NetParticipant {
         send(obj, false);
     }
 
+    /**
+     * Sends a packet that is shared between multiple participants and therefore only serialized once. By default, the
+     * wrapper is sent as it is. Participants that do not need serialization should override this method and send
+     * {@link SerializedPacket#getPacket()} instead.
+     * @param packet The wrapped packet.
+     * @param udp Whether to use UDP.
+     */
+    default void sendSerialized(SerializedPacket packet, boolean udp){
+        send(packet, udp);
+    }
+
     /**
      * @return {@code true} if this participant is still connected, {@code false} otherwise.
      */
@@ -0,0 +1,59 @@
+package com.github.kleesup.kleegdx.core.net;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.github.kleesup.kleegdx.core.serialize.KryoRegisterer;
+import com.github.kleesup.kleegdx.core.util.Verify;
+import lombok.Getter;
+
+/**
+ * Wraps a packet that is serialized only once, no matter to how many connections it is sent. The first time the
+ * wrapper is written by Kryo, the packet is serialized and the resulting bytes are cached, every further write only
+ * copies these bytes. The receiving side reads the original packet, not this wrapper.
+ * <p>
+ * For this to work, the wrapper has to be registered with {@link PacketSerializer} on both sides with the same id,
+ * which is done by {@link KryoRegisterer#registerSerializedPacket()}. Participants that do not need serialization (e.g. integrated clients) can
+ * use {@link #getPacket()} directly, see {@link NetParticipant#sendSerialized(SerializedPacket, boolean)}.
+ * </p>
+ */
+public final class SerializedPacket {
+
+    @Getter
+    private final Object packet;
+    private byte[] bytes;
+    public SerializedPacket(Object packet){
+        Verify.nonNullArg(packet, "Packet cannot be null!");
+        this.packet = packet;
+    }
+
+    /**
+     * Returns the serialized packet including its class, serializing it on the first call.
+     * @param kryo The kryo instance to serialize with.
+     * @return The cached bytes.
+     */
+    public synchronized byte[] getBytes(Kryo kryo){
+        if(bytes == null){
+            Output output = new Output(256, -1);
+            kryo.writeClassAndObject(output, packet);
+            bytes = output.toBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Serializer writing the cached bytes of a {@link SerializedPacket} and reading them back as the original packet.
+     */
+    public static class PacketSerializer extends Serializer<Object> {
+        @Override
+        public void write(Kryo kryo, Output output, Object object) {
+            output.writeBytes(((SerializedPacket) object).getBytes(kryo));
+        }
+        @Override
+        public Object read(Kryo kryo, Input input, Class<?> type) {
+            return kryo.readClassAndObject(input);
+        }
+    }
+
+}
@@ -0,0 +1,174 @@
+package com.github.kleesup.kleegdx.core.net;
+
+import com.github.kleesup.kleegdx.core.util.TimeHistogram;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collects timing information about the ticks of a {@link GameServer}. This includes a histogram over tick durations,
+ * the time spent in each updated listener, the amount of packets drained per tick and the amount of ticks that took
+ * longer than their interval. Recording never allocates, so the statistics can be left enabled in production.
+ * <p>
+ * Values are written by the thread updating the server and can be read from any other thread, however reads are not
+ * synchronized and may therefore be slightly stale.
+ * </p>
+ */
+public class TickStatistics {
+
+    /**
+     * Timing information of a single listener updated by the server.
+     */
+    @Getter
+    public static class ListenerTiming {
+        private final Object listener;
+        private long calls;
+        private long lastNanos;
+        private long maxNanos;
+        private long totalNanos;
+        private ListenerTiming(Object listener){
+            this.listener = listener;
+        }
+        private void record(long nanos){
+            calls++;
+            lastNanos = nanos;
+            totalNanos += nanos;
+            if(nanos > maxNanos)maxNanos = nanos;
+        }
+        private void reset(){
+            calls = lastNanos = maxNanos = totalNanos = 0;
+        }
+        public double getAverageNanos(){
+            return calls == 0 ? 0 : (double) totalNanos / calls;
+        }
+    }
+
+    @Getter @Setter
+    private volatile boolean enabled = true;
+    private final TimeHistogram tickDurations = new TimeHistogram();
+    private volatile ListenerTiming[] listenerTimings = new ListenerTiming[0];
+    private int currentTickPackets;
+    @Getter private long lastTickNanos;
+    @Getter private int lastTickPackets;
+    @Getter private int maxTickPackets;
+    @Getter private long totalPackets;
+    @Getter private long overrunTicks;
+
+    /* -- Recording -- */
+
+    /**
+     * Records a finished tick. Packets counted via {@link #addPacketsDrained(int)} since the last call are assigned to
+     * this tick.
+     * @param durationNanos The time the tick took in nanoseconds.
+     * @param budgetNanos The time the tick was allowed to take, ticks exceeding it are counted as overrun.
+     */
+    public void recordTick(long durationNanos, long budgetNanos){
+        int packets = currentTickPackets;
+        currentTickPackets = 0;
+        if(!enabled)return;
+        tickDurations.record(durationNanos);
+        lastTickNanos = durationNanos;
+        lastTickPackets = packets;
+        totalPackets += packets;
+        if(packets > maxTickPackets)maxTickPackets = packets;
+        if(durationNanos > budgetNanos)overrunTicks++;
+    }
+
+    /**
+     * Counts drained packets towards the currently running tick.
+     * @param packets The amount of packets drained.
+     */
+    public void addPacketsDrained(int packets){
+        currentTickPackets += packets;
+    }
+
+    /**
+     * Records the time a listener took to update.
+     * @param timing The timing of the listener, as returned by {@link #listenerAdded(Object)}.
+     * @param nanos The time it took in nanoseconds.
+     */
+    public void recordListener(ListenerTiming timing, long nanos){
+        timing.record(nanos);
+    }
+
+    /**
+     * Adds the timing of a listener, called by the owner of the listeners when an updated listener was added. The
+     * owner keeps the returned timing next to its listener, so a removal during a tick cannot shift timings.
+     * @param listener The added listener.
+     * @return The timing to record the listener to.
+     */
+    public synchronized ListenerTiming listenerAdded(Object listener){
+        ListenerTiming timing = new ListenerTiming(listener);
+        ListenerTiming[] timings = Arrays.copyOf(listenerTimings, listenerTimings.length + 1);
+        timings[timings.length - 1] = timing;
+        listenerTimings = timings;
+        return timing;
+    }
+
+    /**
+     * Removes the timing of a listener, called by the owner of the listeners when an updated listener was removed.
+     * @param timing The timing returned when the listener was added.
+     */
+    public synchronized void listenerRemoved(ListenerTiming timing){
+        ListenerTiming[] timings = listenerTimings;
+        for(int i = 0; i < timings.length; i++){
+            if(timings[i] != timing)continue;
+            ListenerTiming[] copy = new ListenerTiming[timings.length - 1];
+            System.arraycopy(timings, 0, copy, 0, i);
+            System.arraycopy(timings, i + 1, copy, i, copy.length - i);
+            listenerTimings = copy;
+            return;
+        }
+    }
+
+    /**
+     * Clears all recorded values.
+     */
+    public void reset(){
+        tickDurations.reset();
+        for(ListenerTiming timing : listenerTimings) timing.reset();
+        lastTickNanos = lastTickPackets = maxTickPackets = 0;
+        totalPackets = overrunTicks = 0;
+    }
+
+    /* -- Reading -- */
+
+    /**
+     * @param percentile The percentile between {@code 0} and {@code 1}.
+     * @return The approximated tick duration in nanoseconds at that percentile.
+     */
+    public long getTickPercentile(double percentile){
+        return tickDurations.getPercentile(percentile);
+    }
+
+    public long getTickP50(){
+        return getTickPercentile(.5);
+    }
+
+    public long getTickP99(){
+        return getTickPercentile(.99);
+    }
+
+    public long getTickMax(){
+        return tickDurations.getMax();
+    }
+
+    public double getTickMean(){
+        return tickDurations.getMean();
+    }
+
+    public long getTickCount(){
+        return tickDurations.getCount();
+    }
+
+    /**
+     * @return An unmodifiable view of the timings of all updated listeners in the order they were added.
+     */
+    public List<ListenerTiming> getListenerTimings(){
+        return Collections.unmodifiableList(Arrays.asList(listenerTimings));
+    }
+
+}
@@ -0,0 +1,16 @@
+package com.github.kleesup.kleegdx.core.net.gateway;
+
+/**
+ * Ends a client session on a backend link. Sent by the gateway when the client disconnected and by the backend when
+ * it closed the session (e.g. kicked the player).
+ */
+public class GatewayClose {
+
+    public int session;
+
+    public GatewayClose(){}
+    public GatewayClose(int session){
+        this.session = session;
+    }
+
+}
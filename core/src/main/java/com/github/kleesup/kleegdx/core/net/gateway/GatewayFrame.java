@@ -0,0 +1,20 @@
+package com.github.kleesup.kleegdx.core.net.gateway;
+
+/**
+ * A packet of a client session multiplexed over a backend link, in either direction.
+ */
+public class GatewayFrame {
+
+    public int session;
+    /** Whether the packet should be sent to the client via UDP. */
+    public boolean udp;
+    public Object packet;
+
+    public GatewayFrame(){}
+    public GatewayFrame(int session, Object packet, boolean udp){
+        this.session = session;
+        this.packet = packet;
+        this.udp = udp;
+    }
+
+}
@@ -0,0 +1,19 @@
+package com.github.kleesup.kleegdx.core.net.gateway;
+
+/**
+ * Sent by a gateway over a backend link when a client session starts on the backend, either because the client
+ * connected or because it was handed over from another backend.
+ */
+public class GatewayOpen {
+
+    public int session;
+    /** Optional first packet of the session, e.g. the player state sent along with a handoff. */
+    public Object payload;
+
+    public GatewayOpen(){}
+    public GatewayOpen(int session, Object payload){
+        this.session = session;
+        this.payload = payload;
+    }
+
+}
@@ -0,0 +1,101 @@
+package com.github.kleesup.kleegdx.core.net.gateway;
+
+import com.esotericsoftware.kryonet.Connection;
+import lombok.Getter;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A client connected to a backend server through a gateway. On the backend it behaves like any other connection,
+ * packets sent to it are wrapped into {@link GatewayFrame}s and sent over the link to the gateway, which forwards them
+ * to the client. Closing the session tells the gateway to disconnect the client.
+ */
+public class GatewaySession extends Connection {
+
+    @Getter
+    private final GatewayTransport transport;
+    @Getter
+    private final Connection link;
+    /** The id of the session on the gateway. */
+    @Getter
+    private final int session;
+    private final int id;
+    private final AtomicBoolean connected = new AtomicBoolean(true);
+
+    GatewaySession(GatewayTransport transport, Connection link, int session, int id){
+        this.transport = transport;
+        this.link = link;
+        this.session = session;
+        this.id = id;
+    }
+
+    @Override
+    public int sendTCP(Object object) {
+        if(!connected.get())return 0;
+        return link.sendTCP(new GatewayFrame(session, object, false));
+    }
+
+    /**
+     * Sends the packet reliably over the link, the gateway forwards it to the client via UDP.
+     */
+    @Override
+    public int sendUDP(Object object) {
+        if(!connected.get())return 0;
+        return link.sendTCP(new GatewayFrame(session, object, true));
+    }
+
+    @Override
+    public void close() {
+        transport.closeSession(this, true);
+    }
+
+    /**
+     * Marks this session as closed. Only one of concurrent callers succeeds, so a session is removed once.
+     * @return {@code true} if it was open before.
+     */
+    boolean markClosed(){
+        return connected.compareAndSet(true, false);
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected.get();
+    }
+
+    @Override
+    public int getID() {
+        return id;
+    }
+
+    /* -- Socket specific methods -- */
+
+    @Override
+    public InetSocketAddress getRemoteAddressTCP() {
+        return null;
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddressUDP() {
+        return null;
+    }
+
+    @Override
+    public void updateReturnTripTime() {}
+
+    @Override
+    public void setKeepAliveTCP(int keepAliveMillis) {}
+
+    @Override
+    public void setTimeout(int timeoutMillis) {}
+
+    @Override
+    public boolean isIdle() {
+        return link.isIdle();
+    }
+
+    @Override
+    public String toString() {
+        return "GatewaySession " + session + " (" + id + ")";
+    }
+}
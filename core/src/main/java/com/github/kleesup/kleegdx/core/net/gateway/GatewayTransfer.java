@@ -0,0 +1,20 @@
+package com.github.kleesup.kleegdx.core.net.gateway;
+
+/**
+ * Sent by a backend to hand a client session over to another backend of the gateway. The session is closed on the
+ * sending backend and opened on the target backend with the payload as first packet.
+ */
+public class GatewayTransfer {
+
+    public int session;
+    public int backend;
+    public Object payload;
+
+    public GatewayTransfer(){}
+    public GatewayTransfer(int session, int backend, Object payload){
+        this.session = session;
+        this.backend = backend;
+        this.payload = payload;
+    }
+
+}
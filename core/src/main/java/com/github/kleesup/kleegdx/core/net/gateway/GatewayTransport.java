@@ -0,0 +1,196 @@
+package com.github.kleesup.kleegdx.core.net.gateway;
+
+import com.esotericsoftware.kryonet.Connection;
+import com.esotericsoftware.kryonet.Listener;
+import com.esotericsoftware.kryonet.Server;
+import com.github.kleesup.kleegdx.core.net.GameServer;
+import com.github.kleesup.kleegdx.core.net.transport.LoopbackTransport;
+import com.github.kleesup.kleegdx.core.net.transport.ServerTransport;
+import com.github.kleesup.kleegdx.core.util.Verify;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Backend side of a gateway: accepts links from gateways and turns the client sessions multiplexed over them into
+ * {@link GatewaySession} connections of the server. The listeners of the server handle these clients like directly
+ * connected ones.
+ * <p>
+ * Gateways in the same JVM link via {@link #getLoopback()}. If a link server is given, remote gateways connect to it
+ * like KryoNet clients. Its kryo instance, as well as the one of the gateway, needs the packets of the server and the
+ * gateway packets (see {@link com.github.kleesup.kleegdx.core.serialize.KryoRegisterer#registerGatewayPackets()}).
+ * </p>
+ * <p>
+ * A client session can be handed to another backend of the same gateway via
+ * {@link #transfer(GatewaySession, int, Object)}, e.g. when the player changes the world.
+ * </p>
+ */
+public class GatewayTransport implements ServerTransport, Listener {
+
+    private final Server linkServer;
+    private final int linkPort;
+    @Getter
+    private final LoopbackTransport loopback = new LoopbackTransport();
+    private final ConcurrentHashMap<Connection, ConcurrentHashMap<Integer, GatewaySession>> links =
+            new ConcurrentHashMap<>();
+    private final Object sessionLock = new Object();
+    private volatile Connection[] sessionArray = new Connection[0];
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    @Getter
+    private volatile GameServer server;
+    private volatile boolean open;
+
+    /**
+     * Builds a transport that only accepts gateways in the same JVM via {@link #getLoopback()}.
+     */
+    public GatewayTransport(){
+        this(null, -1);
+    }
+
+    /**
+     * Builds a transport that accepts remote gateways as well.
+     * @param linkServer The KryoNet server the gateways connect to. It is started and bound when the transport is
+     *                   opened and closed together with it.
+     * @param linkPort The TCP port to bind the link server to.
+     */
+    public GatewayTransport(Server linkServer, int linkPort){
+        this.linkServer = linkServer;
+        this.linkPort = linkPort;
+    }
+
+    /* -- Transport -- */
+
+    @Override
+    public void open(GameServer server) throws IOException {
+        Verify.nonNullArg(server, "Server cannot be null!");
+        this.server = server;
+        this.open = true;
+        loopback.open(this);
+        if(linkServer != null){
+            linkServer.addListener(this);
+            linkServer.start();
+            linkServer.bind(linkPort);
+        }
+    }
+
+    @Override
+    public void close() {
+        if(!open)return;
+        open = false;
+        loopback.close();
+        if(linkServer != null){
+            linkServer.removeListener(this);
+            linkServer.close();
+            linkServer.stop();
+        }
+        for(Connection link : links.keySet()) disconnected(link);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public Connection[] getConnections() {
+        return sessionArray;
+    }
+
+    /* -- Sessions -- */
+
+    /**
+     * Hands a client session over to another backend of its gateway. The session is closed on this server without
+     * disconnecting the client. Packets the client sent before the handoff and that were not received yet are lost.
+     * @param session The session to hand over.
+     * @param backend The id of the target backend on the gateway.
+     * @param payload The first packet the target backend receives for the session (e.g. the player state) or
+     *                {@code null}.
+     * @return {@code true} if the handoff was sent, {@code false} if the session is already closed.
+     */
+    public boolean transfer(GatewaySession session, int backend, Object payload){
+        Verify.nonNullArg(session, "Session cannot be null!");
+        if(!session.markClosed())return false;
+        session.getLink().sendTCP(new GatewayTransfer(session.getSession(), backend, payload));
+        removeSession(session);
+        return true;
+    }
+
+    /**
+     * Closes a session on this server.
+     * @param session The session to close.
+     * @param notifyGateway Whether the gateway should disconnect the client.
+     */
+    void closeSession(GatewaySession session, boolean notifyGateway){
+        if(!session.markClosed())return;
+        if(notifyGateway)session.getLink().sendTCP(new GatewayClose(session.getSession()));
+        removeSession(session);
+    }
+
+    private void removeSession(GatewaySession session){
+        ConcurrentHashMap<Integer, GatewaySession> sessions = links.get(session.getLink());
+        if(sessions != null)sessions.remove(session.getSession(), session);
+        updateSessionArray();
+        server.notifyDisconnected(session);
+    }
+
+    /**
+     * Rebuilds the session snapshot after the session maps changed. Link threads rebuild concurrently, so the rebuild
+     * is serialized: otherwise an older snapshot could be published after a newer one and hide a session.
+     */
+    private void updateSessionArray(){
+        synchronized (sessionLock){
+            ArrayList<Connection> all = new ArrayList<>();
+            for(ConcurrentHashMap<Integer, GatewaySession> sessions : links.values()) all.addAll(sessions.values());
+            sessionArray = all.toArray(new Connection[0]);
+        }
+    }
+
+    /**
+     * @return The amount of currently linked gateways.
+     */
+    public int getLinkCount(){
+        return links.size();
+    }
+
+    /* -- Link listener -- */
+
+    @Override
+    public void connected(Connection link) {
+        links.put(link, new ConcurrentHashMap<>());
+    }
+
+    @Override
+    public void disconnected(Connection link) {
+        ConcurrentHashMap<Integer, GatewaySession> sessions = links.get(link);
+        if(sessions == null)return;
+        for(GatewaySession session : sessions.values()) closeSession(session, false);
+        links.remove(link);
+        updateSessionArray();
+    }
+
+    @Override
+    public void received(Connection link, Object object) {
+        ConcurrentHashMap<Integer, GatewaySession> sessions = links.get(link);
+        if(sessions == null)return;
+        if(object instanceof GatewayFrame){
+            GatewayFrame frame = (GatewayFrame) object;
+            GatewaySession session = sessions.get(frame.session);
+            if(session != null && frame.packet != null)server.notifyReceived(session, frame.packet);
+        }else if(object instanceof GatewayOpen){
+            GatewayOpen request = (GatewayOpen) object;
+            GatewaySession session = new GatewaySession(this, link, request.session, nextId.getAndIncrement());
+            GatewaySession replaced = sessions.put(request.session, session);
+            if(replaced != null)closeSession(replaced, false);
+            updateSessionArray();
+            server.notifyConnected(session);
+            if(request.payload != null)server.notifyReceived(session, request.payload);
+        }else if(object instanceof GatewayClose){
+            GatewaySession session = sessions.get(((GatewayClose) object).session);
+            if(session != null)closeSession(session, false);
+        }
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.github.kleesup.kleegdx.core.net.interest;
+
+import com.github.kleesup.kleegdx.core.net.NetParticipant;
+
+/**
+ * Receives visibility changes from an {@link InterestManager}. Usually, implementations send spawn and despawn packets
+ * to the participant.
+ * @param <T> The type of replicated objects.
+ */
+public interface InterestListener<T> {
+
+    /**
+     * Called when an object enters the area of interest of a participant.
+     * @param participant The participant that can now see the object.
+     * @param obj The object that became visible.
+     */
+    void spawn(NetParticipant participant, T obj);
+
+    /**
+     * Called when an object leaves the area of interest of a participant or is removed.
+     * @param participant The participant that can no longer see the object.
+     * @param obj The object that became invisible.
+     */
+    void despawn(NetParticipant participant, T obj);
+
+}
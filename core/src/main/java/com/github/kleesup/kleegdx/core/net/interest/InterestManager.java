@@ -0,0 +1,317 @@
+package com.github.kleesup.kleegdx.core.net.interest;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.LongMap;
+import com.github.kleesup.kleegdx.core.net.NetParticipant;
+import com.github.kleesup.kleegdx.core.net.SerializedPacket;
+import com.github.kleesup.kleegdx.core.util.Verify;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Manages which replicated objects are visible to which {@link NetParticipant}s, so updates only have to be sent to
+ * participants that can actually see an object.
+ * <p>
+ * The world is divided into a uniform grid of square cells. Each participant watches all cells within its view
+ * radius (in cells) around the cell it is located in, each object is located in exactly one cell. An object is
+ * visible to a participant if the participant watches the cell of the object. Visibility is updated incrementally:
+ * only when a participant or object changes its cell, the difference between the old and the new cells is computed
+ * and reported to the {@link InterestListener} as spawns and despawns.
+ * </p>
+ * <p>
+ * This class is not thread-safe and should only be used from the thread updating the server.
+ * </p>
+ * @param <T> The type of replicated objects.
+ */
+public class InterestManager<T> {
+
+    /** A participant and the square of cells it watches. */
+    private static final class Watcher {
+        private final NetParticipant participant;
+        private final Set<Object> visible = Collections.newSetFromMap(new IdentityHashMap<>());
+        private int cx, cy, radius;
+        private Watcher(NetParticipant participant){
+            this.participant = participant;
+        }
+        private boolean watches(int x, int y){
+            return Math.abs(x - cx) <= radius && Math.abs(y - cy) <= radius;
+        }
+    }
+
+    /** A replicated object and its cell. */
+    private static final class Entry<T> {
+        private final T obj;
+        private int cx, cy;
+        private Entry(T obj){
+            this.obj = obj;
+        }
+    }
+
+    private static final class Cell<T> {
+        private final Array<Entry<T>> objects = new Array<>(false, 4);
+        private final Array<Watcher> watchers = new Array<>(false, 4);
+        private boolean isEmpty(){
+            return objects.isEmpty() && watchers.isEmpty();
+        }
+    }
+
+    private final float invCellSize;
+    private final InterestListener<T> listener;
+    private final LongMap<Cell<T>> cells = new LongMap<>();
+    private final IdentityHashMap<NetParticipant, Watcher> watchers = new IdentityHashMap<>();
+    private final IdentityHashMap<T, Entry<T>> entries = new IdentityHashMap<>();
+
+    /**
+     * Builds a new interest manager.
+     * @param cellSize The side length of a grid cell in world units.
+     * @param listener The listener to report visibility changes to.
+     */
+    public InterestManager(float cellSize, InterestListener<T> listener){
+        Verify.checkArg(cellSize <= 0, "Cell size must be greater than 0!");
+        Verify.nonNullArg(listener, "Listener cannot be null!");
+        this.invCellSize = 1f / cellSize;
+        this.listener = listener;
+    }
+
+    /* -- Participants -- */
+
+    /**
+     * Adds a participant and spawns all objects within its area of interest.
+     * @param participant The participant to add.
+     * @param x The x position of the participant.
+     * @param y The y position of the participant.
+     * @param viewRadius The amount of cells the participant can see in each direction around its own cell.
+     */
+    public void addParticipant(NetParticipant participant, float x, float y, int viewRadius){
+        Verify.nonNullArg(participant, "Participant cannot be null!");
+        Verify.checkArg(viewRadius < 0, "View radius cannot be negative!");
+        Verify.checkArg(watchers.containsKey(participant), "Participant is already added!");
+        Watcher watcher = new Watcher(participant);
+        watcher.cx = toCell(x);
+        watcher.cy = toCell(y);
+        watcher.radius = viewRadius;
+        watchers.put(participant, watcher);
+        for(int cx = watcher.cx - viewRadius; cx <= watcher.cx + viewRadius; cx++){
+            for(int cy = watcher.cy - viewRadius; cy <= watcher.cy + viewRadius; cy++) watch(watcher, cx, cy);
+        }
+    }
+
+    /**
+     * Moves a participant. If it changes its cell, objects leaving its area of interest are despawned and objects
+     * entering it are spawned.
+     * @param participant The participant to move.
+     * @param x The new x position.
+     * @param y The new y position.
+     */
+    public void moveParticipant(NetParticipant participant, float x, float y){
+        Watcher watcher = watchers.get(participant);
+        if(watcher == null)return;
+        int ncx = toCell(x), ncy = toCell(y);
+        int ocx = watcher.cx, ocy = watcher.cy, r = watcher.radius;
+        if(ncx == ocx && ncy == ocy)return;
+        for(int cx = ocx - r; cx <= ocx + r; cx++){ //leave old cells that are not part of the new square
+            for(int cy = ocy - r; cy <= ocy + r; cy++){
+                if(Math.abs(cx - ncx) > r || Math.abs(cy - ncy) > r)unwatch(watcher, cx, cy, true);
+            }
+        }
+        watcher.cx = ncx;
+        watcher.cy = ncy;
+        for(int cx = ncx - r; cx <= ncx + r; cx++){ //enter new cells that were not part of the old square
+            for(int cy = ncy - r; cy <= ncy + r; cy++){
+                if(Math.abs(cx - ocx) > r || Math.abs(cy - ocy) > r)watch(watcher, cx, cy);
+            }
+        }
+    }
+
+    /**
+     * Removes a participant without despawning its visible objects, e.g. because it disconnected.
+     * @param participant The participant to remove.
+     */
+    public void removeParticipant(NetParticipant participant){
+        Watcher watcher = watchers.remove(participant);
+        if(watcher == null)return;
+        int r = watcher.radius;
+        for(int cx = watcher.cx - r; cx <= watcher.cx + r; cx++){
+            for(int cy = watcher.cy - r; cy <= watcher.cy + r; cy++) unwatch(watcher, cx, cy, false);
+        }
+    }
+
+    private void watch(Watcher watcher, int cx, int cy){
+        Cell<T> cell = obtainCell(cx, cy);
+        cell.watchers.add(watcher);
+        for(int i = 0; i < cell.objects.size; i++){
+            Entry<T> entry = cell.objects.get(i);
+            watcher.visible.add(entry.obj);
+            listener.spawn(watcher.participant, entry.obj);
+        }
+    }
+
+    private void unwatch(Watcher watcher, int cx, int cy, boolean notify){
+        long key = key(cx, cy);
+        Cell<T> cell = cells.get(key);
+        if(cell == null)return;
+        cell.watchers.removeValue(watcher, true);
+        for(int i = 0; i < cell.objects.size; i++){
+            Entry<T> entry = cell.objects.get(i);
+            watcher.visible.remove(entry.obj);
+            if(notify)listener.despawn(watcher.participant, entry.obj);
+        }
+        if(cell.isEmpty())cells.remove(key);
+    }
+
+    /* -- Objects -- */
+
+    /**
+     * Adds a replicated object and spawns it for all participants that can see it.
+     * @param obj The object to add.
+     * @param x The x position of the object.
+     * @param y The y position of the object.
+     */
+    public void addObject(T obj, float x, float y){
+        Verify.nonNullArg(obj, "Object cannot be null!");
+        Verify.checkArg(entries.containsKey(obj), "Object is already added!");
+        Entry<T> entry = new Entry<>(obj);
+        entry.cx = toCell(x);
+        entry.cy = toCell(y);
+        entries.put(obj, entry);
+        Cell<T> cell = obtainCell(entry.cx, entry.cy);
+        cell.objects.add(entry);
+        for(int i = 0; i < cell.watchers.size; i++) spawn(cell.watchers.get(i), obj);
+    }
+
+    /**
+     * Moves a replicated object. If it changes its cell, it is despawned for participants that can no longer see it
+     * and spawned for participants that can now see it.
+     * @param obj The object to move.
+     * @param x The new x position.
+     * @param y The new y position.
+     */
+    public void moveObject(T obj, float x, float y){
+        Entry<T> entry = entries.get(obj);
+        if(entry == null)return;
+        int ncx = toCell(x), ncy = toCell(y);
+        int ocx = entry.cx, ocy = entry.cy;
+        if(ncx == ocx && ncy == ocy)return;
+        long oldKey = key(ocx, ocy);
+        Cell<T> oldCell = cells.get(oldKey);
+        oldCell.objects.removeValue(entry, true);
+        for(int i = 0; i < oldCell.watchers.size; i++){
+            Watcher watcher = oldCell.watchers.get(i);
+            if(!watcher.watches(ncx, ncy))despawn(watcher, obj);
+        }
+        if(oldCell.isEmpty())cells.remove(oldKey);
+        entry.cx = ncx;
+        entry.cy = ncy;
+        Cell<T> newCell = obtainCell(ncx, ncy);
+        newCell.objects.add(entry);
+        for(int i = 0; i < newCell.watchers.size; i++){
+            Watcher watcher = newCell.watchers.get(i);
+            if(!watcher.watches(ocx, ocy))spawn(watcher, obj);
+        }
+    }
+
+    /**
+     * Removes a replicated object and despawns it for all participants that could see it.
+     * @param obj The object to remove.
+     */
+    public void removeObject(T obj){
+        Entry<T> entry = entries.remove(obj);
+        if(entry == null)return;
+        long key = key(entry.cx, entry.cy);
+        Cell<T> cell = cells.get(key);
+        cell.objects.removeValue(entry, true);
+        for(int i = 0; i < cell.watchers.size; i++) despawn(cell.watchers.get(i), obj);
+        if(cell.isEmpty())cells.remove(key);
+    }
+
+    private void spawn(Watcher watcher, T obj){
+        watcher.visible.add(obj);
+        listener.spawn(watcher.participant, obj);
+    }
+
+    private void despawn(Watcher watcher, T obj){
+        watcher.visible.remove(obj);
+        listener.despawn(watcher.participant, obj);
+    }
+
+    /* -- Sending -- */
+
+    /**
+     * Sends a packet to all participants that can currently see an object. The packet is serialized at most once, see
+     * {@link SerializedPacket}.
+     * @param obj The object the packet belongs to.
+     * @param packet The packet to send, e.g. an update of the object.
+     * @param udp Whether to use UDP.
+     */
+    public void sendToObservers(T obj, Object packet, boolean udp){
+        Entry<T> entry = entries.get(obj);
+        if(entry == null)return;
+        Cell<T> cell = cells.get(key(entry.cx, entry.cy));
+        if(cell.watchers.isEmpty())return;
+        SerializedPacket serialized = new SerializedPacket(packet);
+        for(int i = 0; i < cell.watchers.size; i++){
+            NetParticipant participant = cell.watchers.get(i).participant;
+            if(participant.isConnected())participant.sendSerialized(serialized, udp);
+        }
+    }
+
+    /* -- Queries -- */
+
+    /**
+     * @param participant The participant to check for.
+     * @param obj The object to check for.
+     * @return {@code true} if the object is within the area of interest of the participant, {@code false} otherwise.
+     */
+    public boolean isVisible(NetParticipant participant, T obj){
+        Watcher watcher = watchers.get(participant);
+        return watcher != null && watcher.visible.contains(obj);
+    }
+
+    /**
+     * @param participant The participant to get the objects for.
+     * @return An unmodifiable view of all objects the participant can currently see or an empty set if it is not
+     * added.
+     */
+    @SuppressWarnings("unchecked")
+    public Set<T> getVisibleObjects(NetParticipant participant){
+        Watcher watcher = watchers.get(participant);
+        return watcher != null ? (Set<T>) Collections.unmodifiableSet(watcher.visible) : Collections.emptySet();
+    }
+
+    /**
+     * Collects all participants that can currently see an object.
+     * @param obj The object to get the observers for.
+     * @param out The array to add the observers to.
+     * @return The given array.
+     */
+    public Array<NetParticipant> getObservers(T obj, Array<NetParticipant> out){
+        Entry<T> entry = entries.get(obj);
+        if(entry == null)return out;
+        Cell<T> cell = cells.get(key(entry.cx, entry.cy));
+        for(int i = 0; i < cell.watchers.size; i++) out.add(cell.watchers.get(i).participant);
+        return out;
+    }
+
+    /* -- Grid -- */
+
+    private Cell<T> obtainCell(int cx, int cy){
+        long key = key(cx, cy);
+        Cell<T> cell = cells.get(key);
+        if(cell == null){
+            cell = new Cell<>();
+            cells.put(key, cell);
+        }
+        return cell;
+    }
+
+    private int toCell(float coordinate){
+        return (int) Math.floor(coordinate * invCellSize);
+    }
+
+    private static long key(int cx, int cy){
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+}
@@ -0,0 +1,145 @@
+package com.github.kleesup.kleegdx.core.net.listener;
+
+import com.esotericsoftware.kryonet.Connection;
+import com.github.kleesup.kleegdx.core.net.packet.PacketQueue;
+import com.github.kleesup.kleegdx.core.net.packet.PooledPacket;
+import com.github.kleesup.kleegdx.core.util.TokenBucket;
+
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Holds the token buckets and held back packets of a single connection for {@link QueuedTypeListenerServer}. Buckets
+ * are created lazily per {@link RateLimit}, so changing a limit starts with a new, full bucket. Packets that are
+ * rejected are released via {@link PooledPacket#releaseHandled(Object)}.
+ */
+final class ConnectionRateLimiter {
+
+    private final Connection connection;
+    private final IdentityHashMap<RateLimit, TokenBucket> buckets = new IdentityHashMap<>();
+    private final ArrayDeque<Object> deferred = new ArrayDeque<>();
+    private int deferLimit;
+    private volatile boolean deferring;
+    private boolean disconnected;
+    private long limitedPackets;
+    private long throttledPackets;
+
+    ConnectionRateLimiter(Connection connection){
+        this.connection = connection;
+    }
+
+    /**
+     * Checks a received packet against its limits. Tokens are only consumed if the packet passes all limits, so a
+     * packet rejected by the connection limit does not cost a token of its class limit.
+     * @return {@code null} if the packet can be queued, otherwise the action that was applied to it.
+     * {@link RateLimit.Action#DISCONNECT} is only returned for the packet that closed the connection, packets received
+     * afterwards are reported as {@link RateLimit.Action#DROP}.
+     */
+    synchronized RateLimit.Action admit(Object msg, RateLimit typeLimit, RateLimit connectionLimit, long now){
+        if(disconnected){
+            limitedPackets++;
+            PooledPacket.releaseHandled(msg);
+            return RateLimit.Action.DROP;
+        }
+        if(deferring){ //keep the order of held back packets
+            defer(msg);
+            return RateLimit.Action.THROTTLE;
+        }
+        RateLimit violated = null;
+        if(typeLimit != null && !bucket(typeLimit).hasToken(now))violated = typeLimit;
+        else if(connectionLimit != null && !bucket(connectionLimit).hasToken(now))violated = connectionLimit;
+        if(violated == null){
+            if(typeLimit != null)bucket(typeLimit).tryConsume(now);
+            if(connectionLimit != null)bucket(connectionLimit).tryConsume(now);
+            return null;
+        }
+        switch (violated.getAction()){
+            case THROTTLE:
+                deferLimit = violated.getBurst();
+                defer(msg);
+                break;
+            case DISCONNECT:
+                limitedPackets++;
+                PooledPacket.releaseHandled(msg);
+                disconnected = true;
+                connection.close();
+                break;
+            default:
+                limitedPackets++;
+                PooledPacket.releaseHandled(msg);
+        }
+        return violated.getAction();
+    }
+
+    private void defer(Object msg){
+        if(deferred.size() >= deferLimit){
+            limitedPackets++;
+            PooledPacket.releaseHandled(msg);
+            return;
+        }
+        deferred.add(msg);
+        deferring = true;
+        throttledPackets++;
+    }
+
+    /**
+     * Queues held back packets as long as their limits allow it.
+     * @return The amount of queued packets.
+     */
+    synchronized int release(PacketQueue packets, QueuedTypeListenerServer limits, long now){
+        int released = 0;
+        Object msg;
+        while ((msg = deferred.peek()) != null){
+            RateLimit typeLimit = limits.getRateLimit(msg.getClass());
+            RateLimit connectionLimit = limits.getConnectionRateLimit();
+            if(typeLimit != null && !bucket(typeLimit).hasToken(now))break;
+            if(connectionLimit != null && !bucket(connectionLimit).hasToken(now))break;
+            if(typeLimit != null)bucket(typeLimit).tryConsume(now);
+            if(connectionLimit != null)bucket(connectionLimit).tryConsume(now);
+            packets.add(deferred.poll());
+            released++;
+        }
+        deferring = !deferred.isEmpty();
+        return released;
+    }
+
+    /**
+     * Removes all held back packets.
+     * @return The amount of removed packets.
+     */
+    synchronized int removeDeferred(Consumer<Object> consumer){
+        int removed = deferred.size();
+        Object msg;
+        while ((msg = deferred.poll()) != null) consumer.accept(msg);
+        deferring = false;
+        return removed;
+    }
+
+    /**
+     * Releases all held back packets of a disconnected connection. Packets received afterwards are dropped.
+     */
+    synchronized void close(){
+        disconnected = true;
+        removeDeferred(PooledPacket::releaseHandled);
+    }
+
+    private TokenBucket bucket(RateLimit limit){
+        TokenBucket bucket = buckets.get(limit);
+        if(bucket == null)buckets.put(limit, bucket = limit.newBucket());
+        return bucket;
+    }
+
+    boolean isDeferring(){
+        return deferring;
+    }
+
+    synchronized long getLimitedPackets(){
+        return limitedPackets;
+    }
+
+    synchronized long getThrottledPackets(){
+        return throttledPackets;
+    }
+
+}
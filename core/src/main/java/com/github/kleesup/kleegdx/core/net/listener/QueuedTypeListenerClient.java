@@ -3,19 +3,24 @@ package com.github.kleesup.kleegdx.core.net.listener;
 import com.esotericsoftware.kryonet.Connection;
 import com.esotericsoftware.kryonet.FrameworkMessage;
 import com.esotericsoftware.kryonet.Listener;
+import com.github.kleesup.kleegdx.core.net.packet.IPacketBuffer;
+import com.github.kleesup.kleegdx.core.net.packet.IPacketDrainable;
 import com.github.kleesup.kleegdx.core.net.packet.IPacketQueueable;
 import com.github.kleesup.kleegdx.core.net.packet.PacketQueue;
+import com.github.kleesup.kleegdx.core.net.packet.RingPacketBuffer;
 import com.github.kleesup.kleegdx.core.net.packet.TypePacketProcessor;
 import com.github.kleesup.kleegdx.core.net.packet.TypePacketQueue;
 import com.github.kleesup.kleegdx.core.util.Updateable;
 
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 /**
  * Similar to the {@link QueuedTypeListenerServer} but it will just hold one single packet queue for the client.
  */
-public class QueuedTypeListenerClient extends TypePacketProcessor implements Listener, Updateable, IPacketQueueable {
+public class QueuedTypeListenerClient extends TypePacketProcessor implements Listener, Updateable, IPacketQueueable,
+        IPacketDrainable {
 
     private Consumer<Connection> connectFunction, disconnectFunction;
     private final ConcurrentLinkedQueue<Connection> connections = new ConcurrentLinkedQueue<>();
@@ -25,6 +30,50 @@ public class QueuedTypeListenerClient extends TypePacketProcessor implements Lis
         this.queue = new TypePacketQueue(null, maxPacketsPerRead, this);
     }
 
+    /**
+     * Builds a new listener with a bounded packet queue.
+     * @param maxPacketsPerRead The max amount of packets handled per {@link #update(float)}.
+     * @param capacity The max amount of queued packets, values smaller or equal to {@code 0} make the queue unbounded.
+     * @param policy The policy to apply when a packet is received while the queue is full.
+     */
+    public QueuedTypeListenerClient(int maxPacketsPerRead, int capacity, PacketQueue.OverflowPolicy policy){
+        this.queue = new TypePacketQueue(null, maxPacketsPerRead, capacity, policy, this);
+    }
+
+    /**
+     * Builds a new listener with a custom packet storage.
+     * @param maxPacketsPerRead The max amount of packets handled per {@link #update(float)}.
+     * @param buffer The buffer to store queued packets in, e.g. a {@link RingPacketBuffer} for a garbage free
+     *               handoff.
+     */
+    public QueuedTypeListenerClient(int maxPacketsPerRead, IPacketBuffer buffer){
+        this.queue = new TypePacketQueue(null, maxPacketsPerRead, buffer, this);
+    }
+
+    /* -- Bounds -- */
+
+    /**
+     * Sets a function that is called each time a packet is received while the queue is full.
+     * @param function The function receiving the full queue and the packet.
+     */
+    public void onOverflow(BiConsumer<PacketQueue, Object> function){
+        queue.onOverflow(function);
+    }
+
+    /**
+     * @return The amount of packets dropped because the queue was full.
+     */
+    public long getDroppedPackets(){
+        return queue.getDroppedPackets();
+    }
+
+    /**
+     * @return The internal packet queue.
+     */
+    public PacketQueue getQueue(){
+        return queue;
+    }
+
     /* -- Connect/Disconnect -- */
 
     public void onConnect(Consumer<Connection> function){
@@ -74,4 +123,9 @@ public class QueuedTypeListenerClient extends TypePacketProcessor implements Lis
         }
         queue.update(delta);
     }
+
+    @Override
+    public int getLastDrainCount() {
+        return queue.getLastDrainCount();
+    }
 }
@@ -1,32 +1,125 @@
 package com.github.kleesup.kleegdx.core.net.listener;
 
+import com.badlogic.gdx.utils.ObjectIntMap;
 import com.esotericsoftware.kryonet.Connection;
 import com.esotericsoftware.kryonet.FrameworkMessage;
 import com.esotericsoftware.kryonet.Listener;
+import com.github.kleesup.kleegdx.core.net.packet.IPacketBuffer;
+import com.github.kleesup.kleegdx.core.net.packet.IPacketDrainable;
+import com.github.kleesup.kleegdx.core.net.packet.LinkedPacketBuffer;
 import com.github.kleesup.kleegdx.core.net.packet.PacketQueue;
+import com.github.kleesup.kleegdx.core.net.packet.PooledPacket;
 import com.github.kleesup.kleegdx.core.net.packet.TypePacketProcessor;
 import com.github.kleesup.kleegdx.core.net.packet.TypePacketQueue;
 import com.github.kleesup.kleegdx.core.util.Updateable;
+import com.github.kleesup.kleegdx.core.util.Verify;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * An implementation of {@link Listener} which has the same feature as
  * {@link com.esotericsoftware.kryonet.Listener.TypeListener} but is furthermore extended to queue packets into an
  * {@link ConcurrentHashMap}.
+ * <p>
+ * By default, all connection queues are drained one after another on the updating thread. With
+ * {@link #setParallelDrain(ForkJoinPool, int)} the queues are instead partitioned across a pool. Each queue is still
+ * drained by a single worker, so the order of packets per connection is kept, and {@link #update(float)} only returns
+ * once all workers finished. Packets registered as main-thread only (see
+ * {@link TypePacketProcessor#register(Class, java.util.function.BiConsumer, boolean)}) stop the parallel drain of
+ * their connection and are, together with all following packets of that connection, handled in a serial phase
+ * afterwards. Handlers that are not main-thread only must be safe to run concurrently for different connections.
+ * </p>
+ * <p>
+ * The work per update can be bounded with {@link #setTickBudget(int, long)}, independent of the amount of
+ * connections. Queues are then drained serially with deficit round-robin: each connection with queued packets
+ * receives a {@link #getBudgetQuantum() quantum} of packets per round until the budget is used up. Packets that were
+ * not handled stay queued and the next update continues with the connection that was interrupted, together with its
+ * unused quantum, so every connection gets its fair share over multiple updates. When draining in parallel, only the
+ * packet budget is applied by splitting it equally across all connections.
+ * </p>
+ * <p>
+ * Inbound packets can be rate limited per connection ({@link #setConnectionRateLimit(RateLimit)}) and per packet
+ * class ({@link #setRateLimit(Class, RateLimit)}). Limits are checked on the network thread before a packet is queued,
+ * so packets of a flooding connection neither fill its queue nor cost handler time.
+ * </p>
  */
-public class QueuedTypeListenerServer extends TypePacketProcessor implements Listener, Updateable {
+public class QueuedTypeListenerServer extends TypePacketProcessor implements Listener, Updateable, IPacketDrainable {
 
     private Consumer<Connection> connectFunction, disconnectFunction;
     private final ConcurrentLinkedQueue<Connection> connections = new ConcurrentLinkedQueue<>();
     private final ConcurrentLinkedQueue<Connection> disconnects = new ConcurrentLinkedQueue<>();
+    /** Queues of disconnected connections, cleared by the updating thread as it is their only consumer. */
+    private final ConcurrentLinkedQueue<PacketQueue> closedQueues = new ConcurrentLinkedQueue<>();
     private final ConcurrentHashMap<Connection, PacketQueue> queue;
+    /** Queues of all connections in the order they connected, used for a stable round-robin order. */
+    private final ArrayList<PacketQueue> orderedQueues = new ArrayList<>();
+    private static final PacketQueue[] EMPTY_QUEUES = new PacketQueue[0];
+    private volatile PacketQueue[] queueArray = EMPTY_QUEUES;
     private final int maxPacketsPerRead;
+    private int lastDrainCount;
+    private int queueCapacity;
+    private PacketQueue.OverflowPolicy overflowPolicy = PacketQueue.OverflowPolicy.DROP_NEWEST;
+    private BiConsumer<PacketQueue, Object> overflowFunction;
+    private ForkJoinPool drainPool;
+    private int connectionsPerTask;
+    /** The queues drained by the running parallel drain, a snapshot of {@link #queueArray}. */
+    private PacketQueue[] drainQueues = EMPTY_QUEUES;
+    private int[] drainReads = new int[0];
+    /** Tasks draining consecutive ranges of {@link #drainQueues}, rebuilt when the amount of queues changes. */
+    private DrainTask[] drainTasks = new DrainTask[0];
+    private int drainTasksSize = -1, drainTasksSplit;
+    private final RecursiveAction drainRoot = new RecursiveAction() {
+        @Override
+        protected void compute() {
+            invokeAll(drainTasks);
+        }
+    };
+    private final Supplier<IPacketBuffer> bufferFactory;
+
+    /* -- Budget -- */
+    /** Default amount of packets a connection may handle per round of deficit round-robin. */
+    public static final int DEFAULT_BUDGET_QUANTUM = 8;
+    private int tickPacketBudget;
+    private long tickNanosBudget;
+    private int budgetQuantum = DEFAULT_BUDGET_QUANTUM;
+    private final ObjectIntMap<PacketQueue> deficits = new ObjectIntMap<>();
+    /** The queue the next budgeted drain starts with. */
+    private PacketQueue resumeQueue;
+    private long budgetExhaustedTicks;
+
+    /* -- Rate limits -- */
+    private volatile RateLimit connectionRateLimit;
+    private volatile Map<Class<?>, RateLimit> typeRateLimits = Collections.emptyMap();
+    private final ConcurrentHashMap<Connection, ConnectionRateLimiter> limiters = new ConcurrentHashMap<>();
+    private final LongAdder rateLimitDisconnects = new LongAdder();
+
     public QueuedTypeListenerServer(int maxPacketsPerRead) {
+        this(maxPacketsPerRead, LinkedPacketBuffer::new);
+    }
+
+    /**
+     * Builds a new listener with a custom packet storage for each connection.
+     * @param maxPacketsPerRead The max amount of packets handled per connection and {@link #update(float)}.
+     * @param bufferFactory Builds the buffer for the queue of each new connection, e.g.
+     *                      {@code () -> new RingPacketBuffer(1024)} for a garbage free handoff.
+     */
+    public QueuedTypeListenerServer(int maxPacketsPerRead, Supplier<IPacketBuffer> bufferFactory) {
+        Verify.nonNullArg(bufferFactory, "Buffer factory cannot be null!");
         queue = new ConcurrentHashMap<>();
         this.maxPacketsPerRead = maxPacketsPerRead;
+        this.bufferFactory = bufferFactory;
     }
 
     /* -- Connect/Disconnect -- */
@@ -38,16 +131,294 @@ public class QueuedTypeListenerServer extends TypePacketProcessor implements Lis
         this.disconnectFunction = function;
     }
 
+    /* -- Bounds -- */
+
+    /**
+     * Bounds the packet queue of every current and future connection.
+     * @param capacity The max amount of queued packets per connection, values smaller or equal to {@code 0} make the
+     *                 queues unbounded.
+     * @param policy The policy to apply when a packet is received while the queue of its connection is full.
+     */
+    public void setQueueBounds(int capacity, PacketQueue.OverflowPolicy policy){
+        this.queueCapacity = capacity;
+        this.overflowPolicy = policy;
+        for(PacketQueue packets : queue.values()){
+            packets.setCapacity(capacity);
+            packets.setOverflowPolicy(policy);
+        }
+    }
+
+    /**
+     * Sets a function that is called on the network thread each time a connection receives a packet while its queue
+     * is full.
+     * @param function The function receiving the full queue (see {@link PacketQueue#getOwner()}) and the packet.
+     */
+    public void onOverflow(BiConsumer<PacketQueue, Object> function){
+        this.overflowFunction = function;
+        for(PacketQueue packets : queue.values()) packets.onOverflow(function);
+    }
+
+    /**
+     * @return The amount of packets dropped by full queues of all currently connected connections.
+     */
+    public long getDroppedPackets(){
+        long dropped = 0;
+        for(PacketQueue packets : queue.values()) dropped += packets.getDroppedPackets();
+        return dropped;
+    }
+
+    /**
+     * @return The max amount of queued packets per connection or {@code 0} if the queues are unbounded.
+     */
+    public int getQueueCapacity(){
+        return queueCapacity;
+    }
+
+    /**
+     * @param connection The connection to get the queue for.
+     * @return The packet queue of the connection or {@code null} if it is not connected.
+     */
+    public PacketQueue getQueue(Connection connection){
+        return queue.get(connection);
+    }
+
+    /**
+     * Removes all not yet handled packets of a connection in the order they were received, e.g. to hand them to
+     * another listener when the connection is migrated. Packets that are held back by a throttling rate limit are
+     * removed as well. Must be called by the thread updating this listener.
+     * @param connection The connection to remove the packets of.
+     * @param consumer Receives the removed packets.
+     * @return The amount of removed packets.
+     */
+    public int removePending(Connection connection, Consumer<Object> consumer){
+        int removed = 0;
+        PacketQueue packets = queue.get(connection);
+        if(packets != null){
+            Object obj;
+            while ((obj = packets.poll()) != null) {
+                consumer.accept(obj);
+                removed++;
+            }
+        }
+        ConnectionRateLimiter limiter = limiters.get(connection);
+        if(limiter != null)removed += limiter.removeDeferred(consumer); //held back packets arrived after queued ones
+        return removed;
+    }
+
+    /**
+     * Queues packets of a connection that already passed the rate limits, e.g. packets removed from another listener
+     * via {@link #removePending(Connection, Consumer)} when the connection is migrated. Neither the rate limits nor
+     * the overflow policy are applied again, packets that do not fit into the queue are dropped.
+     * @param connection The connection the packets were received from.
+     * @param packets The packets in the order they were received.
+     * @return The amount of queued packets.
+     */
+    public int enqueueAdmitted(Connection connection, Iterable<?> packets){
+        PacketQueue target = queue.get(connection);
+        if(target == null){ //already disconnected
+            for(Object obj : packets) PooledPacket.releaseHandled(obj);
+            return 0;
+        }
+        int queued = 0;
+        for(Object obj : packets) if(target.offerAdmitted(obj))queued++;
+        return queued;
+    }
+
+    /* -- Budget -- */
+
+    /**
+     * Bounds the amount of work done per {@link #update(float)} across all connections. Both limits may be combined,
+     * handling stops at whichever is reached first. The nanosecond budget is checked after each quantum, so a single
+     * update may exceed it by the time needed to handle one quantum. When draining in parallel, see
+     * {@link #setParallelDrain(ForkJoinPool, int)}, the packet budget is split equally across all connections and the
+     * nanosecond budget is not applied, as the time spent on each pool thread cannot be bounded per update.
+     * @param maxPackets The max amount of packets handled per update, values smaller or equal to {@code 0} disable
+     *                   this limit.
+     * @param maxNanos The max time spent handling packets per update, values smaller or equal to {@code 0} disable
+     *                 this limit.
+     */
+    public void setTickBudget(int maxPackets, long maxNanos){
+        this.tickPacketBudget = Math.max(0, maxPackets);
+        this.tickNanosBudget = Math.max(0, maxNanos);
+    }
+
+    /**
+     * Sets the amount of packets a connection may handle per round before the next connection is served.
+     * Smaller values give a finer interleaving, larger values have less overhead.
+     * @param quantum The quantum, must be greater than {@code 0}.
+     */
+    public void setBudgetQuantum(int quantum){
+        Verify.checkArg(quantum <= 0, "Quantum must be greater than 0!");
+        this.budgetQuantum = quantum;
+    }
+
+    public int getBudgetQuantum(){
+        return budgetQuantum;
+    }
+
+    public int getTickPacketBudget(){
+        return tickPacketBudget;
+    }
+
+    public long getTickNanosBudget(){
+        return tickNanosBudget;
+    }
+
+    public boolean hasTickBudget(){
+        return tickPacketBudget > 0 || tickNanosBudget > 0;
+    }
+
+    /**
+     * @return The amount of updates that ended because the tick budget was used up while packets were still queued.
+     */
+    public long getBudgetExhaustedTicks(){
+        return budgetExhaustedTicks;
+    }
+
+    /**
+     * @return The amount of packets currently queued across all connections.
+     */
+    public int getBacklog(){
+        int backlog = 0;
+        for(PacketQueue packets : queue.values()) backlog += packets.size();
+        return backlog;
+    }
+
+    /* -- Rate limits -- */
+
+    /**
+     * Limits the amount of packets every connection may send, regardless of their class.
+     * @param limit The limit or {@code null} to remove it.
+     */
+    public void setConnectionRateLimit(RateLimit limit){
+        this.connectionRateLimit = limit;
+    }
+
+    public RateLimit getConnectionRateLimit(){
+        return connectionRateLimit;
+    }
+
+    /**
+     * Limits the amount of packets of a specific class every connection may send. A packet has to pass both its class
+     * limit and the connection limit.
+     * @param clazz The class of the packets to limit. Subclasses are not affected.
+     * @param limit The limit or {@code null} to remove it.
+     */
+    public synchronized void setRateLimit(Class<?> clazz, RateLimit limit){
+        Verify.nonNullArg(clazz, "Class cannot be null!");
+        HashMap<Class<?>, RateLimit> limits = new HashMap<>(typeRateLimits);
+        if(limit == null)limits.remove(clazz);
+        else limits.put(clazz, limit);
+        this.typeRateLimits = limits;
+    }
+
+    /**
+     * @param clazz The class of a packet.
+     * @return The limit of that class or {@code null} if it is not limited.
+     */
+    public RateLimit getRateLimit(Class<?> clazz){
+        return typeRateLimits.get(clazz);
+    }
+
+    public boolean hasRateLimits(){
+        return connectionRateLimit != null || !typeRateLimits.isEmpty();
+    }
+
+    /**
+     * @return The amount of packets of all currently connected connections that were dropped because of a rate limit.
+     */
+    public long getRateLimitedPackets(){
+        long limited = 0;
+        for(ConnectionRateLimiter limiter : limiters.values()) limited += limiter.getLimitedPackets();
+        return limited;
+    }
+
+    /**
+     * @param connection The connection to get the amount for.
+     * @return The amount of packets of the connection that were dropped because of a rate limit.
+     */
+    public long getRateLimitedPackets(Connection connection){
+        ConnectionRateLimiter limiter = limiters.get(connection);
+        return limiter != null ? limiter.getLimitedPackets() : 0;
+    }
+
+    /**
+     * @return The amount of packets of all currently connected connections that were held back by a
+     * {@link RateLimit.Action#THROTTLE} limit.
+     */
+    public long getThrottledPackets(){
+        long throttled = 0;
+        for(ConnectionRateLimiter limiter : limiters.values()) throttled += limiter.getThrottledPackets();
+        return throttled;
+    }
+
+    /**
+     * @return The amount of connections that were closed by a {@link RateLimit.Action#DISCONNECT} limit.
+     */
+    public long getRateLimitDisconnects(){
+        return rateLimitDisconnects.sum();
+    }
+
+    /**
+     * Queues held back packets of all connections as far as their limits allow it.
+     */
+    private void releaseThrottled(){
+        long now = System.nanoTime();
+        for(Map.Entry<Connection, ConnectionRateLimiter> entry : limiters.entrySet()){
+            ConnectionRateLimiter limiter = entry.getValue();
+            if(!limiter.isDeferring())continue;
+            PacketQueue packets = queue.get(entry.getKey());
+            if(packets != null)limiter.release(packets, this, now);
+        }
+    }
+
+    /* -- Parallel draining -- */
+
+    /**
+     * Enables or disables draining the connection queues in parallel.
+     * @param pool The pool to drain with or {@code null} to drain all queues serially on the updating thread.
+     * @param connectionsPerTask The max amount of connections drained by one pool task.
+     */
+    public void setParallelDrain(ForkJoinPool pool, int connectionsPerTask){
+        this.drainPool = pool;
+        this.connectionsPerTask = Math.max(1, connectionsPerTask);
+    }
+    /** See {@link #setParallelDrain(ForkJoinPool, int)}. */
+    public void setParallelDrain(ForkJoinPool pool){
+        setParallelDrain(pool, 16);
+    }
+
+    public boolean isDrainingParallel(){
+        return drainPool != null;
+    }
+
     @Override
     public void connected(Connection connection) {
+        TypePacketQueue packets = new TypePacketQueue(connection, maxPacketsPerRead, bufferFactory.get(), this);
+        if(queueCapacity > 0)packets.setCapacity(queueCapacity);
+        packets.setOverflowPolicy(overflowPolicy);
+        packets.onOverflow(overflowFunction);
+        limiters.put(connection, new ConnectionRateLimiter(connection));
+        synchronized (orderedQueues){
+            PacketQueue replaced = queue.put(connection, packets);
+            if(replaced != null)orderedQueues.remove(replaced);
+            orderedQueues.add(packets);
+            queueArray = orderedQueues.toArray(EMPTY_QUEUES);
+        }
         connections.add(connection);
-        queue.put(connection, new TypePacketQueue(connection, maxPacketsPerRead, this));
     }
 
     @Override
     public void disconnected(Connection connection) {
         disconnects.add(connection);
-        queue.remove(connection);
+        synchronized (orderedQueues){
+            PacketQueue packets = queue.remove(connection);
+            if(packets != null && orderedQueues.remove(packets))
+                queueArray = orderedQueues.toArray(EMPTY_QUEUES);
+            if(packets != null)closedQueues.add(packets);
+        }
+        ConnectionRateLimiter limiter = limiters.remove(connection);
+        if(limiter != null)limiter.close();
     }
 
     @Override
@@ -64,14 +435,197 @@ public class QueuedTypeListenerServer extends TypePacketProcessor implements Lis
                 disconnectFunction.accept(obj);
             }
         }
+        if(!closedQueues.isEmpty()){
+            PacketQueue packets;
+            while ((packets = closedQueues.poll()) != null) packets.clear(); //return not handled packets to their pool
+        }
+        lastDrainCount = 0;
         if(queue.isEmpty())return;
-        for (Connection connection : queue.keySet()) queue.get(connection).update(delta);
+        if(!limiters.isEmpty())releaseThrottled();
+        if(drainPool != null){
+            lastDrainCount = drainParallel();
+            return;
+        }
+        if(hasTickBudget()){
+            lastDrainCount = drainBudgeted();
+            return;
+        }
+        int drained = 0;
+        for (PacketQueue packets : queueArray) {
+            packets.update(delta);
+            drained += packets.getLastDrainCount();
+        }
+        lastDrainCount = drained;
+    }
+
+    /**
+     * Drains the queues with deficit round-robin in the order the connections connected, until all queues are empty
+     * or reached their read limit, or the tick budget is used up.
+     * @return The amount of handled packets.
+     */
+    private int drainBudgeted(){
+        PacketQueue[] queues = queueArray;
+        int size = queues.length;
+        if(size == 0)return 0;
+        if(drainReads.length < size)drainReads = new int[Math.max(size, drainReads.length * 2)];
+        Arrays.fill(drainReads, 0, size, 0);
+        if(deficits.size > size){ //forget deficits of disconnected connections
+            ObjectIntMap.Keys<PacketQueue> keys = deficits.keys();
+            while (keys.hasNext()) if(queue.get(keys.next().getOwner()) == null)keys.remove();
+        }
+        int budget = tickPacketBudget > 0 ? tickPacketBudget : Integer.MAX_VALUE;
+        long deadline = tickNanosBudget > 0 ? System.nanoTime() + tickNanosBudget : 0;
+        int start = indexOf(queues, resumeQueue);
+        int drained = 0;
+        boolean progress = true, exhausted = false;
+        rounds:
+        while (progress){
+            progress = false;
+            boolean backlog = false; //whether a queue served in this round still has packets
+            for(int k = 0; k < size; k++){
+                int i = (start + k) % size;
+                PacketQueue packets = queues[i];
+                int left = packets.getMaxPacketsPerRead() - drainReads[i];
+                if(left <= 0){
+                    backlog |= !packets.isEmpty();
+                    continue;
+                }
+                if(packets.isEmpty()){
+                    deficits.remove(packets, 0); //idle connections do not save up a deficit
+                    continue;
+                }
+                int deficit = deficits.get(packets, 0) + budgetQuantum;
+                int reads = packets.drain(Math.min(Math.min(deficit, left), budget), false);
+                drainReads[i] += reads;
+                drained += reads;
+                budget -= reads;
+                if(reads > 0)progress = true;
+                boolean empty = packets.isEmpty();
+                if(empty)deficits.remove(packets, 0);
+                else deficits.put(packets, Math.min(deficit - reads, budgetQuantum));
+                backlog |= !empty;
+                if(budget <= 0 || deadline != 0 && System.nanoTime() - deadline >= 0){
+                    //continue with this connection if it was interrupted, otherwise with the next one
+                    resumeQueue = reads < deficit && !empty ? packets : queues[(i + 1) % size];
+                    if(backlog || hasBacklog(queues, i + 1, start + size))budgetExhaustedTicks++;
+                    exhausted = true;
+                    break rounds;
+                }
+            }
+        }
+        if(!exhausted)resumeQueue = queues[(start + 1) % size]; //rotate the first connection between updates
+        return drained;
+    }
+
+    /**
+     * @return The index of the queue or {@code 0} if it is not part of the queues anymore.
+     */
+    private static int indexOf(PacketQueue[] queues, PacketQueue packets){
+        if(packets == null)return 0;
+        for(int i = 0; i < queues.length; i++) if(queues[i] == packets)return i;
+        return 0;
+    }
+
+    /**
+     * @return Whether any queue not served yet in the current round still has packets.
+     */
+    private static boolean hasBacklog(PacketQueue[] queues, int from, int to){
+        for(int k = from; k < to; k++) if(!queues[k % queues.length].isEmpty())return true;
+        return false;
+    }
+
+    /**
+     * Drains all queues in parallel until they are empty, reached their read limit or hit a main-thread only packet.
+     * Afterwards, remaining packets of queues which still have reads left are handled serially in the order the
+     * connections connected. The tick nanosecond budget is not applied, see {@link #setTickBudget(int, long)}.
+     * @return The amount of handled packets.
+     */
+    private int drainParallel(){
+        PacketQueue[] queues = queueArray;
+        int size = queues.length;
+        if(size == 0)return 0;
+        drainQueues = queues;
+        if(drainReads.length < size)drainReads = new int[Math.max(size, drainReads.length * 2)];
+        if(size != drainTasksSize || connectionsPerTask != drainTasksSplit)buildDrainTasks(size);
+        for(DrainTask task : drainTasks) task.reinitialize();
+        drainRoot.reinitialize();
+        drainPool.invoke(drainRoot);
+        int drained = 0;
+        for(int i = 0; i < size; i++){
+            PacketQueue packets = queues[i];
+            int reads = drainReads[i];
+            int limit = getReadLimit(packets);
+            if(reads < limit && !packets.isEmpty())reads += packets.drain(limit - reads, false);
+            drained += reads;
+        }
+        drainQueues = EMPTY_QUEUES; //do not hold on to queues of disconnected connections
+        return drained;
+    }
+
+    /**
+     * Splits the queues into ranges of at most {@link #connectionsPerTask} queues, each drained by a reusable task.
+     */
+    private void buildDrainTasks(int size){
+        int split = connectionsPerTask;
+        DrainTask[] tasks = new DrainTask[(size + split - 1) / split];
+        for(int i = 0; i < tasks.length; i++) tasks[i] = new DrainTask(i * split, Math.min(size, (i + 1) * split));
+        drainTasks = tasks;
+        drainTasksSize = size;
+        drainTasksSplit = split;
+    }
+
+    /**
+     * @return The max amount of packets a queue may handle during a parallel drain, which is its read limit or its
+     * equal share of the packet budget.
+     */
+    private int getReadLimit(PacketQueue packets){
+        int limit = packets.getMaxPacketsPerRead();
+        if(tickPacketBudget <= 0)return limit;
+        return Math.min(limit, Math.max(1, tickPacketBudget / Math.max(1, drainQueues.length)));
+    }
+
+    /**
+     * Task draining a range of {@link #drainQueues}. Tasks are reinitialized and reused every update.
+     */
+    private class DrainTask extends RecursiveAction {
+        private final int from, to;
+        private DrainTask(int from, int to){
+            this.from = from;
+            this.to = to;
+        }
+        @Override
+        protected void compute() {
+            PacketQueue[] queues = drainQueues;
+            for(int i = from; i < to; i++){
+                PacketQueue packets = queues[i];
+                drainReads[i] = packets.drain(getReadLimit(packets), true);
+            }
+        }
+    }
+
+    @Override
+    public int getLastDrainCount() {
+        return lastDrainCount;
     }
 
     @Override
     public void received(Connection con, Object msg) {
         if(msg instanceof FrameworkMessage)return;
-        queue.get(con).add(msg);
+        PacketQueue packets = queue.get(con);
+        if(packets == null){ //already disconnected
+            PooledPacket.releaseHandled(msg);
+            return;
+        }
+        if(hasRateLimits()){
+            ConnectionRateLimiter limiter = limiters.get(con);
+            if(limiter != null){
+                RateLimit.Action action = limiter.admit(msg, typeRateLimits.get(msg.getClass()), connectionRateLimit,
+                        System.nanoTime());
+                if(action == RateLimit.Action.DISCONNECT)rateLimitDisconnects.increment(); //reported once per connection
+                if(action != null)return;
+            }
+        }
+        packets.add(msg);
     }
 
 }
@@ -0,0 +1,54 @@
+package com.github.kleesup.kleegdx.core.net.listener;
+
+import com.github.kleesup.kleegdx.core.util.TokenBucket;
+import com.github.kleesup.kleegdx.core.util.Verify;
+import lombok.Getter;
+
+/**
+ * Describes how many packets a connection may send, see
+ * {@link QueuedTypeListenerServer#setConnectionRateLimit(RateLimit)} and
+ * {@link QueuedTypeListenerServer#setRateLimit(Class, RateLimit)}. Each connection gets its own {@link TokenBucket}
+ * per limit.
+ */
+@Getter
+public final class RateLimit {
+
+    /**
+     * Determines what happens to packets exceeding a limit.
+     */
+    public enum Action {
+        /** The packet is dropped. */
+        DROP,
+        /**
+         * The packet is held back and queued once the connection is allowed to send again. Up to
+         * {@link #getBurst()} packets are held back per connection, further packets are dropped.
+         */
+        THROTTLE,
+        /** The packet is dropped and the connection is closed. */
+        DISCONNECT
+    }
+
+    private final double rate;
+    private final int burst;
+    private final Action action;
+
+    /**
+     * Builds a new limit.
+     * @param rate The amount of packets allowed per second on average.
+     * @param burst The amount of packets allowed at once.
+     * @param action What happens to packets exceeding the limit.
+     */
+    public RateLimit(double rate, int burst, Action action){
+        Verify.checkArg(rate <= 0, "Rate must be greater than 0!");
+        Verify.checkArg(burst <= 0, "Burst must be greater than 0!");
+        Verify.nonNullArg(action, "Action cannot be null!");
+        this.rate = rate;
+        this.burst = burst;
+        this.action = action;
+    }
+
+    TokenBucket newBucket(){
+        return new TokenBucket(rate, burst);
+    }
+
+}
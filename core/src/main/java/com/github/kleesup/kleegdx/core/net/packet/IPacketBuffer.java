@@ -0,0 +1,71 @@
+package com.github.kleesup.kleegdx.core.net.packet;
+
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+/**
+ * The storage behind a {@link PacketQueue}. Packets are added by any amount of (network) threads and are removed by
+ * a single consumer at a time, usually the thread updating the queue.
+ */
+public interface IPacketBuffer {
+
+    /**
+     * Adds a packet to the end of this buffer if it is not full.
+     * @param obj The packet to add, cannot be {@code null}.
+     * @return {@code true} if the packet was added, {@code false} if the buffer is full.
+     */
+    boolean offer(Object obj);
+
+    /**
+     * Removes the first packet of this buffer. Must only be called by the consumer, unless
+     * {@link #isSingleConsumer()} returns {@code false}.
+     * @return The removed packet or {@code null} if there is none.
+     */
+    Object poll();
+
+    /**
+     * @return The first packet of this buffer without removing it or {@code null} if there is none.
+     */
+    Object peek();
+
+    /**
+     * Removes up to {@code max} packets in order and hands each of them to a handler.
+     * @param handler The handler to pass removed packets to.
+     * @param max The max amount of packets to remove.
+     * @return The amount of removed packets.
+     */
+    int drain(Consumer<Object> handler, int max);
+
+    /**
+     * Returns a weakly consistent iterator over the stored packets in order. It never throws a
+     * {@link java.util.ConcurrentModificationException}, returns each packet at most once and may or may not reflect
+     * packets added or removed after its creation.
+     * @return The iterator. {@link Iterator#remove()} may be unsupported.
+     */
+    Iterator<Object> iterator();
+
+    /**
+     * @return The amount of packets currently stored, computed in constant time.
+     */
+    int size();
+
+    boolean isEmpty();
+
+    /**
+     * @return The max amount of packets this buffer can hold.
+     */
+    int getCapacity();
+
+    /**
+     * Changes the max amount of packets this buffer can hold. Buffers with a fixed storage may clamp the value.
+     * @param capacity The new capacity, values smaller or equal to {@code 0} remove the limit if possible.
+     */
+    void setCapacity(int capacity);
+
+    /**
+     * @return {@code true} if packets may only be removed by the consumer thread, which for example forbids dropping
+     * the oldest packet from a producer thread, {@code false} otherwise.
+     */
+    boolean isSingleConsumer();
+
+}
@@ -0,0 +1,14 @@
+package com.github.kleesup.kleegdx.core.net.packet;
+
+/**
+ * Small interface for packet handling classes that can report how many packets they processed during their last
+ * update. Used by the {@link com.github.kleesup.kleegdx.core.net.GameServer} to collect tick statistics.
+ */
+public interface IPacketDrainable {
+
+    /**
+     * @return The amount of packets handled during the last update.
+     */
+    int getLastDrainCount();
+
+}
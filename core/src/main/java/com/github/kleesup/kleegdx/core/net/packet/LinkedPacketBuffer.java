@@ -0,0 +1,104 @@
+package com.github.kleesup.kleegdx.core.net.packet;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * The default {@link IPacketBuffer} based on an unbounded {@link ConcurrentLinkedQueue}. A capacity can still be
+ * applied, which is enforced through an atomic size counter. Every added packet allocates a queue node, for a garbage
+ * free alternative see {@link RingPacketBuffer}.
+ */
+public class LinkedPacketBuffer implements IPacketBuffer {
+
+    private final ConcurrentLinkedQueue<Object> packets = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile int capacity;
+    public LinkedPacketBuffer(int capacity){
+        setCapacity(capacity);
+    }
+    public LinkedPacketBuffer(){
+        this(Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean offer(Object obj) {
+        if(size.incrementAndGet() > capacity){
+            size.decrementAndGet();
+            return false;
+        }
+        packets.offer(obj);
+        return true;
+    }
+
+    @Override
+    public Object poll() {
+        Object obj = packets.poll();
+        if(obj != null)size.decrementAndGet();
+        return obj;
+    }
+
+    @Override
+    public Object peek() {
+        return packets.peek();
+    }
+
+    @Override
+    public int drain(Consumer<Object> handler, int max) {
+        Object obj;
+        int reads = 0;
+        while (reads < max && (obj = poll()) != null) {
+            reads++;
+            handler.accept(obj);
+        }
+        return reads;
+    }
+
+    @Override
+    public Iterator<Object> iterator() {
+        Iterator<Object> iterator = packets.iterator();
+        return new Iterator<Object>() {
+            private Object last;
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+            @Override
+            public Object next() {
+                return last = iterator.next();
+            }
+            @Override
+            public void remove() {
+                if(last == null)throw new IllegalStateException();
+                if(packets.remove(last))size.decrementAndGet(); //keep the size counter in sync
+                last = null;
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return Math.max(0, size.get());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return packets.isEmpty();
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public void setCapacity(int capacity) {
+        this.capacity = capacity > 0 ? capacity : Integer.MAX_VALUE;
+    }
+
+    @Override
+    public boolean isSingleConsumer() {
+        return false;
+    }
+}
@@ -0,0 +1,91 @@
+package com.github.kleesup.kleegdx.core.net.packet;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Pool;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.serializers.FieldSerializer;
+import com.github.kleesup.kleegdx.core.util.Verify;
+
+import java.util.function.Supplier;
+
+/**
+ * A thread-safe {@link Pool} for {@link PooledPacket}s. Packets are obtained by the network thread while reading and
+ * freed by the thread handling them, so all pool operations are synchronized.
+ * @param <T> The type of the pooled packets.
+ */
+public class PacketPool<T extends PooledPacket> extends Pool<T> {
+
+    private final Supplier<T> factory;
+
+    /**
+     * Builds a new pool.
+     * @param factory Creates new packets when the pool is empty.
+     * @param initialCapacity The initial size of the free list.
+     * @param max The max amount of free packets kept, further freed packets are left to the garbage collector.
+     */
+    public PacketPool(Supplier<T> factory, int initialCapacity, int max){
+        super(initialCapacity, max);
+        Verify.nonNullArg(factory, "Factory cannot be null!");
+        this.factory = factory;
+    }
+    public PacketPool(Supplier<T> factory){
+        this(factory, 16, Integer.MAX_VALUE);
+    }
+
+    @Override
+    protected T newObject() {
+        return factory.get();
+    }
+
+    @Override
+    public synchronized T obtain() {
+        T packet = super.obtain();
+        packet.obtained(this);
+        return packet;
+    }
+
+    @Override
+    public synchronized void free(T object) {
+        super.free(object);
+    }
+
+    @Override
+    public synchronized void freeAll(Array<T> objects) {
+        super.freeAll(objects);
+    }
+
+    @Override
+    public synchronized void fill(int size) {
+        super.fill(size);
+    }
+
+    @Override
+    public synchronized void clear() {
+        super.clear();
+    }
+
+    @Override
+    public synchronized int getFree() {
+        return super.getFree();
+    }
+
+    /**
+     * A {@link FieldSerializer} that reads packets into instances obtained from a {@link PacketPool} instead of
+     * creating new ones. Writing is unchanged.
+     * @param <T> The type of the pooled packets.
+     */
+    public static class PooledSerializer<T extends PooledPacket> extends FieldSerializer<T> {
+        private final PacketPool<T> pool;
+        public PooledSerializer(Kryo kryo, Class<T> type, PacketPool<T> pool){
+            super(kryo, type);
+            Verify.nonNullArg(pool, "Pool cannot be null!");
+            this.pool = pool;
+        }
+        @Override
+        protected T create(Kryo kryo, Input input, Class<? extends T> type) {
+            return pool.obtain();
+        }
+    }
+
+}
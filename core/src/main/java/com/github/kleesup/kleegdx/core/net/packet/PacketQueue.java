@@ -1,39 +1,497 @@
 package com.github.kleesup.kleegdx.core.net.packet;
 
+import com.badlogic.gdx.utils.LongMap;
 import com.esotericsoftware.kryonet.Connection;
 import com.github.kleesup.kleegdx.core.util.Updateable;
+import com.github.kleesup.kleegdx.core.util.Verify;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
- * A simple packet queue based on {@link ConcurrentLinkedQueue} that can receive packets and handle/clear the queue
- * when updated via {@link #update(float)}. If {@link #maxPacketsPerRead} is set to a value smaller than {@code 0}, it
- * will be set to {@link Integer#MAX_VALUE}.
+ * A simple packet queue that can receive packets and handle/clear the queue when updated via {@link #update(float)}.
+ * If {@link #maxPacketsPerRead} is set to a value smaller than {@code 0}, it will be set to {@link Integer#MAX_VALUE}.
+ * <p>
+ * Packets are stored in an {@link IPacketBuffer}, by default a {@link LinkedPacketBuffer} based on
+ * {@link ConcurrentLinkedQueue}. For a garbage free handoff between network and updating thread a
+ * {@link RingPacketBuffer} can be passed instead. Packets may be added from any thread but must only be removed by the
+ * thread updating the queue.
+ * </p>
+ * <p>
+ * Packets for which {@link #getConflationId(Object)} or {@link #getConflationKey(Object)} returns a key are
+ * conflated: only the newest packet per key is kept and it is handled at the position of the oldest not yet handled
+ * packet with that key. All other packets keep their FIFO order. The slot of a key only exists while a packet with
+ * that key is queued, emptied slots are reused for other keys, so neither the amount of distinct keys nor the amount
+ * of conflated packets makes the queue grow.
+ * </p>
+ * <p>
+ * The queue can be bounded by a capacity. When a packet is added to a full queue, the {@link OverflowPolicy}
+ * decides what happens to it and the optional overflow handler is notified. The size of the queue is computed in
+ * constant time. The {@link #iterator()} is weakly consistent, see {@link IPacketBuffer#iterator()}.
+ * </p>
+ * <p>
+ * {@link PooledPacket}s that are dropped, replaced by conflation or cleared are returned to their pool.
+ * </p>
  */
-@Getter
-public abstract class PacketQueue extends ConcurrentLinkedQueue<Object> implements Updateable {
+public abstract class PacketQueue extends AbstractQueue<Object> implements Updateable, IPacketDrainable {
 
+    /** Default time the network thread waits for free space with {@link OverflowPolicy#BLOCK}. */
+    public static final long DEFAULT_BLOCK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    /**
+     * Determines what happens when a packet is added to a full queue.
+     */
+    public enum OverflowPolicy {
+        /** The new packet is dropped. */
+        DROP_NEWEST,
+        /**
+         * The oldest queued packet is dropped to make space for the new one. Behaves like {@link #DROP_NEWEST} for
+         * buffers that only allow the consumer to remove packets (see {@link IPacketBuffer#isSingleConsumer()}).
+         */
+        DROP_OLDEST,
+        /** The new packet is dropped and the owning connection is closed. */
+        DISCONNECT,
+        /**
+         * The adding (network) thread waits until space is available or {@link #getBlockNanos()} passed, afterwards
+         * the packet is dropped. Note that this stalls every connection handled by the same network thread.
+         */
+        BLOCK
+    }
+
+    /** Returned by {@link #getConflationId(Object)} for packets that have no primitive conflation key. */
+    public static final long NO_CONFLATION_ID = Long.MIN_VALUE;
+
+    /**
+     * Queue entry holding the newest packet of a conflation key. A slot is queued whenever its packet changes from
+     * {@code null} to a packet and is retired once the consumer takes the packet, so each slot is queued at most once
+     * at a time. The key of a slot and its packet only change while holding the lock of its table.
+     */
+    private static final class ConflationSlot extends AtomicReference<Object> {
+        private final ConflationTable table;
+        private Object key;
+        private long id;
+        private ConflationSlot(ConflationTable table){
+            this.table = table;
+        }
+        /** Takes the packet and retires this slot, so the next packet of its key obtains a new slot. */
+        private Object take(){
+            synchronized (table){
+                Object obj = getAndSet(null);
+                table.retire(this);
+                return obj;
+            }
+        }
+    }
+
+    /**
+     * The slots of all currently queued keys of a packet class, together with a few retired slots to reuse. Primitive
+     * keys are looked up without boxing.
+     */
+    private static final class ConflationTable {
+        private static final int MAX_FREE_SLOTS = 32;
+        private final LongMap<ConflationSlot> ids = new LongMap<>();
+        private final HashMap<Object, ConflationSlot> keys = new HashMap<>();
+        private final ArrayList<ConflationSlot> free = new ArrayList<>();
+        /** Must be called while holding the lock of this table. */
+        private ConflationSlot obtain(Object key, long id){
+            ConflationSlot slot = key != null ? keys.get(key) : ids.get(id);
+            if(slot != null)return slot;
+            slot = free.isEmpty() ? new ConflationSlot(this) : free.remove(free.size() - 1);
+            slot.key = key;
+            slot.id = id;
+            if(key != null)keys.put(key, slot);
+            else ids.put(id, slot);
+            return slot;
+        }
+        /** Must be called while holding the lock of this table. */
+        private void retire(ConflationSlot slot){
+            if(slot.key != null){
+                if(!keys.remove(slot.key, slot))return; //already retired
+            }else if(ids.get(slot.id) == slot)ids.remove(slot.id);
+            else return;
+            slot.key = null;
+            if(free.size() < MAX_FREE_SLOTS)free.add(slot);
+        }
+    }
+
+    private final IPacketBuffer buffer;
+    private final Consumer<Object> handleFunction;
+    private final ConcurrentHashMap<Class<?>, ConflationTable> conflationTables = new ConcurrentHashMap<>();
+    @Getter
     private final Connection owner;
-    @Setter
+    @Getter @Setter
     private int maxPacketsPerRead;
-    public PacketQueue(Connection owner, int maxPacketsPerRead){
+    @Getter
+    private int lastDrainCount;
+    /**
+     * Main-thread only packet that was polled during a parallel drain. It is logically the head of the queue and
+     * handled first by the next serial drain. Only accessed by the threads draining this queue.
+     */
+    private Object parked;
+
+    /* -- Bounds -- */
+    @Getter @Setter
+    private volatile OverflowPolicy overflowPolicy = OverflowPolicy.DROP_NEWEST;
+    @Getter @Setter
+    private volatile long blockNanos = DEFAULT_BLOCK_NANOS;
+    private volatile BiConsumer<PacketQueue, Object> overflowHandler;
+    private final LongAdder overflows = new LongAdder();
+    private final LongAdder droppedPackets = new LongAdder();
+
+    public PacketQueue(Connection owner, int maxPacketsPerRead, IPacketBuffer buffer){
+        Verify.nonNullArg(buffer, "Buffer cannot be null!");
         this.owner = owner;
         this.maxPacketsPerRead = maxPacketsPerRead >= 0 ? maxPacketsPerRead : Integer.MAX_VALUE;
+        this.buffer = buffer;
+        this.handleFunction = entry -> {
+            Object obj = unwrap(entry);
+            if(obj != null)handle(owner, obj);
+        };
+    }
+    public PacketQueue(Connection owner, int maxPacketsPerRead){
+        this(owner, maxPacketsPerRead, new LinkedPacketBuffer());
+    }
+    public PacketQueue(Connection owner, int maxPacketsPerRead, int capacity, OverflowPolicy overflowPolicy){
+        this(owner, maxPacketsPerRead, new LinkedPacketBuffer(capacity));
+        setOverflowPolicy(overflowPolicy);
+    }
+
+    /* -- Bounds -- */
+
+    /**
+     * Sets the max amount of packets this queue can hold.
+     * @param capacity The capacity, values smaller or equal to {@code 0} make the queue unbounded or as large as its
+     *                 buffer allows.
+     */
+    public void setCapacity(int capacity){
+        buffer.setCapacity(capacity);
+    }
+
+    public int getCapacity(){
+        return buffer.getCapacity();
+    }
+
+    /**
+     * Sets a function which is called on the adding thread each time a packet is added to a full queue, before the
+     * {@link #overflowPolicy} is applied.
+     * @param handler The handler receiving this queue and the packet that did not fit or {@code null}.
+     */
+    public void onOverflow(BiConsumer<PacketQueue, Object> handler){
+        this.overflowHandler = handler;
+    }
+
+    /**
+     * @return The amount of times a packet was added to this queue while it was full.
+     */
+    public long getOverflows(){
+        return overflows.sum();
+    }
+
+    /**
+     * @return The amount of packets that were dropped because this queue was full.
+     */
+    public long getDroppedPackets(){
+        return droppedPackets.sum();
+    }
+
+    /* -- Queue implementation -- */
+
+    /**
+     * Adds a packet to this queue. Contrary to {@link AbstractQueue#add(Object)}, no exception is thrown if the queue
+     * is full, instead the {@link #overflowPolicy} is applied.
+     * @param obj The packet to add.
+     * @return {@code true} if the packet was queued, {@code false} if it was dropped.
+     */
+    @Override
+    public boolean add(Object obj) {
+        return offer(obj);
+    }
+
+    @Override
+    public boolean offer(Object obj) {
+        Verify.nonNullArg(obj, "Packet cannot be null!");
+        long id = getConflationId(obj);
+        if(id != NO_CONFLATION_ID)return offerConflated(obj, null, id, true);
+        Object key = getConflationKey(obj);
+        if(key != null)return offerConflated(obj, key, 0, true);
+        return buffer.offer(obj) || overflow(obj, obj);
+    }
+
+    /**
+     * Adds a packet that was already accepted elsewhere, e.g. a packet handed over from the queue of another
+     * listener. Contrary to {@link #offer(Object)}, the {@link #overflowPolicy} is not applied: if the queue is full,
+     * the packet is dropped without notifying the overflow handler, blocking or closing the connection.
+     * @param obj The packet to add.
+     * @return {@code true} if the packet was queued, {@code false} if it was dropped.
+     */
+    public boolean offerAdmitted(Object obj){
+        Verify.nonNullArg(obj, "Packet cannot be null!");
+        long id = getConflationId(obj);
+        if(id != NO_CONFLATION_ID)return offerConflated(obj, null, id, false);
+        Object key = getConflationKey(obj);
+        if(key != null)return offerConflated(obj, key, 0, false);
+        if(buffer.offer(obj))return true;
+        droppedPackets.increment();
+        PooledPacket.releaseHandled(obj);
+        return false;
+    }
+
+    /**
+     * Stores a packet as newest packet of its conflation key and queues the slot of the key if it is not queued yet.
+     */
+    private boolean offerConflated(Object obj, Object key, long id, boolean applyPolicy){
+        ConflationTable table = conflationTables.get(obj.getClass());
+        if(table == null)table = conflationTables.computeIfAbsent(obj.getClass(), clazz -> new ConflationTable());
+        ConflationSlot slot;
+        Object replaced;
+        synchronized (table){
+            slot = table.obtain(key, id);
+            replaced = slot.getAndSet(obj);
+        }
+        if(replaced != null){ //slot is already queued, the older packet is replaced
+            PooledPacket.releaseHandled(replaced);
+            return true;
+        }
+        //queued outside the lock, as the overflow policy might block
+        if(buffer.offer(slot))return true;
+        if(!applyPolicy)droppedPackets.increment();
+        else if(overflow(obj, slot))return true;
+        //not queued, so the slot is retired for the next packet to obtain a new one
+        Object dropped = slot.take();
+        if(dropped != obj)droppedPackets.increment(); //a newer packet replaced it in the meantime
+        PooledPacket.releaseHandled(dropped);
+        return false;
+    }
+
+    /**
+     * @param entry An entry of the buffer.
+     * @return The packet of the entry or {@code null} if it is an already emptied conflation slot.
+     */
+    private static Object unwrap(Object entry){
+        return entry instanceof ConflationSlot ? ((ConflationSlot) entry).take() : entry;
+    }
+
+    @Override
+    public Object poll() {
+        Object obj = parked;
+        if(obj != null){
+            parked = null;
+            return obj;
+        }
+        Object entry;
+        while ((entry = buffer.poll()) != null) {
+            obj = unwrap(entry);
+            if(obj != null)return obj;
+        }
+        return null;
     }
 
+    @Override
+    public Object peek() {
+        if(parked != null)return parked;
+        Object entry = buffer.peek();
+        return entry instanceof ConflationSlot ? ((ConflationSlot) entry).get() : entry;
+    }
+
+    @Override
+    public int size() {
+        return parked != null ? buffer.size() + 1 : buffer.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return parked == null && buffer.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+        Object obj;
+        while ((obj = poll()) != null) PooledPacket.releaseHandled(obj);
+    }
+
+    /**
+     * Returns a weakly consistent iterator over the queued packets in the order they will be handled, with conflated
+     * packets at the position of their key. Removing through the iterator is supported if the buffer supports it.
+     * Should only be used for inspection, e.g. {@link #toString()} or {@link #contains(Object)}, as it does not
+     * return removed {@link PooledPacket}s to their pool.
+     * @return The iterator.
+     */
+    @Override
+    public Iterator<Object> iterator() {
+        Iterator<Object> entries = buffer.iterator();
+        return new Iterator<Object>() {
+            private Object head = parked;
+            private Object next, lastEntry;
+            private boolean lastParked;
+            @Override
+            public boolean hasNext() {
+                if(next != null)return true;
+                if(head != null){
+                    next = head;
+                    head = null;
+                    lastEntry = null;
+                    lastParked = true;
+                    return true;
+                }
+                while (entries.hasNext()) {
+                    Object entry = entries.next();
+                    Object obj = entry instanceof ConflationSlot ? ((ConflationSlot) entry).get() : entry;
+                    if(obj == null)continue; //already emptied conflation slot
+                    next = obj;
+                    lastEntry = entry;
+                    lastParked = false;
+                    return true;
+                }
+                return false;
+            }
+            @Override
+            public Object next() {
+                if(!hasNext())throw new NoSuchElementException();
+                Object obj = next;
+                next = null;
+                return obj;
+            }
+            @Override
+            public void remove() {
+                if(next != null)throw new IllegalStateException("Cannot remove after hasNext()!");
+                if(lastParked){
+                    parked = null;
+                    lastParked = false;
+                    return;
+                }
+                if(lastEntry == null)throw new IllegalStateException();
+                entries.remove();
+                //an unqueued slot has to be retired, otherwise it is never queued again
+                if(lastEntry instanceof ConflationSlot)((ConflationSlot) lastEntry).take();
+                lastEntry = null;
+            }
+        };
+    }
+
+    /**
+     * Applies the {@link #overflowPolicy} to a packet that did not fit into this queue.
+     * @param obj The packet that did not fit.
+     * @param entry The entry to queue for the packet, either the packet itself or its conflation slot.
+     * @return {@code true} if the packet was queued after all, {@code false} if it was dropped.
+     */
+    private boolean overflow(Object obj, Object entry){
+        overflows.increment();
+        BiConsumer<PacketQueue, Object> handler = overflowHandler;
+        if(handler != null)handler.accept(this, obj);
+        switch (overflowPolicy){
+            case DROP_OLDEST:
+                if(buffer.isSingleConsumer())break;
+                Object oldest = buffer.poll();
+                if(oldest != null && (oldest = unwrap(oldest)) != null){
+                    droppedPackets.increment();
+                    PooledPacket.releaseHandled(oldest);
+                }
+                if(buffer.offer(entry))return true;
+                break;
+            case DISCONNECT:
+                if(owner != null)owner.close();
+                break;
+            case BLOCK:
+                long deadline = System.nanoTime() + blockNanos;
+                do{
+                    if(buffer.offer(entry))return true;
+                    LockSupport.parkNanos(BLOCK_PARK_NANOS);
+                }while (deadline - System.nanoTime() > 0);
+                break;
+        }
+        droppedPackets.increment();
+        if(entry == obj)PooledPacket.releaseHandled(obj); //conflated packets are released by the caller
+        return false;
+    }
+
+    /* -- Handling -- */
+
     @Override
     public void update(float delta) {
+        lastDrainCount = 0;
         if(isEmpty())return;
+        lastDrainCount = drain(maxPacketsPerRead, false);
+    }
+
+    /**
+     * Handles queued packets in order until either the queue is empty or {@code max} packets were handled.
+     * @param max The max amount of packets to handle.
+     * @param stopAtMainThread If {@code true}, handling stops at the first packet for which
+     *                         {@link #requiresMainThread(Object)} returns {@code true}. That packet stays at the head of
+     *                         the queue and is handled first by the next drain without this flag.
+     * @return The amount of handled packets.
+     */
+    public int drain(int max, boolean stopAtMainThread){
+        if(max <= 0)return 0;
         Object obj;
+        if(!stopAtMainThread){
+            int reads = 0;
+            if((obj = parked) != null){
+                parked = null;
+                handle(owner, obj);
+                reads++;
+            }
+            return reads + buffer.drain(handleFunction, max - reads);
+        }
+        if(parked != null)return 0; //a main-thread only packet is still waiting
         int reads = 0;
-        while (reads <= maxPacketsPerRead && (obj = poll()) != null) {
+        //poll before checking, as a peeked packet could be dropped by DROP_OLDEST before it is polled
+        while (reads < max && (obj = poll()) != null) {
+            if(requiresMainThread(obj)){
+                parked = obj;
+                break;
+            }
             reads++;
             handle(owner, obj);
         }
+        return reads;
     }
 
     protected abstract void handle(Connection owner, Object obj);
 
+    /**
+     * Returns the key under which a packet is conflated with other packets of the same class. Of all queued packets
+     * with the same class and key, only the newest one is handled. Called on the adding thread. By default, no packet
+     * is conflated.
+     * @param obj The packet to get the key for.
+     * @return The key (e.g. the packets class or an entity id) or {@code null} if the packet keeps FIFO order.
+     */
+    protected Object getConflationKey(Object obj){
+        return null;
+    }
+
+    /**
+     * Returns a primitive key under which a packet is conflated, like {@link #getConflationKey(Object)} but without
+     * boxing the key. Checked before {@link #getConflationKey(Object)}. By default, no packet has a primitive key.
+     * @param obj The packet to get the key for.
+     * @return The key (e.g. an entity id) or {@link #NO_CONFLATION_ID} if the packet has no primitive key.
+     */
+    protected long getConflationId(Object obj){
+        return NO_CONFLATION_ID;
+    }
+
+    /**
+     * Checks whether a packet has to be handled by the thread updating the server. Such packets are never handled
+     * during a parallel drain. By default, no packet requires the main thread.
+     * @param obj The packet to check.
+     * @return {@code true} if the packet must be handled on the main thread, {@code false} otherwise.
+     */
+    protected boolean requiresMainThread(Object obj){
+        return false;
+    }
+
 }
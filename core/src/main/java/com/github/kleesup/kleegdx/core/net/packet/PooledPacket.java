@@ -0,0 +1,92 @@
+package com.github.kleesup.kleegdx.core.net.packet;
+
+import com.badlogic.gdx.utils.Pool;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Base class for packets that are obtained from a {@link PacketPool} when received instead of being allocated, see
+ * {@link PacketPool.PooledSerializer}. After the handler of a pooled packet returned, {@link TypePacketQueue} returns
+ * the packet to its pool, so handlers must not keep a reference to it. A handler that needs to keep the packet calls
+ * {@link #retain()} and later {@link #release()} once it is done with it.
+ * <p>
+ * Retaining is reference counted: the queue handling the packet holds the first reference, every {@link #retain()}
+ * adds one and every {@link #release()} removes one, the packet returns to its pool once none is left. Paths that hand
+ * a packet over by reference instead of serializing it, e.g. local clients or a non-serializing loopback transport,
+ * retain it via {@link #share(Object)} for the receiving queue, so a handler can forward or broadcast a pooled packet
+ * without it being freed twice.
+ * </p>
+ * <p>
+ * Implementations clear their fields in {@link #reset()}. The pooling state is transient and therefore never sent.
+ * </p>
+ */
+public abstract class PooledPacket implements Pool.Poolable {
+
+    private static final AtomicIntegerFieldUpdater<PooledPacket> REFERENCES =
+            AtomicIntegerFieldUpdater.newUpdater(PooledPacket.class, "references");
+
+    private transient volatile PacketPool<?> pool;
+    private transient volatile int references;
+
+    /**
+     * Prevents the packet from being returned to its pool after its handler finished. The packet has to be returned
+     * manually via {@link #release()}, otherwise it is simply garbage collected. Every call requires its own
+     * {@link #release()}.
+     */
+    public void retain(){
+        REFERENCES.incrementAndGet(this);
+    }
+
+    /**
+     * Removes one reference of this packet and returns it to the pool it was obtained from once no reference is left.
+     * Does nothing if the packet is not pooled or was already released. The packet must not be used afterwards.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void release(){
+        PacketPool pool = this.pool;
+        if(pool == null)return;
+        if(REFERENCES.decrementAndGet(this) > 0)return;
+        this.pool = null;
+        pool.free(this);
+    }
+
+    /**
+     * @return {@code true} if this packet was obtained from a pool and not released yet.
+     */
+    public boolean isPooled(){
+        return pool != null;
+    }
+
+    /**
+     * @return {@code true} if the packet has references besides the one of the queue handling it.
+     */
+    public boolean isRetained(){
+        return references > 1;
+    }
+
+    void obtained(PacketPool<?> pool){
+        this.references = 1;
+        this.pool = pool;
+    }
+
+    /**
+     * Retains a packet that is handed over to another queue by reference, so the receiving queue owns a reference of
+     * its own. Does nothing for packets that are not pooled.
+     * @param packet Any packet.
+     * @return The given packet.
+     */
+    public static Object share(Object packet){
+        if(packet instanceof PooledPacket && ((PooledPacket) packet).isPooled())((PooledPacket) packet).retain();
+        return packet;
+    }
+
+    /**
+     * Releases the reference of the queue that handled or dropped a packet if it is pooled. Listeners that drop a
+     * received packet before it reaches a queue, e.g. because of a rate limit, release it via this method as well.
+     * @param packet Any packet.
+     */
+    public static void releaseHandled(Object packet){
+        if(packet instanceof PooledPacket)((PooledPacket) packet).release();
+    }
+
+}
@@ -0,0 +1,149 @@
+package com.github.kleesup.kleegdx.core.net.packet;
+
+import com.github.kleesup.kleegdx.core.util.Verify;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A pre-sized multi-producer/single-consumer ring buffer implementation of {@link IPacketBuffer}. Adding and removing
+ * packets does not allocate, which removes the per packet garbage of {@link LinkedPacketBuffer} in steady state.
+ * <p>
+ * Producers claim a slot by advancing the tail index and then publish the packet into it. The single consumer reads
+ * published slots from the head index, clears them and advances the head. A packet whose slot was claimed but not yet
+ * published is only visible from the next read on. The physical size of the buffer is a power of two and fixed at
+ * construction, {@link #setCapacity(int)} can only lower the usable part of it.
+ * </p>
+ */
+public class RingPacketBuffer implements IPacketBuffer {
+
+    private final AtomicReferenceArray<Object> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    private volatile int capacity;
+
+    /**
+     * Builds a new ring buffer.
+     * @param size The amount of packets the buffer can hold, rounded up to the next power of two.
+     */
+    public RingPacketBuffer(int size){
+        Verify.checkArg(size <= 0 || size > (1 << 30), "Size must be between 1 and 2^30!");
+        int length = Integer.highestOneBit(size);
+        if(length < size)length <<= 1;
+        this.slots = new AtomicReferenceArray<>(length);
+        this.mask = length - 1;
+        this.capacity = length;
+    }
+
+    @Override
+    public boolean offer(Object obj) {
+        long t;
+        do{
+            t = tail.get();
+            if(t - head.get() >= capacity)return false;
+        }while (!tail.compareAndSet(t, t + 1));
+        slots.lazySet((int) t & mask, obj);
+        return true;
+    }
+
+    @Override
+    public Object poll() {
+        long h = head.get();
+        int index = (int) h & mask;
+        Object obj = slots.get(index);
+        if(obj == null)return null;
+        slots.lazySet(index, null);
+        head.lazySet(h + 1);
+        return obj;
+    }
+
+    @Override
+    public Object peek() {
+        return slots.get((int) head.get() & mask);
+    }
+
+    @Override
+    public int drain(Consumer<Object> handler, int max) {
+        long h = head.get();
+        int reads = 0;
+        try {
+            while (reads < max) {
+                int index = (int) h & mask;
+                Object obj = slots.get(index);
+                if(obj == null)break;
+                slots.lazySet(index, null);
+                h++;
+                reads++;
+                handler.accept(obj);
+            }
+        } finally {
+            head.lazySet(h);
+        }
+        return reads;
+    }
+
+    /**
+     * Returns a weakly consistent iterator from the head to the first slot that is not published yet. If the consumer
+     * passes the position of the iterator, it continues at the new head. As only the consumer may remove packets,
+     * {@link Iterator#remove()} is not supported.
+     * @return The iterator.
+     */
+    @Override
+    public Iterator<Object> iterator() {
+        return new Iterator<Object>() {
+            private long index = head.get();
+            private Object next;
+            @Override
+            public boolean hasNext() {
+                while (next == null) {
+                    long h = head.get();
+                    if(index < h)index = h; //already consumed
+                    if(index >= tail.get())return false; //a full buffer would otherwise wrap to the head again
+                    Object obj = slots.get((int) index & mask);
+                    if(obj == null)return false;
+                    if(head.get() > index)continue; //the slot might have been reused in the meantime
+                    next = obj;
+                    index++;
+                }
+                return true;
+            }
+            @Override
+            public Object next() {
+                if(!hasNext())throw new NoSuchElementException();
+                Object obj = next;
+                next = null;
+                return obj;
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, mask + 1));
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return peek() == null;
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public void setCapacity(int capacity) {
+        this.capacity = capacity > 0 ? Math.min(capacity, mask + 1) : mask + 1;
+    }
+
+    @Override
+    public boolean isSingleConsumer() {
+        return true;
+    }
+}
@@ -1,17 +1,90 @@
 package com.github.kleesup.kleegdx.core.net.packet;
 
+import com.badlogic.gdx.utils.ObjectIntMap;
+import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryonet.Connection;
+import com.github.kleesup.kleegdx.core.util.Verify;
+import lombok.Getter;
+import lombok.Setter;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 
 /**
  * A simple class holding track of registered packets and their processing functions.
+ * <p>
+ * Every registered packet class receives a dense numeric packet id which indexes an internal dispatch table. The id
+ * is either assigned automatically or can be given explicitly, e.g. to match the Kryo registration id via
+ * {@link #registerKryoId(Kryo, Class, BiConsumer)}. As automatically assigned ids would sooner or later collide with
+ * explicit ones, a processor only uses one of both schemes until it is empty again: once a class received an explicit
+ * id, classes without an id cannot be registered and vice versa. Registering a class that already has an id, e.g. via
+ * {@link #registerConflatable(Class, Function, BiConsumer)} after {@link #registerKryoId(Kryo, Class, BiConsumer)},
+ * keeps its id. When a packet is dispatched via
+ * {@link #dispatch(Connection, Object)}, its class is resolved to a packet id once and cached. Packets whose class is
+ * not registered itself are resolved to the closest registered superclass or interface. Packets that cannot be
+ * resolved at all are treated according to the {@link UnknownPacketPolicy}.
+ * </p>
+ * <p>
+ * Packets registered via {@link #registerConflatable(Class, Function, BiConsumer)} or
+ * {@link #registerConflatableById(Class, ToLongFunction, BiConsumer)} are conflated by queues using this processor: of
+ * all queued packets with the same key only the newest one is handled. Registering a class again keeps whether it is
+ * main-thread only and conflatable, unless the registration method sets these explicitly.
+ * </p>
+ * <p>
+ * Registration should happen through {@link #register(Class, BiConsumer)}, {@link #put(Class, BiConsumer)} or
+ * {@link #putAll(Map)} before packets are dispatched, as other map operations do not update the dispatch table.
+ * </p>
  */
 @SuppressWarnings("rawtypes")
 public class TypePacketProcessor extends HashMap<Class<?>, BiConsumer> {
 
+    /**
+     * Determines what happens with a packet that has no registered processor.
+     */
+    public enum UnknownPacketPolicy {
+        /** The packet is silently dropped. */
+        DROP,
+        /** The packet is dropped and counted in {@link #getUnknownPackets()}. */
+        COUNT,
+        /** The packet is dropped, counted and the sending connection is closed. */
+        DISCONNECT
+    }
+
+    /** Immutable result of a class to packet id resolution, only valid for a specific registration version. */
+    private static final class Resolved {
+        private final int version;
+        private final int id;
+        private Resolved(int version, int id){
+            this.version = version;
+            this.id = id;
+        }
+    }
+
+    private final ObjectIntMap<Class<?>> packetIds = new ObjectIntMap<>();
+    /** Whether the registered ids were given explicitly, {@code null} while no class is registered. */
+    private Boolean explicitIds;
+    private Class<?>[] types = new Class<?>[16];
+    private BiConsumer[] handlers = new BiConsumer[16];
+    private boolean[] mainThreadOnly = new boolean[16];
+    private Function[] conflationKeys = new Function[16];
+    private ToLongFunction[] conflationIds = new ToLongFunction[16];
+    /** Increased with each registration change to invalidate cached resolutions. */
+    private volatile int version;
+    private final ClassValue<Resolved[]> resolved = new ClassValue<Resolved[]>() {
+        @Override
+        protected Resolved[] computeValue(Class<?> type) {
+            return new Resolved[1];
+        }
+    };
+    @Getter @Setter
+    private UnknownPacketPolicy unknownPacketPolicy = UnknownPacketPolicy.COUNT;
+    private final LongAdder unknownPackets = new LongAdder();
+
     public TypePacketProcessor(int initialCapacity, float loadFactor) {
         super(initialCapacity, loadFactor);
     }
@@ -24,19 +97,144 @@ public class TypePacketProcessor extends HashMap<Class<?>, BiConsumer> {
     }
 
     public TypePacketProcessor(Map<? extends Class<?>, ? extends BiConsumer> m) {
-        super(m);
+        super(Math.max(16, m.size() * 2));
+        putAll(m);
     }
 
+    /* -- Registration -- */
+
     /**
-     * Registers a packet with a given processor.
+     * Registers a packet with a given processor. Classes that are not registered yet receive the lowest free id.
      * @param clazz The packets class.
      * @param processor The processor for this packet.
+     * @throws IllegalStateException If the class has no id yet and classes with explicit ids are registered.
      */
     public <T> void register(Class<T> clazz,
                                    BiConsumer<? super Connection, ? super T> processor) {
         put(clazz, processor);
     }
 
+    /**
+     * Registers a packet with a given processor.
+     * @param clazz The packets class.
+     * @param processor The processor for this packet.
+     * @param mainThreadOnly Whether the processor must run on the thread updating the server. Such packets are
+     *                       deferred to the serial phase when packets are drained in parallel.
+     */
+    public <T> void register(Class<T> clazz, BiConsumer<? super Connection, ? super T> processor,
+                             boolean mainThreadOnly) {
+        register(clazz, processor);
+        this.mainThreadOnly[packetIds.get(clazz, -1)] = mainThreadOnly;
+        version++;
+    }
+
+    /**
+     * Registers a packet with a given processor under a specific packet id.
+     * @param clazz The packets class.
+     * @param packetId The id to use for this packet, has to be unused or already assigned to the same class.
+     * @param processor The processor for this packet.
+     * @throws IllegalStateException If classes with automatically assigned ids are registered.
+     */
+    public <T> void register(Class<T> clazz, int packetId, BiConsumer<? super Connection, ? super T> processor) {
+        Verify.nonNullArg(clazz, "Class cannot be null!");
+        Verify.nonNullArg(processor, "Processor cannot be null!");
+        Verify.checkArg(packetId < 0, "Packet id cannot be negative!");
+        useIdScheme(true);
+        ensureCapacity(packetId + 1);
+        Verify.checkArg(types[packetId] != null && types[packetId] != clazz,
+                "Packet id "+packetId+" is already assigned to "+types[packetId]+"!");
+        int old = packetIds.get(clazz, -1);
+        if(old != -1 && old != packetId)clearSlot(old);
+        super.put(clazz, processor);
+        assign(clazz, packetId, processor);
+    }
+
+    /**
+     * Registers a packet with a given processor and uses the id of its registration in the given {@link Kryo}
+     * instance as packet id. Therefore, the class has to be registered in Kryo first.
+     * @param kryo The kryo instance the packet class is registered to.
+     * @param clazz The packets class.
+     * @param processor The processor for this packet.
+     */
+    public <T> void registerKryoId(Kryo kryo, Class<T> clazz, BiConsumer<? super Connection, ? super T> processor) {
+        register(clazz, kryo.getRegistration(clazz).getId(), processor);
+    }
+
+    /**
+     * Registers a packet whose queued instances are conflated per key, so only the newest queued instance per key is
+     * handled while all other packets keep their order.
+     * @param clazz The packets class.
+     * @param keyFunction Extracts the conflation key from a packet (e.g. an entity id). Called on the network thread
+     *                    and must not return {@code null}.
+     * @param processor The processor for this packet.
+     */
+    public <T> void registerConflatable(Class<T> clazz, Function<? super T, ?> keyFunction,
+                                        BiConsumer<? super Connection, ? super T> processor) {
+        Verify.nonNullArg(keyFunction, "Key function cannot be null!");
+        register(clazz, processor);
+        int id = packetIds.get(clazz, -1);
+        this.conflationKeys[id] = keyFunction;
+        this.conflationIds[id] = null;
+        version++;
+    }
+
+    /**
+     * Registers a conflatable packet like {@link #registerConflatable(Class, Function, BiConsumer)} that additionally
+     * is main-thread only, see {@link #register(Class, BiConsumer, boolean)}.
+     * @param clazz The packets class.
+     * @param keyFunction Extracts the conflation key from a packet.
+     * @param processor The processor for this packet.
+     * @param mainThreadOnly Whether the processor must run on the thread updating the server.
+     */
+    public <T> void registerConflatable(Class<T> clazz, Function<? super T, ?> keyFunction,
+                                        BiConsumer<? super Connection, ? super T> processor, boolean mainThreadOnly) {
+        registerConflatable(clazz, keyFunction, processor);
+        this.mainThreadOnly[packetIds.get(clazz, -1)] = mainThreadOnly;
+    }
+
+    /**
+     * Registers a packet whose queued instances are conflated per primitive key, like
+     * {@link #registerConflatable(Class, Function, BiConsumer)} but without boxing the key of every received packet.
+     * @param clazz The packets class.
+     * @param idFunction Extracts the conflation key from a packet (e.g. an entity id). Called on the network thread
+     *                   and must not return {@link PacketQueue#NO_CONFLATION_ID}.
+     * @param processor The processor for this packet.
+     */
+    public <T> void registerConflatableById(Class<T> clazz, ToLongFunction<? super T> idFunction,
+                                            BiConsumer<? super Connection, ? super T> processor) {
+        Verify.nonNullArg(idFunction, "Id function cannot be null!");
+        register(clazz, processor);
+        int id = packetIds.get(clazz, -1);
+        this.conflationIds[id] = idFunction;
+        this.conflationKeys[id] = null;
+        version++;
+    }
+
+    /**
+     * Registers a conflatable packet like {@link #registerConflatableById(Class, ToLongFunction, BiConsumer)} that
+     * additionally is main-thread only, see {@link #register(Class, BiConsumer, boolean)}.
+     * @param clazz The packets class.
+     * @param idFunction Extracts the conflation key from a packet.
+     * @param processor The processor for this packet.
+     * @param mainThreadOnly Whether the processor must run on the thread updating the server.
+     */
+    public <T> void registerConflatableById(Class<T> clazz, ToLongFunction<? super T> idFunction,
+                                            BiConsumer<? super Connection, ? super T> processor,
+                                            boolean mainThreadOnly) {
+        registerConflatableById(clazz, idFunction, processor);
+        this.mainThreadOnly[packetIds.get(clazz, -1)] = mainThreadOnly;
+    }
+
+    /**
+     * Registers a packet of which only the newest queued instance is handled, see
+     * {@link #registerConflatable(Class, Function, BiConsumer)}.
+     * @param clazz The packets class.
+     * @param processor The processor for this packet.
+     */
+    public <T> void registerConflatable(Class<T> clazz, BiConsumer<? super Connection, ? super T> processor) {
+        registerConflatableById(clazz, packet -> 0L, processor);
+    }
+
     /**
      * Unregisters a packet from the processor map.
      * @param clazz The packets class.
@@ -45,4 +243,228 @@ public class TypePacketProcessor extends HashMap<Class<?>, BiConsumer> {
         remove(clazz);
     }
 
+    @Override
+    public BiConsumer put(Class<?> key, BiConsumer value) {
+        Verify.nonNullArg(key, "Class cannot be null!");
+        Verify.nonNullArg(value, "Processor cannot be null!");
+        int id = packetIds.get(key, -1);
+        if(id == -1){
+            useIdScheme(false);
+            id = nextFreeId();
+        }
+        BiConsumer old = super.put(key, value);
+        assign(key, id, value);
+        return old;
+    }
+
+    @Override
+    public void putAll(Map<? extends Class<?>, ? extends BiConsumer> m) {
+        for(Map.Entry<? extends Class<?>, ? extends BiConsumer> entry : m.entrySet())
+            put(entry.getKey(), entry.getValue());
+    }
+
+    @Override
+    public BiConsumer remove(Object key) {
+        BiConsumer old = super.remove(key);
+        if(key instanceof Class){
+            int id = packetIds.remove((Class<?>) key, -1);
+            if(id != -1)clearSlot(id);
+            if(packetIds.size == 0)explicitIds = null;
+        }
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        packetIds.clear();
+        explicitIds = null;
+        Arrays.fill(types, null);
+        Arrays.fill(handlers, null);
+        Arrays.fill(mainThreadOnly, false);
+        Arrays.fill(conflationKeys, null);
+        Arrays.fill(conflationIds, null);
+        version++;
+    }
+
+    /**
+     * Assigns a processor to a packet id. The flags of the id are only reset if it was not assigned to the same class
+     * before, so registering a processor again keeps them.
+     */
+    private void assign(Class<?> clazz, int id, BiConsumer processor){
+        ensureCapacity(id + 1);
+        packetIds.put(clazz, id);
+        if(types[id] != clazz){
+            mainThreadOnly[id] = false;
+            conflationKeys[id] = null;
+            conflationIds[id] = null;
+        }
+        types[id] = clazz;
+        handlers[id] = processor;
+        version++;
+    }
+
+    private void clearSlot(int id){
+        types[id] = null;
+        handlers[id] = null;
+        mainThreadOnly[id] = false;
+        conflationKeys[id] = null;
+        conflationIds[id] = null;
+        version++;
+    }
+
+    /**
+     * Fixes the id scheme of this processor on the first registration and rejects registrations using the other one.
+     * @param explicit Whether the id of the registered class is given explicitly.
+     */
+    private void useIdScheme(boolean explicit){
+        if(explicitIds == null){
+            explicitIds = explicit;
+            return;
+        }
+        if(explicitIds != explicit)throw new IllegalStateException(explicit
+                ? "Cannot register an explicit packet id, this processor assigns ids automatically!"
+                : "Cannot assign a packet id automatically, this processor uses explicit ids!");
+    }
+
+    private int nextFreeId(){
+        int id = 0;
+        while (id < types.length && types[id] != null) id++;
+        return id;
+    }
+
+    private void ensureCapacity(int size){
+        if(size <= types.length)return;
+        int newSize = Math.max(size, types.length * 2);
+        types = Arrays.copyOf(types, newSize);
+        handlers = Arrays.copyOf(handlers, newSize);
+        mainThreadOnly = Arrays.copyOf(mainThreadOnly, newSize);
+        conflationKeys = Arrays.copyOf(conflationKeys, newSize);
+        conflationIds = Arrays.copyOf(conflationIds, newSize);
+    }
+
+    /* -- Resolving -- */
+
+    /**
+     * @param clazz The packets class.
+     * @return The id of the registered class or, if the class itself is not registered, of its closest registered
+     * superclass or interface. {@code -1} if none is registered.
+     */
+    public int getPacketId(Class<?> clazz){
+        Resolved[] slot = resolved.get(clazz);
+        Resolved current = slot[0];
+        int version = this.version;
+        if(current == null || current.version != version){
+            current = new Resolved(version, findId(clazz));
+            slot[0] = current;
+        }
+        return current.id;
+    }
+
+    private int findId(Class<?> clazz){
+        for(Class<?> type = clazz; type != null; type = type.getSuperclass()){
+            int id = packetIds.get(type, -1);
+            if(id != -1)return id;
+        }
+        for(Class<?> type = clazz; type != null; type = type.getSuperclass()){
+            int id = findInterfaceId(type);
+            if(id != -1)return id;
+        }
+        return -1;
+    }
+
+    private int findInterfaceId(Class<?> type){
+        for(Class<?> inter : type.getInterfaces()){
+            int id = packetIds.get(inter, -1);
+            if(id != -1)return id;
+            id = findInterfaceId(inter);
+            if(id != -1)return id;
+        }
+        return -1;
+    }
+
+    /**
+     * @param clazz The packets class.
+     * @return {@code true} if the packet was registered to be handled on the main thread only, {@code false}
+     * otherwise.
+     */
+    public boolean isMainThreadOnly(Class<?> clazz){
+        int id = getPacketId(clazz);
+        return id != -1 && mainThreadOnly[id];
+    }
+
+    /**
+     * @param packet The packet to get the key for.
+     * @return The conflation key of the packet or {@code null} if its class is not registered as conflatable.
+     */
+    @SuppressWarnings("unchecked")
+    public Object getConflationKey(Object packet){
+        int id = getPacketId(packet.getClass());
+        Function keyFunction = id != -1 ? conflationKeys[id] : null;
+        return keyFunction != null ? keyFunction.apply(packet) : null;
+    }
+
+    /**
+     * @param packet The packet to get the key for.
+     * @return The primitive conflation key of the packet or {@link PacketQueue#NO_CONFLATION_ID} if its class is not
+     * registered as conflatable by id.
+     */
+    @SuppressWarnings("unchecked")
+    public long getConflationId(Object packet){
+        int id = getPacketId(packet.getClass());
+        ToLongFunction idFunction = id != -1 ? conflationIds[id] : null;
+        return idFunction != null ? idFunction.applyAsLong(packet) : PacketQueue.NO_CONFLATION_ID;
+    }
+
+    /* -- Dispatching -- */
+
+    /**
+     * Hands a packet to the processor registered for its class.
+     * @param connection The connection that sent the packet, can be {@code null}.
+     * @param packet The packet to process.
+     */
+    public void dispatch(Connection connection, Object packet){
+        dispatch(getPacketId(packet.getClass()), connection, packet);
+    }
+
+    /**
+     * Hands a packet to the processor registered under a known packet id.
+     * @param packetId The id of the packet, see {@link #getPacketId(Class)}.
+     * @param connection The connection that sent the packet, can be {@code null}.
+     * @param packet The packet to process.
+     */
+    @SuppressWarnings("unchecked")
+    public void dispatch(int packetId, Connection connection, Object packet){
+        BiConsumer[] handlers = this.handlers;
+        BiConsumer handler = packetId >= 0 && packetId < handlers.length ? handlers[packetId] : null;
+        if(handler == null){
+            handleUnknown(connection, packet);
+            return;
+        }
+        handler.accept(connection, packet);
+    }
+
+    /**
+     * Called when a packet without a registered processor is dispatched. Acts according to the
+     * {@link #unknownPacketPolicy}.
+     * @param connection The connection that sent the packet, can be {@code null}.
+     * @param packet The unknown packet.
+     */
+    protected void handleUnknown(Connection connection, Object packet){
+        if(unknownPacketPolicy == UnknownPacketPolicy.DROP)return;
+        unknownPackets.increment();
+        if(unknownPacketPolicy == UnknownPacketPolicy.DISCONNECT && connection != null)connection.close();
+    }
+
+    /**
+     * @return The amount of dropped unknown packets since creation or the last {@link #resetUnknownPackets()}.
+     */
+    public long getUnknownPackets(){
+        return unknownPackets.sum();
+    }
+
+    public void resetUnknownPackets(){
+        unknownPackets.reset();
+    }
+
 }
@@ -6,6 +6,7 @@ import lombok.Setter;
 
 /**
  * An implementation of {@link PacketQueue} that uses a {@link TypePacketProcessor} to handle packets being processed.
+ * {@link PooledPacket}s are returned to their pool once their handler finished, unless the handler retained them.
  */
 @Getter
 @Setter
@@ -16,10 +17,38 @@ public class TypePacketQueue extends PacketQueue {
         super(owner, maxPacketsPerRead);
         this.processor = processor;
     }
+    public TypePacketQueue(Connection owner, int maxPacketsPerRead, IPacketBuffer buffer,
+                           TypePacketProcessor processor) {
+        super(owner, maxPacketsPerRead, buffer);
+        this.processor = processor;
+    }
+    public TypePacketQueue(Connection owner, int maxPacketsPerRead, int capacity, OverflowPolicy overflowPolicy,
+                           TypePacketProcessor processor) {
+        super(owner, maxPacketsPerRead, capacity, overflowPolicy);
+        this.processor = processor;
+    }
 
-    @SuppressWarnings("unchecked")
     @Override
     protected void handle(Connection owner, Object obj) {
-        processor.get(obj.getClass()).accept(owner, obj);
+        try {
+            processor.dispatch(owner, obj);
+        }finally {
+            PooledPacket.releaseHandled(obj);
+        }
+    }
+
+    @Override
+    protected boolean requiresMainThread(Object obj) {
+        return processor.isMainThreadOnly(obj.getClass());
+    }
+
+    @Override
+    protected Object getConflationKey(Object obj) {
+        return processor.getConflationKey(obj);
+    }
+
+    @Override
+    protected long getConflationId(Object obj) {
+        return processor.getConflationId(obj);
     }
 }
@@ -0,0 +1,20 @@
+package com.github.kleesup.kleegdx.core.net.predict;
+
+/**
+ * An input packet numbered by the client, so the server can tell the client up to which input its authoritative state
+ * is computed (see {@link InputTracker}). Sequences only increase and may overflow, they are compared via their
+ * difference.
+ */
+public interface ISequencedInput {
+
+    /**
+     * @return The sequence of this input.
+     */
+    int getSequence();
+
+    /**
+     * @param sequence The sequence of this input, assigned by the client when the input is predicted.
+     */
+    void setSequence(int sequence);
+
+}
@@ -0,0 +1,68 @@
+package com.github.kleesup.kleegdx.core.net.predict;
+
+import com.badlogic.gdx.utils.ObjectIntMap;
+import com.github.kleesup.kleegdx.core.util.Verify;
+import lombok.Getter;
+
+/**
+ * Server side bookkeeping of the last processed {@link ISequencedInput} of every client. Authoritative state sent to
+ * a client should contain {@link #getLastProcessed(Object)}, so the client can discard all inputs up to it and replay
+ * the rest on top of the state.
+ * <p>
+ * Inputs that are older than or equal to the last processed one are rejected by {@link #accept(Object, ISequencedInput)},
+ * which filters duplicates and inputs that were reordered by UDP.
+ * </p>
+ * <p>
+ * This class is not thread-safe and should only be used from the thread handling the input packets.
+ * </p>
+ */
+public class InputTracker {
+
+    /** Returned by {@link #getLastProcessed(Object)} if no input of a client was processed yet. */
+    public static final int NONE = -1;
+
+    private final ObjectIntMap<Object> lastProcessed = new ObjectIntMap<>();
+
+    /* -- Statistics -- */
+    @Getter
+    private long rejectedInputs;
+
+    /**
+     * Marks an input as processed if it is newer than the last processed input of its client.
+     * @param owner The client the input belongs to, e.g. its connection.
+     * @param input The received input.
+     * @return {@code true} if the input should be processed, {@code false} if it is outdated.
+     */
+    public boolean accept(Object owner, ISequencedInput input){
+        Verify.nonNullArg(owner, "Owner cannot be null!");
+        Verify.nonNullArg(input, "Input cannot be null!");
+        int sequence = input.getSequence();
+        if(lastProcessed.containsKey(owner) && sequence - lastProcessed.get(owner, NONE) <= 0){
+            rejectedInputs++;
+            return false;
+        }
+        lastProcessed.put(owner, sequence);
+        return true;
+    }
+
+    /**
+     * @param owner The client, e.g. its connection.
+     * @return The sequence of the last processed input of the client or {@link #NONE}.
+     */
+    public int getLastProcessed(Object owner){
+        return lastProcessed.get(owner, NONE);
+    }
+
+    /**
+     * Forgets a client, e.g. when it disconnected.
+     * @param owner The client to remove.
+     */
+    public void remove(Object owner){
+        lastProcessed.remove(owner, NONE);
+    }
+
+    public void clear(){
+        lastProcessed.clear();
+    }
+
+}
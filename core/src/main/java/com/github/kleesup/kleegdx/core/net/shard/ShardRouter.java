@@ -0,0 +1,311 @@
+package com.github.kleesup.kleegdx.core.net.shard;
+
+import com.esotericsoftware.kryonet.Connection;
+import com.esotericsoftware.kryonet.Listener;
+import com.github.kleesup.kleegdx.core.net.packet.PooledPacket;
+import com.github.kleesup.kleegdx.core.util.Verify;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Listener that distributes the connections of a server across multiple {@link WorldShard}s. Every connection is
+ * assigned to one shard when it connects and all of its events are delivered to that shard only. Add the router to a
+ * {@link com.github.kleesup.kleegdx.core.net.GameServer} via {@code addListener}, the listeners of the worlds are added
+ * to the shards instead.
+ * <p>
+ * By default, new connections are assigned to the shard with the fewest connections, a custom assignment can be set
+ * via {@link #setAssigner(Function)}. Connections can be moved to another shard via
+ * {@link #migrate(Connection, WorldShard)} without losing or reordering their packets.
+ * </p>
+ */
+public class ShardRouter implements Listener {
+
+    /** The shard of a connection and the state of a running migration. */
+    private static final class Route {
+        private WorldShard shard;
+        private WorldShard target;
+        /** Packets received during the handoff, {@code null} if no handoff is running. */
+        private ArrayList<Object> pending;
+        /** Max amount of pending packets, the queue capacity of the target. */
+        private int pendingLimit;
+        private boolean closed;
+        private Route(WorldShard shard){
+            this.shard = shard;
+        }
+        /** Holds back a packet during the handoff, dropping it if the target could not queue it anyway. */
+        private boolean hold(Object obj){
+            if(pending.size() >= pendingLimit)return false;
+            pending.add(obj);
+            return true;
+        }
+    }
+
+    private final CopyOnWriteArrayList<WorldShard> shards = new CopyOnWriteArrayList<>();
+    private final ConcurrentHashMap<Connection, Route> routes = new ConcurrentHashMap<>();
+    private volatile Function<Connection, WorldShard> assigner;
+
+    /* -- Statistics -- */
+    private final LongAdder migrations = new LongAdder();
+    private final LongAdder migratedPackets = new LongAdder();
+    private final LongAdder droppedPackets = new LongAdder();
+
+    /* -- Shards -- */
+
+    /**
+     * Adds a shard new connections can be assigned to. The shard is not started.
+     * @param shard The shard to add.
+     */
+    public void addShard(WorldShard shard){
+        Verify.nonNullArg(shard, "Shard cannot be null!");
+        shards.addIfAbsent(shard);
+    }
+
+    /**
+     * @return An unmodifiable view of all shards.
+     */
+    public List<WorldShard> getShards(){
+        return Collections.unmodifiableList(shards);
+    }
+
+    /**
+     * @param id The id of the shard.
+     * @return The shard or {@code null} if no shard has that id.
+     */
+    public WorldShard getShard(int id){
+        for(WorldShard shard : shards) if(shard.getId() == id)return shard;
+        return null;
+    }
+
+    /**
+     * @param connection The connection.
+     * @return The shard handling the connection or {@code null} if it is not connected. During a migration this is
+     * the shard the connection is leaving.
+     */
+    public WorldShard getShard(Connection connection){
+        Route route = routes.get(connection);
+        if(route == null)return null;
+        synchronized (route){
+            return route.shard;
+        }
+    }
+
+    /**
+     * Sets the function deciding which shard a new connection is assigned to.
+     * @param assigner The function returning a shard of this router or {@code null} to use the shard with the fewest
+     *                 connections.
+     */
+    public void setAssigner(Function<Connection, WorldShard> assigner){
+        this.assigner = assigner;
+    }
+
+    /**
+     * Starts the update threads of all shards.
+     */
+    public void startAll(){
+        for(WorldShard shard : shards) shard.start();
+    }
+
+    /**
+     * Stops the update threads of all shards.
+     */
+    public void stopAll(){
+        for(WorldShard shard : shards) shard.stop();
+    }
+
+    private WorldShard assign(Connection connection){
+        Function<Connection, WorldShard> assigner = this.assigner;
+        if(assigner != null)return assigner.apply(connection);
+        WorldShard best = null;
+        for(WorldShard shard : shards){
+            if(best == null || shard.getConnectionCount() < best.getConnectionCount())best = shard;
+        }
+        return best;
+    }
+
+    /* -- Migration -- */
+
+    /**
+     * Moves a connection to another shard. The connection leaves its shard at the start of the next tick of that
+     * shard, all packets it did not handle yet are handed to the target shard together with packets received in the
+     * meantime, and the connection enters the target shard at the start of its next tick. The order of the packets is
+     * kept and they are not checked against rate limits again. As the target has to queue all of them at once, at most
+     * as many packets as its queue capacity (see {@link
+     * com.github.kleesup.kleegdx.core.net.listener.QueuedTypeListenerServer#setQueueBounds}) are handed over, further
+     * packets are dropped.
+     * @param connection The connection to migrate.
+     * @param target The shard to move the connection to, must be added to this router.
+     * @return {@code true} if the migration was started, {@code false} if the connection is not connected, already in
+     * the target shard or already migrating.
+     */
+    public boolean migrate(Connection connection, WorldShard target){
+        Verify.nonNullArg(target, "Target cannot be null!");
+        Verify.checkArg(!shards.contains(target), "Target shard is not added to this router!");
+        Route route = routes.get(connection);
+        if(route == null)return false;
+        WorldShard source;
+        synchronized (route){
+            if(route.closed || route.target != null || route.shard == target)return false;
+            route.target = target;
+            source = route.shard;
+        }
+        source.execute(() -> leave(connection, route, source));
+        return true;
+    }
+
+    /**
+     * @param connection The connection.
+     * @return {@code true} if the connection is migrating to another shard.
+     */
+    public boolean isMigrating(Connection connection){
+        Route route = routes.get(connection);
+        if(route == null)return false;
+        synchronized (route){
+            return route.target != null;
+        }
+    }
+
+    /** Runs on the thread of the source shard. */
+    private void leave(Connection connection, Route route, WorldShard source){
+        synchronized (route){
+            if(route.closed)return;
+            route.pendingLimit = route.target.getQueueCapacity();
+            route.pending = new ArrayList<>(); //from now on, received packets are held back
+        }
+        ArrayList<Object> queued = new ArrayList<>();
+        source.leave(connection, queued::add);
+        WorldShard target;
+        synchronized (route){
+            if(route.closed){
+                release(queued);
+                return;
+            }
+            ArrayList<Object> held = route.pending;
+            route.pending = queued; //queued packets were received before the held back ones
+            for(int i = 0; i < held.size(); i++) if(!route.hold(held.get(i)))drop(held.get(i));
+            while (queued.size() > route.pendingLimit) drop(queued.remove(queued.size() - 1));
+            target = route.target;
+        }
+        target.execute(() -> enter(connection, route, target));
+    }
+
+    /**
+     * Runs on the thread of the target shard. The pending packets are handed over in batches outside the route lock,
+     * so the network thread is not blocked while the target queues them. Packets received in the meantime are held
+     * back until the pending list is empty, only then the route switches to the target.
+     */
+    private void enter(Connection connection, Route route, WorldShard target){
+        target.connected(connection);
+        int moved = 0;
+        while (true){
+            ArrayList<Object> batch;
+            synchronized (route){
+                if(route.closed)break;
+                batch = route.pending;
+                if(batch.isEmpty()){
+                    route.pending = null;
+                    route.shard = target;
+                    route.target = null;
+                    migratedPackets.add(moved);
+                    migrations.increment();
+                    return;
+                }
+                route.pendingLimit -= batch.size(); //the target has not drained the handed over packets yet
+                route.pending = new ArrayList<>();
+            }
+            moved += batch.size();
+            target.receivedAdmitted(connection, batch);
+        }
+        target.disconnected(connection); //disconnected during the handoff
+    }
+
+    /**
+     * Drops a packet that exceeded the queue capacity of the target shard.
+     */
+    private void drop(Object obj){
+        droppedPackets.increment();
+        PooledPacket.releaseHandled(obj);
+    }
+
+    /**
+     * Releases packets that are discarded because their connection disconnected during a migration.
+     */
+    private static void release(ArrayList<Object> packets){
+        for(int i = 0; i < packets.size(); i++) PooledPacket.releaseHandled(packets.get(i));
+        packets.clear();
+    }
+
+    /**
+     * @return The amount of finished migrations.
+     */
+    public long getMigrations(){
+        return migrations.sum();
+    }
+
+    /**
+     * @return The amount of packets that were handed to another shard during migrations.
+     */
+    public long getMigratedPackets(){
+        return migratedPackets.sum();
+    }
+
+    /**
+     * @return The amount of packets that were dropped during migrations because they exceeded the queue capacity of
+     * the target shard.
+     */
+    public long getDroppedPackets(){
+        return droppedPackets.sum();
+    }
+
+    /* -- Listener implementation -- */
+
+    @Override
+    public void connected(Connection connection) {
+        WorldShard shard = assign(connection);
+        if(shard == null){
+            connection.close(); //no shard to handle the connection
+            return;
+        }
+        Route route = new Route(shard);
+        routes.put(connection, route);
+        synchronized (route){
+            shard.connected(connection);
+        }
+    }
+
+    @Override
+    public void received(Connection connection, Object object) {
+        Route route = routes.get(connection);
+        if(route == null){
+            PooledPacket.releaseHandled(object);
+            return;
+        }
+        synchronized (route){ //the route must not change while the packet is queued
+            if(route.pending != null){
+                if(!route.hold(object))drop(object);
+            }
+            else if(!route.closed)route.shard.received(connection, object);
+            else PooledPacket.releaseHandled(object);
+        }
+    }
+
+    @Override
+    public void disconnected(Connection connection) {
+        Route route = routes.remove(connection);
+        if(route == null)return;
+        WorldShard shard;
+        synchronized (route){
+            route.closed = true;
+            shard = route.pending == null ? route.shard : null; //during the handoff no shard holds the connection
+            if(route.pending != null)release(route.pending);
+            route.pending = null;
+        }
+        if(shard != null)shard.disconnected(connection);
+    }
+
+}
@@ -0,0 +1,256 @@
+package com.github.kleesup.kleegdx.core.net.shard;
+
+import com.esotericsoftware.kryonet.Connection;
+import com.esotericsoftware.kryonet.Listener;
+import com.github.kleesup.kleegdx.core.concurrent.ServerUpdateThread;
+import com.github.kleesup.kleegdx.core.net.ListenerGroup;
+import com.github.kleesup.kleegdx.core.net.TickStatistics;
+import com.github.kleesup.kleegdx.core.net.listener.QueuedTypeListenerServer;
+import com.github.kleesup.kleegdx.core.util.Updateable;
+import com.github.kleesup.kleegdx.core.util.Verify;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * An isolated world inside a server process with its own listeners, tick loop and {@link TickStatistics}. Connections
+ * are assigned to a shard by a {@link ShardRouter}, which delivers their events only to the listeners of that shard.
+ * As every shard runs on its own {@link ServerUpdateThread}, a heavy world does not slow down the others.
+ * <p>
+ * Listeners are added like to a {@link com.github.kleesup.kleegdx.core.net.GameServer}, usually a
+ * {@link QueuedTypeListenerServer} per shard. Connections migrated away from this shard are reported as disconnected
+ * to its listeners, connections migrated to it as connected.
+ * </p>
+ * <p>
+ * Tasks passed to {@link #execute(Runnable)} run on the thread updating the shard at the start of the next tick, so
+ * other threads can safely access the world state of the shard.
+ * </p>
+ */
+public class WorldShard implements Updateable, Executor {
+
+    @Getter private final int id;
+    @Getter private final String name;
+    @Getter private int ticks = 60;
+    @Getter private ServerUpdateThread.CatchUpPolicy catchUpPolicy = ServerUpdateThread.CatchUpPolicy.CATCH_UP;
+    @Getter private int maxCatchUpSteps = ServerUpdateThread.DEFAULT_MAX_CATCH_UP_STEPS;
+    @Getter private final TickStatistics tickStatistics = new TickStatistics();
+    /** Amount of finished {@link #update(float)} calls. */
+    @Getter private volatile long tick;
+    private final Object updateLock = new Object();
+    private final ListenerGroup listeners = new ListenerGroup(tickStatistics);
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private volatile ServerUpdateThread updateThread;
+
+    public WorldShard(int id, String name){
+        Verify.nonNullArg(name, "Name cannot be null!");
+        this.id = id;
+        this.name = name;
+    }
+    public WorldShard(int id){
+        this(id, "Shard-"+id);
+    }
+
+    /* -- Listeners -- */
+
+    public void addListener(Listener listener){
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener){
+        listeners.remove(listener);
+    }
+
+    /* -- Connection events, called by the router -- */
+
+    void connected(Connection connection){
+        connections.add(connection);
+        for(Listener listener : listeners.getListeners()) listener.connected(connection);
+    }
+
+    void received(Connection connection, Object obj){
+        for(Listener listener : listeners.getListeners()) listener.received(connection, obj);
+    }
+
+    void disconnected(Connection connection){
+        if(!connections.remove(connection))return;
+        for(Listener listener : listeners.getListeners()) listener.disconnected(connection);
+    }
+
+    /**
+     * Delivers packets of a migrated connection which already passed the rate limits of its previous shard. Queuing
+     * listeners receive them via {@link QueuedTypeListenerServer#enqueueAdmitted(Connection, Iterable)}, all other
+     * listeners as usual.
+     * @param connection The migrated connection.
+     * @param packets The packets in the order they were received.
+     * @return The amount of packets that were queued by all queuing listeners.
+     */
+    int receivedAdmitted(Connection connection, ArrayList<Object> packets){
+        int queued = 0;
+        for(Listener listener : listeners.getListeners()){
+            if(listener instanceof QueuedTypeListenerServer){
+                queued += ((QueuedTypeListenerServer) listener).enqueueAdmitted(connection, packets);
+                continue;
+            }
+            for(int i = 0; i < packets.size(); i++) listener.received(connection, packets.get(i));
+        }
+        return queued;
+    }
+
+    /**
+     * @return The smallest queue capacity of all queuing listeners or {@link Integer#MAX_VALUE} if none is bounded.
+     */
+    int getQueueCapacity(){
+        int capacity = Integer.MAX_VALUE;
+        for(Listener listener : listeners.getListeners()){
+            if(!(listener instanceof QueuedTypeListenerServer))continue;
+            int bound = ((QueuedTypeListenerServer) listener).getQueueCapacity();
+            if(bound > 0)capacity = Math.min(capacity, bound);
+        }
+        return capacity;
+    }
+
+    /**
+     * Removes a connection that is migrated to another shard. Must be called by the thread updating this shard.
+     * @param connection The migrated connection.
+     * @param pending Receives the packets of the connection that were not handled yet, in the order they were
+     *                received.
+     * @return The amount of pending packets.
+     */
+    int leave(Connection connection, Consumer<Object> pending){
+        int removed = 0;
+        for(Listener listener : listeners.getListeners()){
+            if(listener instanceof QueuedTypeListenerServer)
+                removed += ((QueuedTypeListenerServer) listener).removePending(connection, pending);
+        }
+        disconnected(connection);
+        return removed;
+    }
+
+    /**
+     * @return A snapshot of the connections currently assigned to this shard.
+     */
+    public Connection[] getConnections(){
+        return connections.toArray(new Connection[0]);
+    }
+
+    public int getConnectionCount(){
+        return connections.size();
+    }
+
+    /* -- Tasks -- */
+
+    /**
+     * Runs a task on the thread updating this shard at the start of the next tick.
+     * @param task The task to run.
+     */
+    @Override
+    public void execute(Runnable task) {
+        Verify.nonNullArg(task, "Task cannot be null!");
+        tasks.add(task);
+    }
+
+    /* -- Updating -- */
+
+    /**
+     * Runs all pending tasks, updates all listeners and advances the {@link #tick}. Ticks run by the update thread are
+     * recorded to the {@link #tickStatistics} by the thread itself, manual updates record their own duration.
+     * @param delta The delta time since the last update.
+     */
+    @Override
+    public void update(float delta) {
+        long begin = System.nanoTime();
+        Runnable task;
+        while ((task = tasks.poll()) != null) task.run();
+        listeners.update(delta);
+        tick++;
+        if(Thread.currentThread() != updateThread)
+            tickStatistics.recordTick(System.nanoTime() - begin, 1_000_000_000L / ticks);
+    }
+
+    /* -- Tick loop -- */
+
+    /**
+     * Starts the update thread of this shard. Does nothing if it is already running.
+     */
+    public void start(){
+        synchronized (updateLock){
+            if(updateThread != null)return;
+            updateThread = new ServerUpdateThread(name, this, tickStatistics, ticks, catchUpPolicy,
+                    maxCatchUpSteps);
+            updateThread.start();
+        }
+    }
+
+    /**
+     * Stops the update thread of this shard and waits until its last tick finished.
+     */
+    public void stop(){
+        ServerUpdateThread thread;
+        synchronized (updateLock){
+            thread = updateThread;
+            if(thread == null)return;
+            updateThread = null;
+        }
+        thread.terminate();
+        if(thread == Thread.currentThread())return;
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isRunning(){
+        return updateThread != null;
+    }
+
+    /**
+     * Sets the amount of updates per second. A running update thread adopts the new rate without being restarted.
+     * @param ticks The amount of ticks per second.
+     */
+    public void setTicks(int ticks){
+        Verify.checkArg(ticks <= 0, "Ticks must be greater than 0!");
+        synchronized (updateLock){
+            this.ticks = ticks;
+            if(updateThread != null)updateThread.setTicks(ticks);
+        }
+    }
+
+    /**
+     * Sets how the update thread treats ticks that were missed because a previous tick took too long.
+     * @param policy The policy to use.
+     * @param maxCatchUpSteps The max amount of ticks run back-to-back with
+     *                        {@link ServerUpdateThread.CatchUpPolicy#CATCH_UP}.
+     */
+    public void setCatchUpPolicy(ServerUpdateThread.CatchUpPolicy policy, int maxCatchUpSteps){
+        Verify.nonNullArg(policy, "Catch-up policy cannot be null!");
+        Verify.checkArg(maxCatchUpSteps <= 0, "Max catch-up steps must be greater than 0!");
+        synchronized (updateLock){
+            this.catchUpPolicy = policy;
+            this.maxCatchUpSteps = maxCatchUpSteps;
+            if(updateThread != null){
+                updateThread.setPolicy(policy);
+                updateThread.setMaxCatchUpSteps(maxCatchUpSteps);
+            }
+        }
+    }
+
+    /**
+     * @return The amount of ticks whose execution took longer than one tick interval, counted by the
+     * {@link #tickStatistics} while they are enabled.
+     */
+    public long getTickOverruns(){
+        return tickStatistics.getOverrunTicks();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
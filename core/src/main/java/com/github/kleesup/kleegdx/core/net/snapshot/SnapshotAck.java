@@ -0,0 +1,20 @@
+package com.github.kleesup.kleegdx.core.net.snapshot;
+
+/**
+ * Packet sent by a {@link SnapshotReceiver} to acknowledge a received {@link SnapshotPacket}. The acknowledged state
+ * becomes the new baseline of the {@link SnapshotReplicator}.
+ */
+public class SnapshotAck {
+
+    public int channel;
+    public int objectId;
+    public int sequence;
+
+    public SnapshotAck(){}
+    public SnapshotAck(int channel, int objectId, int sequence){
+        this.channel = channel;
+        this.objectId = objectId;
+        this.sequence = sequence;
+    }
+
+}
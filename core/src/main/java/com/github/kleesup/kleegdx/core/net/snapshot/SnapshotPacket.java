@@ -0,0 +1,73 @@
+package com.github.kleesup.kleegdx.core.net.snapshot;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Packet carrying the (delta) state of one replicated object, sent by a {@link SnapshotReplicator} and read by a
+ * {@link SnapshotReceiver}. It is written by the {@link SnapshotSerializer}, so the data array does not need to be
+ * registered.
+ */
+public class SnapshotPacket {
+
+    /** Identifies the replicator/receiver pair, so multiple object types can be replicated at once. */
+    public int channel;
+    public int objectId;
+    public int sequence;
+    /** The sequence of the state the data is encoded against or {@link #FULL} if the data contains all fields. */
+    public int baselineSequence;
+    public byte[] data;
+
+    /** Baseline sequence of snapshots that contain the full state. */
+    public static final int FULL = -1;
+
+    public SnapshotPacket(){}
+    public SnapshotPacket(int channel, int objectId, int sequence, int baselineSequence, byte[] data){
+        this.channel = channel;
+        this.objectId = objectId;
+        this.sequence = sequence;
+        this.baselineSequence = baselineSequence;
+        this.data = data;
+    }
+
+    public boolean isFull(){
+        return baselineSequence == FULL;
+    }
+
+    /**
+     * Writes the header fields as varints and the data as length-prefixed bytes.
+     */
+    public static class SnapshotSerializer extends Serializer<SnapshotPacket> {
+
+        @Override
+        public void write(Kryo kryo, Output output, SnapshotPacket packet) {
+            output.writeVarInt(packet.channel, true);
+            output.writeVarInt(packet.objectId, true);
+            output.writeVarInt(packet.sequence, true);
+            output.writeVarInt(packet.baselineSequence, false);
+            //length + 1, so 0 marks missing data
+            if(packet.data == null){
+                output.writeVarInt(0, true);
+                return;
+            }
+            output.writeVarInt(packet.data.length + 1, true);
+            output.writeBytes(packet.data);
+        }
+
+        @Override
+        public SnapshotPacket read(Kryo kryo, Input input, Class<? extends SnapshotPacket> type) {
+            SnapshotPacket packet = new SnapshotPacket();
+            packet.channel = input.readVarInt(true);
+            packet.objectId = input.readVarInt(true);
+            packet.sequence = input.readVarInt(true);
+            packet.baselineSequence = input.readVarInt(false);
+            int length = input.readVarInt(true);
+            packet.data = length == 0 ? null : input.readBytes(length - 1);
+            return packet;
+        }
+
+    }
+
+}
@@ -0,0 +1,130 @@
+package com.github.kleesup.kleegdx.core.net.snapshot;
+
+import com.badlogic.gdx.utils.IntMap;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.github.kleesup.kleegdx.core.serialize.AbstractSingleDataTransferable;
+import com.github.kleesup.kleegdx.core.serialize.DeltaCodec;
+import com.github.kleesup.kleegdx.core.util.Verify;
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Receives {@link SnapshotPacket}s sent by a {@link SnapshotReplicator}, decodes them against the states received
+ * before and acknowledges every applied snapshot. Snapshots that are older than the newest applied one are ignored.
+ * If the baseline of a delta is not known (anymore), the snapshot is dropped and a full snapshot is requested.
+ * <p>
+ * This class is not thread-safe and should only be used from the thread handling the packets.
+ * </p>
+ * @param <D> The type of the data transfer object.
+ */
+public class SnapshotReceiver<D> {
+
+    /** The last received states of one object. */
+    private static final class History {
+        private final DeltaCodec.State[] states;
+        private final int[] sequences;
+        private int sequence = SnapshotPacket.FULL;
+        private History(int size){
+            this.states = new DeltaCodec.State[size];
+            this.sequences = new int[size];
+            Arrays.fill(sequences, SnapshotPacket.FULL);
+        }
+    }
+
+    @Getter
+    private final int channel;
+    @Getter
+    private final DeltaCodec<D> codec;
+    private final Kryo kryo;
+    @Getter
+    private final int historySize;
+    private final Consumer<SnapshotAck> ackSender;
+    private final Input input = new Input();
+    private final IntMap<History> histories = new IntMap<>();
+
+    /* -- Statistics -- */
+    @Getter
+    private long droppedSnapshots;
+
+    /**
+     * Builds a new receiver.
+     * @param channel The channel of the snapshots, needs to match the channel of the {@link SnapshotReplicator}.
+     * @param codec The codec of the replicated DTO type.
+     * @param kryo The kryo instance to decode object fields with.
+     * @param historySize The amount of received states kept per object. Needs to match the history size of the
+     *                    {@link SnapshotReplicator}.
+     * @param ackSender The function sending acknowledgements to the server (e.g. sending them via UDP).
+     */
+    public SnapshotReceiver(int channel, DeltaCodec<D> codec, Kryo kryo, int historySize,
+                            Consumer<SnapshotAck> ackSender){
+        Verify.nonNullArg(codec, "Codec cannot be null!");
+        Verify.nonNullArg(kryo, "Kryo cannot be null!");
+        Verify.nonNullArg(ackSender, "Ack sender cannot be null!");
+        Verify.checkArg(historySize <= 0, "History size must be greater than 0!");
+        this.channel = channel;
+        this.codec = codec;
+        this.kryo = kryo;
+        this.historySize = historySize;
+        this.ackSender = ackSender;
+    }
+    public SnapshotReceiver(int channel, DeltaCodec<D> codec, Kryo kryo, Consumer<SnapshotAck> ackSender){
+        this(channel, codec, kryo, SnapshotReplicator.DEFAULT_HISTORY_SIZE, ackSender);
+    }
+
+    /**
+     * Decodes a snapshot and writes the resulting state into a DTO.
+     * @param packet The received snapshot.
+     * @param target The DTO to write the state to.
+     * @return {@code true} if the snapshot was applied, {@code false} if it belongs to another channel, is outdated or
+     * its baseline is unknown.
+     */
+    public boolean receive(SnapshotPacket packet, D target){
+        Verify.nonNullArg(target, "Target cannot be null!");
+        if(packet.channel != channel)return false;
+        History history = histories.get(packet.objectId);
+        if(history == null)histories.put(packet.objectId, history = new History(historySize));
+        if(packet.sequence <= history.sequence)return false; //outdated or duplicated
+
+        DeltaCodec.State baseline = null;
+        if(!packet.isFull()){
+            int baseSlot = packet.baselineSequence % historySize;
+            if(history.sequences[baseSlot] != packet.baselineSequence){
+                droppedSnapshots++;
+                ackSender.accept(new SnapshotAck(channel, packet.objectId, SnapshotPacket.FULL));
+                return false;
+            }
+            baseline = history.states[baseSlot];
+        }
+        int slot = packet.sequence % historySize;
+        DeltaCodec.State state = history.states[slot];
+        if(state == null || state == baseline)state = history.states[slot] = codec.newState();
+        input.setBuffer(packet.data);
+        codec.read(kryo, input, baseline, state);
+        history.sequences[slot] = packet.sequence;
+        history.sequence = packet.sequence;
+
+        codec.apply(kryo, state, target);
+        ackSender.accept(new SnapshotAck(channel, packet.objectId, packet.sequence));
+        return true;
+    }
+
+    /**
+     * Decodes a snapshot directly into the held DTO of an object. See {@link #receive(SnapshotPacket, Object)}.
+     */
+    public boolean receiveInto(SnapshotPacket packet, AbstractSingleDataTransferable<? extends D> obj){
+        return receive(packet, obj.toDataTransferObject());
+    }
+
+    /**
+     * Forgets all received states of an object. Needs to be called when the object was removed on the server (see
+     * {@link SnapshotReplicator#removeObject(int)}), as its sequence starts over if the id is reused.
+     * @param objectId The id of the object.
+     */
+    public void remove(int objectId){
+        histories.remove(objectId);
+    }
+
+}
@@ -0,0 +1,199 @@
+package com.github.kleesup.kleegdx.core.net.snapshot;
+
+import com.badlogic.gdx.utils.IntMap;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Output;
+import com.github.kleesup.kleegdx.core.net.NetParticipant;
+import com.github.kleesup.kleegdx.core.serialize.DeltaCodec;
+import com.github.kleesup.kleegdx.core.serialize.IDataTransferable;
+import com.github.kleesup.kleegdx.core.util.Verify;
+import lombok.Getter;
+
+import java.util.IdentityHashMap;
+
+/**
+ * Sends the state of replicated objects as delta compressed {@link SnapshotPacket}s. For every participant and object
+ * the last state acknowledged by the participant (see {@link SnapshotAck}) is kept as baseline and only fields that
+ * differ from it are sent. As deltas always refer to an acknowledged state, lost packets do not break later deltas,
+ * so snapshots can be sent via UDP.
+ * <p>
+ * A full snapshot is sent if the participant has not acknowledged any state of the object yet (e.g. it just joined or
+ * the object just became visible), if the baseline is older than {@link #getHistorySize()} snapshots or if the
+ * participant requested one by acknowledging {@link SnapshotPacket#FULL}.
+ * </p>
+ * <p>
+ * This class is not thread-safe and should only be used from the thread updating the server, acknowledgements
+ * should therefore be handled through a packet queue. The kryo instance is used to encode object fields and must
+ * not be shared with a network thread.
+ * </p>
+ * @param <D> The type of the data transfer object.
+ */
+public class SnapshotReplicator<D> {
+
+    /** Default amount of unacknowledged snapshots kept per participant and object. */
+    public static final int DEFAULT_HISTORY_SIZE = 32;
+
+    /** Sent but unacknowledged states and the acknowledged baseline of one object for one participant. */
+    private static final class History {
+        private final DeltaCodec.State[] states;
+        private final int[] sequences;
+        private int sequence;
+        private DeltaCodec.State baseline;
+        private int baselineSequence = SnapshotPacket.FULL;
+        private History(int size){
+            this.states = new DeltaCodec.State[size];
+            this.sequences = new int[size];
+        }
+    }
+
+    @Getter
+    private final int channel;
+    @Getter
+    private final DeltaCodec<D> codec;
+    private final Kryo kryo;
+    @Getter
+    private final int historySize;
+    private final Output output = new Output(256, -1);
+    private final IdentityHashMap<NetParticipant, IntMap<History>> histories = new IdentityHashMap<>();
+
+    /* -- Statistics -- */
+    @Getter
+    private long fullSnapshots;
+    @Getter
+    private long deltaSnapshots;
+    @Getter
+    private long sentBytes;
+
+    /**
+     * Builds a new replicator.
+     * @param channel The channel of the snapshots, needs to match the channel of the {@link SnapshotReceiver}.
+     * @param codec The codec of the replicated DTO type.
+     * @param kryo The kryo instance to encode object fields with.
+     * @param historySize The amount of unacknowledged snapshots kept per participant and object. Needs to match the
+     *                    history size of the {@link SnapshotReceiver}.
+     */
+    public SnapshotReplicator(int channel, DeltaCodec<D> codec, Kryo kryo, int historySize){
+        Verify.nonNullArg(codec, "Codec cannot be null!");
+        Verify.nonNullArg(kryo, "Kryo cannot be null!");
+        Verify.checkArg(historySize <= 0, "History size must be greater than 0!");
+        this.channel = channel;
+        this.codec = codec;
+        this.kryo = kryo;
+        this.historySize = historySize;
+    }
+    public SnapshotReplicator(int channel, DeltaCodec<D> codec, Kryo kryo){
+        this(channel, codec, kryo, DEFAULT_HISTORY_SIZE);
+    }
+
+    /* -- Sending -- */
+
+    /**
+     * Sends the current state of an object to a participant, encoded against the last state the participant
+     * acknowledged.
+     * @param participant The participant to send to.
+     * @param objectId The id of the replicated object.
+     * @param dto The current state of the object.
+     * @param udp Whether to use UDP.
+     */
+    public void send(NetParticipant participant, int objectId, D dto, boolean udp){
+        Verify.nonNullArg(dto, "DTO cannot be null!");
+        History history = getHistory(participant, objectId);
+        int sequence = ++history.sequence;
+        int slot = sequence % historySize;
+        DeltaCodec.State current = history.states[slot];
+        if(current == null)current = history.states[slot] = codec.newState();
+        history.sequences[slot] = sequence;
+        codec.capture(kryo, dto, current);
+
+        DeltaCodec.State baseline = null;
+        int baselineSequence = SnapshotPacket.FULL;
+        if(history.baselineSequence != SnapshotPacket.FULL && sequence - history.baselineSequence < historySize){
+            baseline = history.baseline;
+            baselineSequence = history.baselineSequence;
+            deltaSnapshots++;
+        }else fullSnapshots++;
+
+        output.reset();
+        codec.write(kryo, output, baseline, current);
+        byte[] data = output.toBytes();
+        sentBytes += data.length;
+        participant.send(new SnapshotPacket(channel, objectId, sequence, baselineSequence, data), udp);
+    }
+
+    /**
+     * Sends the current state of an object using its data transfer object. Objects extending
+     * {@link com.github.kleesup.kleegdx.core.serialize.AbstractSingleDataTransferable} do not create a new DTO for this.
+     * See {@link #send(NetParticipant, int, Object, boolean)}.
+     */
+    public void sendTransferable(NetParticipant participant, int objectId, IDataTransferable<? extends D> obj,
+                                 boolean udp){
+        send(participant, objectId, obj.toDataTransferObject(), udp);
+    }
+
+    /**
+     * Handles an acknowledgement of a participant. The acknowledged state becomes the new baseline, unless a newer
+     * one was already acknowledged. Acknowledging {@link SnapshotPacket#FULL} resets the baseline, so the next
+     * snapshot contains the full state.
+     * @param participant The participant that sent the acknowledgement.
+     * @param ack The acknowledgement.
+     */
+    public void acknowledge(NetParticipant participant, SnapshotAck ack){
+        if(ack.channel != channel)return;
+        IntMap<History> objects = histories.get(participant);
+        if(objects == null)return;
+        History history = objects.get(ack.objectId);
+        if(history == null)return;
+        if(ack.sequence == SnapshotPacket.FULL){
+            history.baselineSequence = SnapshotPacket.FULL;
+            return;
+        }
+        if(ack.sequence <= history.baselineSequence || ack.sequence > history.sequence)return;
+        int slot = ack.sequence % historySize;
+        if(history.sequences[slot] != ack.sequence)return; //already overwritten by newer snapshots
+        if(history.baseline == null)history.baseline = codec.newState();
+        history.baseline.set(history.states[slot]);
+        history.baselineSequence = ack.sequence;
+    }
+
+    /* -- Management -- */
+
+    private History getHistory(NetParticipant participant, int objectId){
+        Verify.nonNullArg(participant, "Participant cannot be null!");
+        IntMap<History> objects = histories.get(participant);
+        if(objects == null)histories.put(participant, objects = new IntMap<>());
+        History history = objects.get(objectId);
+        if(history == null)objects.put(objectId, history = new History(historySize));
+        return history;
+    }
+
+    /**
+     * Forgets the baseline of an object for a participant, so the next snapshot contains the full state. Should be
+     * called when the object is despawned for the participant.
+     * @param participant The participant.
+     * @param objectId The id of the object.
+     */
+    public void reset(NetParticipant participant, int objectId){
+        IntMap<History> objects = histories.get(participant);
+        if(objects == null)return;
+        History history = objects.get(objectId);
+        if(history != null)history.baselineSequence = SnapshotPacket.FULL; //keep the sequence, it must not restart
+    }
+
+    /**
+     * Forgets all baselines of a participant. Should be called when the participant disconnects.
+     * @param participant The participant to remove.
+     */
+    public void removeParticipant(NetParticipant participant){
+        histories.remove(participant);
+    }
+
+    /**
+     * Forgets the baselines of an object for all participants. Should be called when the object is removed, receivers
+     * have to call {@link SnapshotReceiver#remove(int)} as well.
+     * @param objectId The id of the object to remove.
+     */
+    public void removeObject(int objectId){
+        for(IntMap<History> objects : histories.values()) objects.remove(objectId);
+    }
+
+}
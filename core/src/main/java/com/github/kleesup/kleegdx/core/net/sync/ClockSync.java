@@ -0,0 +1,204 @@
+package com.github.kleesup.kleegdx.core.net.sync;
+
+import com.github.kleesup.kleegdx.core.util.Verify;
+import lombok.Getter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Client side estimator of the network quality and the server clock based on {@link TimePing}/{@link TimePong}
+ * round trips. Pings are sent periodically via {@link #update(long, Consumer)}, pongs are passed to
+ * {@link #onPong(TimePong, long)} as soon as they arrive.
+ * <p>
+ * The round-trip time is smoothed and its mean deviation is used as jitter, like the retransmission timer of TCP.
+ * The clock offset assumes symmetric paths: the server clock at arrival is the server time of the pong plus half the
+ * round-trip time. Samples with a round-trip time far above the best one are ignored for the offset, as they were
+ * likely delayed on one way only. With the offset and the last received server tick, the current server tick can be
+ * estimated, e.g. to send inputs that arrive just in time for a specific tick (see {@link #getArrivalTick(long)}).
+ * </p>
+ * <p>
+ * All methods are synchronized, as pings are usually sent from the updating thread and pongs received on the network
+ * thread.
+ * </p>
+ */
+public class ClockSync {
+
+    /** Default time between two pings. */
+    public static final long DEFAULT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    /** Time between the first {@link #FAST_SAMPLES} pings, so estimates are available quickly after connecting. */
+    public static final long FAST_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    public static final int FAST_SAMPLES = 5;
+
+    private final boolean udp;
+    @Getter
+    private long intervalNanos = DEFAULT_INTERVAL_NANOS;
+    private int nextId;
+    private boolean pinged;
+    private long lastPingNanos;
+
+    /* -- Estimates -- */
+    private long samples;
+    private long lastRoundTrip;
+    private long minRoundTrip = Long.MAX_VALUE;
+    private long smoothedRoundTrip;
+    private long roundTripDeviation;
+    private long clockOffset;
+    private long baseServerTick;
+    private long baseServerNanos;
+    private long tickNanos;
+
+    /**
+     * @param udp Whether pings and pongs are sent via UDP, which measures the latency of unreliable packets.
+     */
+    public ClockSync(boolean udp){
+        this.udp = udp;
+    }
+
+    /**
+     * Sets the time between two pings after the first {@link #FAST_SAMPLES} samples.
+     * @param intervalNanos The interval in nanoseconds, must be greater than {@code 0}.
+     */
+    public synchronized void setIntervalNanos(long intervalNanos){
+        Verify.checkArg(intervalNanos <= 0, "Interval must be greater than 0!");
+        this.intervalNanos = intervalNanos;
+    }
+
+    /* -- Measuring -- */
+
+    /**
+     * Sends a ping if one is due.
+     * @param now The current time, see {@link System#nanoTime()}.
+     * @param sender Sends the ping to the server.
+     */
+    public void update(long now, Consumer<Object> sender){
+        TimePing ping = pollPing(now);
+        if(ping != null)sender.accept(ping);
+    }
+
+    /**
+     * @param now The current time, see {@link System#nanoTime()}.
+     * @return A new ping if one is due, {@code null} otherwise.
+     */
+    public synchronized TimePing pollPing(long now){
+        long interval = samples < FAST_SAMPLES ? FAST_INTERVAL_NANOS : intervalNanos;
+        if(pinged && now - lastPingNanos < interval)return null;
+        pinged = true;
+        lastPingNanos = now;
+        return new TimePing(nextId++, now, udp);
+    }
+
+    /**
+     * Updates all estimates with a received pong.
+     * @param pong The received pong.
+     * @param now The current time, see {@link System#nanoTime()}.
+     */
+    public synchronized void onPong(TimePong pong, long now){
+        long roundTrip = now - pong.clientNanos;
+        if(roundTrip < 0)return;
+        lastRoundTrip = roundTrip;
+        if(roundTrip < minRoundTrip)minRoundTrip = roundTrip;
+        long offset = pong.serverNanos + roundTrip / 2 - now;
+        if(samples == 0){
+            smoothedRoundTrip = roundTrip;
+            roundTripDeviation = roundTrip / 2;
+            clockOffset = offset;
+        }else{
+            long error = roundTrip - smoothedRoundTrip;
+            smoothedRoundTrip += error / 8;
+            roundTripDeviation += (Math.abs(error) - roundTripDeviation) / 4;
+            if(roundTrip <= minRoundTrip + 2 * roundTripDeviation){
+                long weight = Math.min(samples + 1, 8); //average the first samples, smooth afterwards
+                clockOffset += (offset - clockOffset) / weight;
+            }
+        }
+        baseServerTick = pong.serverTick;
+        baseServerNanos = pong.serverNanos;
+        tickNanos = Math.max(1, pong.tickNanos);
+        samples++;
+    }
+
+    /**
+     * Forgets all samples, e.g. after reconnecting.
+     */
+    public synchronized void reset(){
+        samples = 0;
+        pinged = false;
+        minRoundTrip = Long.MAX_VALUE;
+        lastRoundTrip = smoothedRoundTrip = roundTripDeviation = clockOffset = 0;
+    }
+
+    /* -- Estimates -- */
+
+    /**
+     * @return The smoothed round-trip time in nanoseconds or {@code 0} if no pong was received yet.
+     */
+    public synchronized long getRoundTripNanos(){
+        return smoothedRoundTrip;
+    }
+
+    /**
+     * @return The mean deviation of the round-trip time in nanoseconds.
+     */
+    public synchronized long getJitterNanos(){
+        return roundTripDeviation;
+    }
+
+    public synchronized long getLastRoundTripNanos(){
+        return lastRoundTrip;
+    }
+
+    /**
+     * @return The smallest measured round-trip time or {@code 0} if no pong was received yet.
+     */
+    public synchronized long getMinRoundTripNanos(){
+        return samples == 0 ? 0 : minRoundTrip;
+    }
+
+    /**
+     * @return The estimated difference between the server clock and the client clock
+     * ({@code server - client}) in nanoseconds.
+     */
+    public synchronized long getClockOffsetNanos(){
+        return clockOffset;
+    }
+
+    public synchronized long getSamples(){
+        return samples;
+    }
+
+    public synchronized boolean hasSamples(){
+        return samples > 0;
+    }
+
+    /**
+     * @param clientNanos A client time, see {@link System#nanoTime()}.
+     * @return The estimated server time at that moment.
+     */
+    public synchronized long toServerNanos(long clientNanos){
+        return clientNanos + clockOffset;
+    }
+
+    /**
+     * @param now The current time, see {@link System#nanoTime()}.
+     * @return The estimated current server tick including the fraction of the running tick or {@code -1} if no pong
+     * was received yet.
+     */
+    public synchronized double getEstimatedServerTick(long now){
+        if(samples == 0)return -1;
+        return baseServerTick + (double) (now + clockOffset - baseServerNanos) / tickNanos;
+    }
+
+    /**
+     * Estimates the first server tick that can handle a packet sent now, including a safety margin of twice the
+     * jitter.
+     * @param now The current time, see {@link System#nanoTime()}.
+     * @return The tick or {@code -1} if no pong was received yet.
+     */
+    public synchronized long getArrivalTick(long now){
+        if(samples == 0)return -1;
+        long arrival = now + smoothedRoundTrip / 2 + 2 * roundTripDeviation;
+        return (long) Math.ceil(getEstimatedServerTick(arrival));
+    }
+
+}
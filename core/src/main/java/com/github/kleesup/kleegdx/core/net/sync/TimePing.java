@@ -0,0 +1,21 @@
+package com.github.kleesup.kleegdx.core.net.sync;
+
+/**
+ * Sent by a client to measure the round-trip time and the server clock, answered with a {@link TimePong}.
+ */
+public class TimePing {
+
+    public int id;
+    /** The client time when the ping was sent, see {@link System#nanoTime()}. */
+    public long clientNanos;
+    /** Whether the pong should be sent via UDP. */
+    public boolean udp;
+
+    public TimePing(){}
+    public TimePing(int id, long clientNanos, boolean udp){
+        this.id = id;
+        this.clientNanos = clientNanos;
+        this.udp = udp;
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.github.kleesup.kleegdx.core.net.sync;
+
+/**
+ * Answer of the server to a {@link TimePing}, carrying the server clock and tick at the time of answering.
+ */
+public class TimePong {
+
+    public int id;
+    /** The client time copied from the ping. */
+    public long clientNanos;
+    /** The server time when the pong was sent, see {@link System#nanoTime()}. */
+    public long serverNanos;
+    /** The current tick of the server. */
+    public long serverTick;
+    /** The interval between two server ticks. */
+    public long tickNanos;
+
+    public TimePong(){}
+    public TimePong(TimePing ping, long serverNanos, long serverTick, long tickNanos){
+        this.id = ping.id;
+        this.clientNanos = ping.clientNanos;
+        this.serverNanos = serverNanos;
+        this.serverTick = serverTick;
+        this.tickNanos = tickNanos;
+    }
+
+}
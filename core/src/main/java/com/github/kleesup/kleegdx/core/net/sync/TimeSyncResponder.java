@@ -0,0 +1,82 @@
+package com.github.kleesup.kleegdx.core.net.sync;
+
+import com.esotericsoftware.kryonet.Connection;
+import com.esotericsoftware.kryonet.Listener;
+import com.github.kleesup.kleegdx.core.net.GameServer;
+import com.github.kleesup.kleegdx.core.net.packet.TypePacketProcessor;
+import com.github.kleesup.kleegdx.core.net.shard.WorldShard;
+import com.github.kleesup.kleegdx.core.util.Verify;
+
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Server listener answering {@link TimePing}s with {@link TimePong}s. Pings are answered directly on the network
+ * thread instead of being queued, so the measured round-trip time does not depend on the tick rate.
+ * <p>
+ * The reported tick is taken from a tick source, usually the {@link GameServer} or, when the world runs on shards,
+ * the {@link WorldShard} the connections are assigned to, as every shard has its own tick.
+ * </p>
+ */
+public class TimeSyncResponder implements Listener {
+
+    /**
+     * Adds a responder to a server and registers a no-op handler for pings on its packet processor, so queued pings
+     * are not counted as unknown packets.
+     * @param server The server to answer pings for.
+     * @param processor The packet processor of the server or {@code null}.
+     * @return The added responder.
+     */
+    public static TimeSyncResponder install(GameServer server, TypePacketProcessor processor){
+        TimeSyncResponder responder = new TimeSyncResponder(server);
+        server.addListener(responder);
+        if(processor != null)processor.register(TimePing.class, (connection, ping) -> {});
+        return responder;
+    }
+
+    /**
+     * Adds a responder reporting the tick of a shard to it, see {@link #install(GameServer, TypePacketProcessor)}.
+     * @param shard The shard to answer pings for.
+     * @param processor The packet processor of the shard or {@code null}.
+     * @return The added responder.
+     */
+    public static TimeSyncResponder install(WorldShard shard, TypePacketProcessor processor){
+        TimeSyncResponder responder = new TimeSyncResponder(shard);
+        shard.addListener(responder);
+        if(processor != null)processor.register(TimePing.class, (connection, ping) -> {});
+        return responder;
+    }
+
+    private final LongSupplier tick;
+    private final IntSupplier ticks;
+
+    /**
+     * Builds a responder with a custom tick source.
+     * @param tick Supplies the current tick.
+     * @param ticks Supplies the amount of ticks per second.
+     */
+    public TimeSyncResponder(LongSupplier tick, IntSupplier ticks){
+        Verify.nonNullArg(tick, "Tick cannot be null!");
+        Verify.nonNullArg(ticks, "Ticks cannot be null!");
+        this.tick = tick;
+        this.ticks = ticks;
+    }
+    public TimeSyncResponder(GameServer server){
+        this(() -> server.getTick(), () -> server.getTicks());
+        Verify.nonNullArg(server, "Server cannot be null!");
+    }
+    public TimeSyncResponder(WorldShard shard){
+        this(() -> shard.getTick(), () -> shard.getTicks());
+        Verify.nonNullArg(shard, "Shard cannot be null!");
+    }
+
+    @Override
+    public void received(Connection connection, Object object) {
+        if(!(object instanceof TimePing))return;
+        TimePing ping = (TimePing) object;
+        TimePong pong = new TimePong(ping, System.nanoTime(), tick.getAsLong(), 1_000_000_000L / ticks.getAsInt());
+        if(ping.udp)connection.sendUDP(pong);
+        else connection.sendTCP(pong);
+    }
+
+}
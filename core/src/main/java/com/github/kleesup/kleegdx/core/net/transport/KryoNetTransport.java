@@ -0,0 +1,64 @@
+package com.github.kleesup.kleegdx.core.net.transport;
+
+import com.esotericsoftware.kryonet.Connection;
+import com.github.kleesup.kleegdx.core.net.GameServer;
+import com.github.kleesup.kleegdx.core.net.NetUtil;
+import com.github.kleesup.kleegdx.core.util.Verify;
+import lombok.Getter;
+
+import java.io.IOException;
+
+/**
+ * Transport binding the sockets of the KryoNet server a {@link GameServer} is based on. Connections are managed by
+ * KryoNet, so {@link #getConnections()} is always empty.
+ */
+public class KryoNetTransport implements ServerTransport {
+
+    private static final Connection[] NO_CONNECTIONS = new Connection[0];
+
+    @Getter
+    private final int tcpPort, udpPort;
+    private GameServer server;
+    private volatile boolean open;
+
+    /**
+     * @param tcpPort The port to bind TCP to.
+     * @param udpPort The port to bind UDP to or {@code -1} to not use UDP.
+     */
+    public KryoNetTransport(int tcpPort, int udpPort){
+        Verify.checkArg(!NetUtil.isValidPort(tcpPort), "Invalid tcp port "+tcpPort+"!");
+        Verify.checkArg(udpPort != -1 && !NetUtil.isValidPort(udpPort), "Invalid udp port "+udpPort+"!");
+        this.tcpPort = tcpPort;
+        this.udpPort = udpPort;
+    }
+    public KryoNetTransport(int tcpPort){
+        this(tcpPort, -1);
+    }
+
+    @Override
+    public void open(GameServer server) throws IOException {
+        if(open)return;
+        if(!server.isServerRunning())server.start();
+        if(udpPort != -1)server.bind(tcpPort, udpPort);
+        else server.bind(tcpPort);
+        this.server = server;
+        this.open = true;
+    }
+
+    @Override
+    public void close() {
+        if(!open)return;
+        open = false;
+        server.close();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public Connection[] getConnections() {
+        return NO_CONNECTIONS;
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.kleesup.kleegdx.core.net.transport;
+
+import com.esotericsoftware.kryonet.Connection;
+import com.esotericsoftware.kryonet.Listener;
+import lombok.Getter;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link Connection} of a {@link LoopbackTransport} between a server and a client in the same JVM. On the server
+ * site it behaves like any other connection, packets sent to it are handed to the client listener on the sending
+ * thread. The client sends packets via {@link #sendToServer(Object)}. TCP and UDP are treated the same. Closing the
+ * connection from either site notifies both the server and the client listener.
+ */
+public class LoopbackConnection extends Connection {
+
+    @Getter
+    private final LoopbackTransport transport;
+    private final int id;
+    private final Listener client;
+    private final AtomicBoolean connected = new AtomicBoolean(true);
+
+    LoopbackConnection(LoopbackTransport transport, int id, Listener client){
+        this.transport = transport;
+        this.id = id;
+        this.client = client;
+    }
+
+    /**
+     * Sends a packet from the client to the server. The server listeners receive it on the calling thread.
+     * @param obj The packet to send.
+     * @return The amount of serialized bytes or {@code 0} if the transport does not serialize.
+     */
+    public int sendToServer(Object obj){
+        if(!connected.get())return 0;
+        return transport.deliverToServer(this, obj);
+    }
+
+    @Override
+    public int sendTCP(Object object) {
+        if(!connected.get())return 0;
+        return transport.deliverToClient(this, client, object);
+    }
+
+    @Override
+    public int sendUDP(Object object) {
+        return sendTCP(object);
+    }
+
+    @Override
+    public void close() {
+        if(!connected.compareAndSet(true, false))return;
+        transport.disconnected(this);
+        client.disconnected(this);
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected.get();
+    }
+
+    @Override
+    public int getID() {
+        return id;
+    }
+
+    /* -- Socket specific methods -- */
+
+    @Override
+    public InetSocketAddress getRemoteAddressTCP() {
+        return null;
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddressUDP() {
+        return null;
+    }
+
+    @Override
+    public void updateReturnTripTime() {}
+
+    @Override
+    public void setKeepAliveTCP(int keepAliveMillis) {}
+
+    @Override
+    public void setTimeout(int timeoutMillis) {}
+
+    @Override
+    public boolean isIdle() {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "LoopbackConnection " + id;
+    }
+}
@@ -0,0 +1,219 @@
+package com.github.kleesup.kleegdx.core.net.transport;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryonet.Connection;
+import com.esotericsoftware.kryonet.Listener;
+import com.github.kleesup.kleegdx.core.net.GameServer;
+import com.github.kleesup.kleegdx.core.net.SerializedPacket;
+import com.github.kleesup.kleegdx.core.net.packet.PooledPacket;
+import com.github.kleesup.kleegdx.core.util.Verify;
+import lombok.Getter;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Transport connecting clients in the same JVM to a server without sockets, e.g. for integrated servers, tests or
+ * benchmarks with thousands of simulated clients. Each client gets a {@link LoopbackConnection} via
+ * {@link #connect(Listener)}.
+ * <p>
+ * By default, packets are handed over as they are, pooled packets are retained for the receiver (see
+ * {@link PooledPacket#share(Object)}). If a kryo factory is given, every packet is serialized and
+ * deserialized again on the sending thread (using one kryo instance per thread), so the receiver gets a copy and the
+ * serialization cost is the same as over the network. The factory must register the same classes as the real
+ * server and client.
+ * </p>
+ */
+public class LoopbackTransport implements ServerTransport {
+
+    private final Supplier<Kryo> kryoFactory;
+    private final ThreadLocal<Kryo> kryos;
+    private final ThreadLocal<Output> outputs = ThreadLocal.withInitial(() -> new Output(1024, -1));
+    private final ThreadLocal<Input> inputs = ThreadLocal.withInitial(Input::new);
+    private final ConcurrentHashMap<Integer, LoopbackConnection> connections = new ConcurrentHashMap<>();
+    private final Object connectionLock = new Object();
+    private volatile Connection[] connectionArray = new Connection[0];
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    private final LongAdder serializedBytes = new LongAdder();
+    @Getter
+    private volatile GameServer server;
+    private volatile Listener target;
+    private volatile boolean open;
+
+    /**
+     * Builds a transport that hands packets over without serialization.
+     */
+    public LoopbackTransport(){
+        this(null);
+    }
+
+    /**
+     * Builds a transport that serializes every packet.
+     * @param kryoFactory Creates a kryo instance for each sending thread or {@code null} to not serialize packets.
+     */
+    public LoopbackTransport(Supplier<Kryo> kryoFactory){
+        this.kryoFactory = kryoFactory;
+        this.kryos = kryoFactory != null ? ThreadLocal.withInitial(kryoFactory) : null;
+    }
+
+    /* -- Transport -- */
+
+    @Override
+    public void open(GameServer server) {
+        Verify.nonNullArg(server, "Server cannot be null!");
+        this.server = server;
+        this.target = new Listener() {
+            @Override
+            public void connected(Connection connection) {
+                server.notifyConnected(connection);
+            }
+            @Override
+            public void disconnected(Connection connection) {
+                server.notifyDisconnected(connection);
+            }
+            @Override
+            public void received(Connection connection, Object object) {
+                server.notifyReceived(connection, object);
+            }
+        };
+        this.open = true;
+    }
+
+    /**
+     * Opens this transport for a listener instead of a server. The listener receives the events of all connections
+     * like the listeners of a server.
+     * @param listener The listener to deliver connections and packets to.
+     */
+    public void open(Listener listener) {
+        Verify.nonNullArg(listener, "Listener cannot be null!");
+        this.server = null;
+        this.target = listener;
+        this.open = true;
+    }
+
+    @Override
+    public void close() {
+        if(!open)return;
+        open = false;
+        for(LoopbackConnection connection : connections.values()) connection.close();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public Connection[] getConnections() {
+        return connectionArray;
+    }
+
+    /* -- Connections -- */
+
+    /**
+     * Connects a new client. The server listeners and the client listener are notified on the calling thread.
+     * @param client The listener of the client, e.g. a
+     *               {@link com.github.kleesup.kleegdx.core.net.listener.QueuedTypeListenerClient}. It receives all
+     *               packets the server sends on the sending thread.
+     * @return The connection, the client sends packets via {@link LoopbackConnection#sendToServer(Object)}.
+     * @throws IllegalStateException If the transport is not open.
+     */
+    public LoopbackConnection connect(Listener client){
+        Verify.nonNullArg(client, "Client listener cannot be null!");
+        if(!open)throw new IllegalStateException("Transport is not open!");
+        LoopbackConnection connection = new LoopbackConnection(this, nextId.getAndIncrement(), client);
+        connections.put(connection.getID(), connection);
+        updateConnectionArray();
+        target.connected(connection);
+        client.connected(connection);
+        return connection;
+    }
+
+    void disconnected(LoopbackConnection connection){
+        if(connections.remove(connection.getID()) == null)return;
+        updateConnectionArray();
+        target.disconnected(connection);
+    }
+
+    /**
+     * Rebuilds the connection snapshot after the connection map changed. Clients connect concurrently, so the rebuild
+     * is serialized: otherwise an older snapshot could be published after a newer one and hide a connection.
+     */
+    private void updateConnectionArray(){
+        synchronized (connectionLock){
+            connectionArray = connections.values().toArray(new Connection[0]);
+        }
+    }
+
+    public int getConnectionCount(){
+        return connections.size();
+    }
+
+    /* -- Delivery -- */
+
+    int deliverToServer(LoopbackConnection connection, Object obj){
+        if(kryos == null){
+            target.received(connection, unwrap(obj));
+            return 0;
+        }
+        Output output = serialize(obj);
+        int bytes = output.position();
+        target.received(connection, deserialize(output));
+        return bytes;
+    }
+
+    int deliverToClient(LoopbackConnection connection, Listener client, Object obj){
+        if(kryos == null){
+            client.received(connection, unwrap(obj));
+            return 0;
+        }
+        Output output = serialize(obj);
+        int bytes = output.position();
+        client.received(connection, deserialize(output));
+        return bytes;
+    }
+
+    /**
+     * Unwraps a packet handed over by reference, retaining pooled packets for the receiving queue.
+     */
+    private static Object unwrap(Object obj){
+        return PooledPacket.share(obj instanceof SerializedPacket ? ((SerializedPacket) obj).getPacket() : obj);
+    }
+
+    private Output serialize(Object obj){
+        Output output = outputs.get();
+        output.reset();
+        kryos.get().writeClassAndObject(output, obj);
+        serializedBytes.add(output.position());
+        return output;
+    }
+
+    /**
+     * Reads the packet back completely before it is handed to the receiver, so the receiver can send on the same
+     * thread again.
+     */
+    private Object deserialize(Output output){
+        Input input = inputs.get();
+        input.setBuffer(output.getBuffer(), 0, output.position());
+        return kryos.get().readClassAndObject(input);
+    }
+
+    /**
+     * @return Whether packets are serialized.
+     */
+    public boolean isSerializing(){
+        return kryoFactory != null;
+    }
+
+    /**
+     * @return The total amount of bytes serialized by this transport.
+     */
+    public long getSerializedBytes(){
+        return serializedBytes.sum();
+    }
+
+}
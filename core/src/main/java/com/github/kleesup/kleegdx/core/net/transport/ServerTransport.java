@@ -0,0 +1,39 @@
+package com.github.kleesup.kleegdx.core.net.transport;
+
+import com.esotericsoftware.kryonet.Connection;
+import com.github.kleesup.kleegdx.core.net.GameServer;
+
+import java.io.IOException;
+
+/**
+ * A way for clients to reach a {@link GameServer}. Every transport hands its connections to the listeners of the
+ * server (see {@link GameServer#notifyConnected(Connection)}), so listeners work the same for every transport.
+ * Transports are opened via {@link GameServer#openTransport(ServerTransport)} and closed together with the server.
+ * <p>
+ * Available implementations are {@link KryoNetTransport} for network sockets and {@link LoopbackTransport} for clients
+ * in the same JVM.
+ * </p>
+ */
+public interface ServerTransport {
+
+    /**
+     * Starts accepting connections for a server.
+     * @param server The server to deliver connections and packets to.
+     * @throws IOException If the transport could not be opened.
+     */
+    void open(GameServer server) throws IOException;
+
+    /**
+     * Stops accepting connections and closes all open connections of this transport.
+     */
+    void close();
+
+    boolean isOpen();
+
+    /**
+     * @return The open connections of this transport that are not managed by KryoNet itself and therefore not part of
+     * {@link com.esotericsoftware.kryonet.Server#getConnections()}.
+     */
+    Connection[] getConnections();
+
+}
@@ -8,6 +8,12 @@ import lombok.Getter;
  * transfer object (caching instead of recreating each {@link #toDataTransferObject()} call). Therefore, all methods
  * updating transferable data also need to update the DTO object. In this case it might be better to keep fields in
  * the DTO object and only read from and write to it.
+ * <p>
+ * As the DTO is never recreated, such objects can be replicated with delta compressed snapshots without allocating
+ * (see {@link com.github.kleesup.kleegdx.core.net.snapshot.SnapshotReplicator#sendTransferable}) and received snapshots
+ * can be written directly into the held DTO (see
+ * {@link com.github.kleesup.kleegdx.core.net.snapshot.SnapshotReceiver#receiveInto}).
+ * </p>
  */
 @Getter(value = AccessLevel.PROTECTED)
 public abstract class AbstractSingleDataTransferable<T> implements IDataTransferable<T> {
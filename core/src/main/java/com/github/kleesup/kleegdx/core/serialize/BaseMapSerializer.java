@@ -38,6 +38,10 @@ import java.util.HashMap;
  *     }
  * }
  * }</pre>
+ * <p>
+ * Every value of the map is boxed and written with its class. For many or large objects, {@link BaseRecordSerializer}
+ * offers the same approach with a {@link TaggedRecord}, which avoids both.
+ * </p>
  */
 @SerializationTarget(target = SerializationTarget.Type.BOTH)
 public abstract class BaseMapSerializer<T> extends BaseSerializer<T> {
@@ -0,0 +1,88 @@
+package com.github.kleesup.kleegdx.core.serialize;
+
+import com.badlogic.gdx.utils.Pool;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Alternative to {@link BaseMapSerializer} that fills a {@link TaggedRecord} instead of a {@link java.util.HashMap}.
+ * Primitive values are neither boxed nor written with their class, and records are pooled and reused. A class can
+ * also hold its own record via {@link IRecordHolder}.
+ * <p>Simple implementation:</p>
+ * <pre>{@code
+ * public class MyClass{
+ *     private int xp;
+ *     private float health;
+ *     private String name;
+ *
+ *     public static class MyClassSerializer extends BaseRecordSerializer<MyClass>{
+ *         @Override
+ *         protected void fill(TaggedRecord content, MyClass instance){
+ *              content.putInt("xp", instance.xp).putFloat("health", instance.health).putString("name", instance.name);
+ *         }
+ *         @Override
+ *         protected void readRecord(TaggedRecord content, MyClass instance){
+ *              instance.xp = content.getInt("xp", 0);
+ *              instance.health = content.getFloat("health", 20f);
+ *              instance.name = content.getString("name", "Player");
+ *         }
+ *     }
+ * }
+ * }</pre>
+ */
+@SerializationTarget(target = SerializationTarget.Type.BOTH)
+public abstract class BaseRecordSerializer<T> extends BaseSerializer<T> {
+
+    private final TaggedRecord.RecordSerializer recordSerializer = new TaggedRecord.RecordSerializer();
+    private final Pool<TaggedRecord> recordPool = new Pool<TaggedRecord>() {
+        @Override
+        protected TaggedRecord newObject() {
+            return new TaggedRecord();
+        }
+    };
+
+    @Override
+    protected void serialize(Kryo kryo, Output output, T obj) {
+        TaggedRecord record;
+        boolean pooled = !(obj instanceof IRecordHolder);
+        if(!pooled){
+            record = ((IRecordHolder) obj).getSerializerRecord();
+            record.clear();
+        }else record = recordPool.obtain();
+        fill(record, obj);
+        recordSerializer.write(kryo, output, record);
+        if(pooled)recordPool.free(record);
+    }
+
+    @Override
+    protected void deserialize(Kryo kryo, Input input, Class<? extends T> clazz, T instance) {
+        TaggedRecord record = recordPool.obtain();
+        recordSerializer.readInto(kryo, input, record);
+        readRecord(record, instance);
+        recordPool.free(record);
+    }
+
+    /**
+     * Here the record should be filled for serialization in data storage or sending via network.
+     * @param content The empty record to be filled.
+     * @param instance The instance to serialize.
+     */
+    protected abstract void fill(TaggedRecord content, T instance);
+
+    /**
+     * Here the record should be read from for deserialization. The record is reused afterwards, so no references to
+     * it should be kept.
+     * @param content The content that was loaded from storage or received over packets.
+     * @param instance The instance to deserialize.
+     */
+    protected abstract void readRecord(TaggedRecord content, T instance);
+
+    /**
+     * Small interface for classes that hold their own serializer record.
+     */
+    public interface IRecordHolder{
+        TaggedRecord getSerializerRecord();
+    }
+
+}
@@ -6,8 +6,8 @@ import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 import com.github.kleesup.kleegdx.core.util.Verify;
 
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Map;
 
 /**
  * This implementation of {@link BaseSerializer} uses internal {@link VarSupplier} wrapper objects to create a
@@ -61,21 +61,52 @@ import java.util.Map;
  *     }}
  * }</pre>
  * <p>
- * You can quickly see how this class can rapidly create a lot of boilerplate code easily.
- * Therefore this serialization method shouldn't be used on classes that have more than 8+ fields to serialize.
+ * You can quickly see how this class can rapidly create a lot of boilerplate code easily. Therefore, such
+ * serializers should rather be generated by annotating the class with {@link TaggedSerializable}, which needs no
+ * code per field and produces the same suppliers.
  * The use in this class is in small serialization processes that need <b>version independent</b>
  * tagged data to be stored. It avoids boxing primitives and should only be used for data storage.</p>
  * <p>
  * For big abstract class serialization which is still version independent and networking compatible, use
  * {@link BaseMapSerializer}.
  * </p>
+ * <p>
+ * Every tag gets a numeric id in the order of registration. The tags and their types (the schema) are written once,
+ * afterwards fields are written as a varint tag id followed by the value. Int and long values are written as varints.
+ * When writing many records to one file or stream, call {@link #writeSchema(Kryo, Output)} once before the records and
+ * {@link #readSchema(Kryo, Input)} before reading them, so records only contain the ids. Records written without a
+ * stream schema contain the schema themselves. When reading, the ids of the written schema are resolved to the
+ * registered suppliers via an array: fields whose tag is no longer registered (or changed its type) are skipped and
+ * registered tags that were not written keep the value of the new instance. Records of the previous format, which
+ * wrote the tag string for every field, can still be read.
+ * </p>
+ * <p>
+ * Note that a standalone record containing its own schema is larger than a record of the previous format, as the
+ * schema adds the version, the field count and a tag id per field on top of the tags and types. Records that are
+ * written in bulk should therefore always be written as a stream.
+ * </p>
+ * <pre>{@code
+ *     serializer.writeSchema(kryo, output);
+ *     for(MyClass record : records) kryo.writeObject(output, record, serializer);
+ *     serializer.endStream(kryo);
+ * }</pre>
  */
 @SerializationTarget(target = SerializationTarget.Type.STORING)
 public abstract class BaseTaggedSerializer<V> extends BaseSerializer<V> {
 
+    /** First byte of a record that contains its own schema. */
+    private static final byte INLINE_SCHEMA = 1;
+    /** First byte of a record that uses the schema written via {@link #writeSchema(Kryo, Output)}. */
+    private static final byte STREAM_SCHEMA = 2;
+    private static final VarType[] TYPES = VarType.values();
+
     public BaseTaggedSerializer() {init();}
 
-    private final HashMap<String, VarSupplier> suppliers = new HashMap<>();
+    private final HashMap<String, Integer> ids = new HashMap<>();
+    private VarSupplier[] suppliers = new VarSupplier[0];
+    private String[] tags = new String[0];
+    /** Keys of the stream state of this serializer in {@link Kryo#getContext()}. */
+    private final Object writeKey = new Object(), readKey = new Object();
 
     /**
      * Registers a supplier for a field with a specific tag.
@@ -85,8 +116,13 @@ public abstract class BaseTaggedSerializer<V> extends BaseSerializer<V> {
     protected void register(String tag, VarSupplier supplier){
         Verify.nonNullArg(tag, "Tag cannot be null!");
         Verify.nonNullArg(supplier, "Supplier cannot be null!");
-        if(suppliers.containsKey(tag))throw new KryoException("Tag '"+tag+"' is already registered!");
-        suppliers.put(tag, supplier);
+        if(ids.containsKey(tag))throw new KryoException("Tag '"+tag+"' is already registered!");
+        int id = suppliers.length;
+        ids.put(tag, id);
+        suppliers = Arrays.copyOf(suppliers, id + 1);
+        suppliers[id] = supplier;
+        tags = Arrays.copyOf(tags, id + 1);
+        tags[id] = tag;
     }
 
     /**
@@ -94,86 +130,251 @@ public abstract class BaseTaggedSerializer<V> extends BaseSerializer<V> {
      */
     protected abstract void init();
 
-    @SuppressWarnings("unchecked")
+    /**
+     * @return The version of the registered tags, written with the schema and passed to
+     * {@link #upgrade(int, Object)} when reading. Should be increased when the meaning of a tag changes.
+     */
+    protected int getSchemaVersion(){
+        return 0;
+    }
+
+    /**
+     * Called after a record with a different schema version was read, e.g. to convert values. By default, nothing
+     * happens.
+     * @param version The schema version the record was written with.
+     * @param instance The read instance.
+     */
+    protected void upgrade(int version, V instance){}
+
+    /* -- Streams -- */
+
+    /**
+     * Writes the schema to a stream, all records of this serializer written afterwards only contain tag ids until
+     * {@link #endStream(Kryo)} is called.
+     * @param kryo The kryo instance the records are written with.
+     * @param output The output to write to.
+     */
+    public void writeSchema(Kryo kryo, Output output){
+        output.writeVarInt(getSchemaVersion(), true);
+        output.writeVarInt(tags.length, true);
+        for(int i = 0; i < tags.length; i++){
+            output.writeString(tags[i]);
+            output.writeByte((byte) suppliers[i].getType().ordinal());
+        }
+        kryo.getContext().put(writeKey, Boolean.TRUE);
+    }
+
+    /**
+     * Reads a schema written via {@link #writeSchema(Kryo, Output)}, all records of this serializer read afterwards
+     * are resolved with it until {@link #endStream(Kryo)} is called.
+     * @param kryo The kryo instance the records are read with.
+     * @param input The input to read from.
+     */
+    public void readSchema(Kryo kryo, Input input){
+        kryo.getContext().put(readKey, readSchemaHeader(input));
+    }
+
+    /**
+     * Ends the current stream of this serializer, records are written with their own schema again.
+     * @param kryo The kryo instance the stream was written or read with.
+     */
+    public void endStream(Kryo kryo){
+        kryo.getContext().remove(writeKey);
+        kryo.getContext().remove(readKey);
+    }
+
+    /**
+     * The written tags resolved to the registered suppliers, indexed by the written tag id.
+     */
+    private static final class Schema {
+        private final int version;
+        private final VarType[] types;
+        private final VarSupplier[] resolved;
+        private Schema(int version, VarType[] types, VarSupplier[] resolved){
+            this.version = version;
+            this.types = types;
+            this.resolved = resolved;
+        }
+    }
+
+    private Schema readSchemaHeader(Input input){
+        int version = input.readVarInt(true);
+        int count = input.readVarInt(true);
+        VarType[] types = new VarType[count];
+        VarSupplier[] resolved = new VarSupplier[count];
+        for(int i = 0; i < count; i++){
+            String tag = input.readString();
+            types[i] = readType(input);
+            Integer id = ids.get(tag);
+            //removed tags and tags with a changed type are skipped
+            if(id != null && suppliers[id].getType() == types[i])resolved[i] = suppliers[id];
+        }
+        return new Schema(version, types, resolved);
+    }
+
+    /**
+     * Reads a type written as its ordinal.
+     * @throws KryoException If the ordinal does not belong to a type, e.g. because the input is corrupt.
+     */
+    private static VarType readType(Input input){
+        int ordinal = input.readByte();
+        if(ordinal < 0 || ordinal >= TYPES.length)throw new KryoException("Unknown field type "+ordinal+"!");
+        return TYPES[ordinal];
+    }
+
+    /* -- Serialization -- */
+
     @Override
     protected void serialize(Kryo kryo, Output output, V obj) {
-        for(Map.Entry<String, VarSupplier> entry : suppliers.entrySet()){
-            //format
-            //1: tag
-            //2: type
-            //3: value
-            output.writeString(entry.getKey());
-            VarSupplier supplier = entry.getValue();
-            output.writeByte((byte)supplier.getType().ordinal());
-            switch (supplier.getType()){
-                case OBJECT:
-                    kryo.writeObject(output, ((VarSupplierObject) supplier).get(obj));
-                    break;
-                case STRING:
-                    output.writeString(((VarSupplierString) supplier).get(obj));
-                    break;
-                case BYTE:
-                    output.writeByte(((VarSupplierByte) supplier).get(obj));
-                    break;
-                case SHORT:
-                    output.writeShort(((VarSupplierShort) supplier).get(obj));
-                    break;
-                case INT:
-                    output.writeInt(((VarSupplierInt) supplier).get(obj));
-                    break;
-                case LONG:
-                    output.writeLong(((VarSupplierLong) supplier).get(obj));
-                    break;
-                case FLOAT:
-                    output.writeFloat(((VarSupplierFloat) supplier).get(obj));
-                    break;
-                case DOUBLE:
-                    output.writeDouble(((VarSupplierDouble) supplier).get(obj));
-                    break;
-                case CHAR:
-                    output.writeChar(((VarSupplierChar) supplier).get(obj));
-                    break;
-                case BOOL:
-                    output.writeBoolean(((VarSupplierBool) supplier).get(obj));
-                    break;
-            }
+        //format
+        //1: schema marker (+ schema if written inline)
+        //2: amount of fields
+        //3: tag id and value per field
+        if(kryo.getContext().containsKey(writeKey)){
+            output.writeByte(STREAM_SCHEMA);
+        }else{
+            output.writeByte(INLINE_SCHEMA);
+            writeSchema(kryo, output);
+            kryo.getContext().remove(writeKey);
+        }
+        output.writeVarInt(suppliers.length, true);
+        for(int id = 0; id < suppliers.length; id++){
+            output.writeVarInt(id, true);
+            writeValue(kryo, output, suppliers[id], obj);
         }
     }
 
     @SuppressWarnings("unchecked")
+    private void writeValue(Kryo kryo, Output output, VarSupplier supplier, V obj){
+        switch (supplier.getType()){
+            case OBJECT:
+                kryo.writeClassAndObject(output, ((VarSupplierObject) supplier).get(obj));
+                break;
+            case STRING:
+                output.writeString(((VarSupplierString) supplier).get(obj));
+                break;
+            case BYTE:
+                output.writeByte(((VarSupplierByte) supplier).get(obj));
+                break;
+            case SHORT:
+                output.writeShort(((VarSupplierShort) supplier).get(obj));
+                break;
+            case INT:
+                output.writeVarInt(((VarSupplierInt) supplier).get(obj), false);
+                break;
+            case LONG:
+                output.writeVarLong(((VarSupplierLong) supplier).get(obj), false);
+                break;
+            case FLOAT:
+                output.writeFloat(((VarSupplierFloat) supplier).get(obj));
+                break;
+            case DOUBLE:
+                output.writeDouble(((VarSupplierDouble) supplier).get(obj));
+                break;
+            case CHAR:
+                output.writeChar(((VarSupplierChar) supplier).get(obj));
+                break;
+            case BOOL:
+                output.writeBoolean(((VarSupplierBool) supplier).get(obj));
+                break;
+        }
+    }
+
     @Override
     protected void deserialize(Kryo kryo, Input input, Class<? extends V> clazz, V instance) {
+        if(input.end())return; //empty record of the previous format
+        Schema schema;
+        byte marker = input.readByte();
+        if(marker == STREAM_SCHEMA){
+            schema = (Schema) kryo.getContext().get(readKey);
+            if(schema == null)throw new KryoException("Record uses a stream schema but no schema was read!");
+        }else if(marker == INLINE_SCHEMA){
+            schema = readSchemaHeader(input);
+        }else{
+            input.setPosition(input.position() - 1);
+            deserializeLegacy(kryo, input, instance);
+            return;
+        }
+        int fields = input.readVarInt(true);
+        for(int i = 0; i < fields; i++){
+            int id = input.readVarInt(true);
+            if(id >= schema.types.length)throw new KryoException("Unknown tag id "+id+"!");
+            readValue(kryo, input, schema.types[id], schema.resolved[id], instance);
+        }
+        if(schema.version != getSchemaVersion())upgrade(schema.version, instance);
+    }
+
+    /**
+     * Reads a single value and passes it to its supplier.
+     * @param supplier The supplier or {@code null} to skip the value.
+     */
+    @SuppressWarnings("unchecked")
+    private void readValue(Kryo kryo, Input input, VarType type, VarSupplier supplier, V instance){
+        switch (type){
+            case OBJECT:
+                Object object = kryo.readClassAndObject(input);
+                if(supplier != null)((VarSupplierObject) supplier).set(instance, object);
+                break;
+            case STRING:
+                String string = input.readString();
+                if(supplier != null)((VarSupplierString) supplier).set(instance, string);
+                break;
+            case BYTE:
+                byte b = input.readByte();
+                if(supplier != null)((VarSupplierByte) supplier).set(instance, b);
+                break;
+            case SHORT:
+                short s = input.readShort();
+                if(supplier != null)((VarSupplierShort) supplier).set(instance, s);
+                break;
+            case INT:
+                int i = input.readVarInt(false);
+                if(supplier != null)((VarSupplierInt) supplier).set(instance, i);
+                break;
+            case LONG:
+                long l = input.readVarLong(false);
+                if(supplier != null)((VarSupplierLong) supplier).set(instance, l);
+                break;
+            case FLOAT:
+                float f = input.readFloat();
+                if(supplier != null)((VarSupplierFloat) supplier).set(instance, f);
+                break;
+            case DOUBLE:
+                double d = input.readDouble();
+                if(supplier != null)((VarSupplierDouble) supplier).set(instance, d);
+                break;
+            case CHAR:
+                char c = input.readChar();
+                if(supplier != null)((VarSupplierChar) supplier).set(instance, c);
+                break;
+            case BOOL:
+                boolean bool = input.readBoolean();
+                if(supplier != null)((VarSupplierBool) supplier).set(instance, bool);
+                break;
+        }
+    }
+
+    /**
+     * Reads a record of the previous format, which wrote the tag and type of every field until the end of the input.
+     */
+    @SuppressWarnings("unchecked")
+    private void deserializeLegacy(Kryo kryo, Input input, V instance){
         while (!input.end()){
             String tag = input.readString();
-            byte type = input.readByte();
-            switch (VarType.values()[type]){
-                case OBJECT:
-                    ((VarSupplierObject) suppliers.get(tag)).set(instance, kryo.readClassAndObject(input));
-                    break;
-                case STRING:
-                    ((VarSupplierString) suppliers.get(tag)).set(instance, input.readString());
-                    break;
-                case BYTE:
-                    ((VarSupplierByte) suppliers.get(tag)).set(instance, input.readByte());
-                    break;
-                case SHORT:
-                    ((VarSupplierShort) suppliers.get(tag)).set(instance, input.readShort());
-                    break;
+            VarType type = readType(input);
+            Integer id = ids.get(tag);
+            VarSupplier supplier = id != null && suppliers[id].getType() == type ? suppliers[id] : null;
+            switch (type){
                 case INT:
-                    ((VarSupplierInt) suppliers.get(tag)).set(instance, input.readInt());
+                    int i = input.readInt();
+                    if(supplier != null)((VarSupplierInt) supplier).set(instance, i);
                     break;
                 case LONG:
-                    ((VarSupplierLong) suppliers.get(tag)).set(instance, input.readLong());
-                    break;
-                case FLOAT:
-                    ((VarSupplierFloat) suppliers.get(tag)).set(instance, input.readFloat());
-                    break;
-                case DOUBLE:
-                    ((VarSupplierDouble) suppliers.get(tag)).set(instance, input.readDouble());
-                    break;
-                case CHAR:
-                    ((VarSupplierChar) suppliers.get(tag)).set(instance, input.readChar());
+                    long l = input.readLong();
+                    if(supplier != null)((VarSupplierLong) supplier).set(instance, l);
                     break;
+                default:
+                    readValue(kryo, input, type, supplier, instance);
             }
         }
     }
@@ -0,0 +1,76 @@
+package com.github.kleesup.kleegdx.core.serialize;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Resolves and caches the factories building {@link IDataTransferable} instances from their data transfer objects.
+ * Each combination of class and dto class is resolved once into a {@link MethodHandle}, see
+ * {@link IDataTransferable#factoryOf(Class, Class)}.
+ */
+final class DTOFactories {
+
+    private static final ConcurrentHashMap<Class<?>, ConcurrentHashMap<Class<?>, Function<?, ?>>> FACTORIES =
+            new ConcurrentHashMap<>();
+    private static final MethodType GENERIC = MethodType.methodType(Object.class, Object.class);
+
+    private DTOFactories(){}
+
+    @SuppressWarnings("unchecked")
+    static <R, D> Function<D, R> get(Class<R> clazz, Class<D> dtoClass){
+        ConcurrentHashMap<Class<?>, Function<?, ?>> byDto = FACTORIES.get(clazz);
+        if(byDto == null)byDto = FACTORIES.computeIfAbsent(clazz, c -> new ConcurrentHashMap<>());
+        Function<?, ?> factory = byDto.get(dtoClass);
+        if(factory == null)factory = byDto.computeIfAbsent(dtoClass, dto -> resolve(clazz, dto));
+        return (Function<D, R>) factory;
+    }
+
+    /**
+     * Searches the constructor or static 'deserialize' method as described in
+     * {@link IDataTransferable#fromDataTransferObject(Class, Object)}.
+     */
+    private static Function<?, ?> resolve(Class<?> clazz, Class<?> dtoClass){
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle handle = null;
+        try {
+            Constructor<?> constructor = clazz.getDeclaredConstructor(dtoClass);
+            constructor.setAccessible(true);
+            handle = lookup.unreflectConstructor(constructor);
+        } catch (NoSuchMethodException | IllegalAccessException | SecurityException ignored) {
+        }
+        if(handle == null){
+            for(Method method : clazz.getDeclaredMethods()){
+                if(!Modifier.isStatic(method.getModifiers()))continue; //has to be static
+                if(method.getParameterCount() != 1)continue; //only takes in dto parameter
+                if(!method.getParameterTypes()[0].isAssignableFrom(dtoClass))continue; //parameter is dto object
+                if(!method.getReturnType().isAssignableFrom(clazz))continue; //the return value is the deserialized object
+                if(!method.getName().equals("deserialize"))continue; //the methods name is 'deserialize'
+                try {
+                    method.setAccessible(true);
+                    handle = lookup.unreflect(method);
+                    break;
+                } catch (IllegalAccessException | SecurityException ignored) {}
+            }
+        }
+        if(handle == null)throw new RuntimeException("Neither found a static 'deserialize' method nor " +
+                "any constructor taking in the dto object for class "+
+                clazz.getSimpleName()+" and dto "+dtoClass.getSimpleName()+"!");
+        MethodHandle generic = handle.asType(GENERIC);
+        return dto -> {
+            try {
+                return generic.invokeExact(dto);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new RuntimeException("Failed to build "+clazz.getSimpleName()+" from its dto!", e);
+            }
+        };
+    }
+
+}
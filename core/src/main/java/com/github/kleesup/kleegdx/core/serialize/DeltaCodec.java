@@ -0,0 +1,278 @@
+package com.github.kleesup.kleegdx.core.serialize;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Encodes the fields of a data transfer object as a delta against an older state of the same object. Only fields
+ * that differ from the baseline are written, preceded by a bitmask of the changed fields. Without a baseline all
+ * fields are written (full state), so the same format is used for both.
+ * <p>
+ * The fields of the DTO class (all non-static, non-transient fields including those of superclasses) are resolved
+ * once via {@link #of(Class)}, so existing DTOs do not have to be changed. States are captured into reusable
+ * {@link State} objects which store primitive fields without boxing. Object fields are compared via
+ * {@link Object#equals(Object)} and, unless they are immutable, copied with {@link Kryo#copy(Object)} when captured.
+ * </p>
+ * @param <D> The type of the data transfer object.
+ */
+@SerializationTarget(target = SerializationTarget.Type.NET)
+public final class DeltaCodec<D> {
+
+    private static final ConcurrentHashMap<Class<?>, DeltaCodec<?>> CODECS = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the codec for a DTO class, resolving its fields on the first call.
+     * @param clazz The class of the data transfer object. Needs a no-arg constructor.
+     * @return The cached codec.
+     */
+    @SuppressWarnings("unchecked")
+    public static <D> DeltaCodec<D> of(Class<D> clazz){
+        DeltaCodec<?> codec = CODECS.get(clazz);
+        if(codec == null)codec = CODECS.computeIfAbsent(clazz, DeltaCodec::new);
+        return (DeltaCodec<D>) codec;
+    }
+
+    private static final byte BOOL = 0, BYTE = 1, SHORT = 2, CHAR = 3, INT = 4, LONG = 5, FLOAT = 6, DOUBLE = 7,
+            IMMUTABLE = 8, OBJECT = 9;
+
+    /**
+     * The captured field values of a data transfer object. Primitive fields are stored as raw bits in
+     * {@link #primitives}, object fields in {@link #objects}, both indexed by field.
+     */
+    public static final class State {
+        private final long[] primitives;
+        private final Object[] objects;
+        private State(int fields){
+            this.primitives = new long[fields];
+            this.objects = new Object[fields];
+        }
+
+        /**
+         * Copies all values of another state of the same codec into this one.
+         * @param other The state to copy from.
+         */
+        public void set(State other){
+            System.arraycopy(other.primitives, 0, primitives, 0, primitives.length);
+            System.arraycopy(other.objects, 0, objects, 0, objects.length);
+        }
+    }
+
+    private final Class<D> type;
+    private final Constructor<D> constructor;
+    private final Field[] fields;
+    private final byte[] kinds;
+    private final int maskLongs;
+
+    private DeltaCodec(Class<?> clazz){
+        @SuppressWarnings("unchecked")
+        Class<D> type = (Class<D>) clazz;
+        this.type = type;
+        try {
+            this.constructor = type.getDeclaredConstructor();
+            this.constructor.setAccessible(true);
+        } catch (NoSuchMethodException e) {
+            throw new KryoException("DTO class "+clazz.getSimpleName()+" needs a no-arg constructor!", e);
+        }
+        ArrayList<Field> found = new ArrayList<>();
+        for(Class<?> current = clazz; current != null && current != Object.class; current = current.getSuperclass()){
+            for(Field field : current.getDeclaredFields()){
+                int mod = field.getModifiers();
+                if(Modifier.isStatic(mod) || Modifier.isTransient(mod) || field.isSynthetic())continue;
+                field.setAccessible(true);
+                found.add(field);
+            }
+        }
+        this.fields = found.toArray(new Field[0]);
+        this.kinds = new byte[fields.length];
+        for(int i = 0; i < fields.length; i++) kinds[i] = kindOf(fields[i].getType());
+        this.maskLongs = Math.max(1, (fields.length + 63) >>> 6);
+    }
+
+    private static byte kindOf(Class<?> type){
+        if(type == boolean.class)return BOOL;
+        if(type == byte.class)return BYTE;
+        if(type == short.class)return SHORT;
+        if(type == char.class)return CHAR;
+        if(type == int.class)return INT;
+        if(type == long.class)return LONG;
+        if(type == float.class)return FLOAT;
+        if(type == double.class)return DOUBLE;
+        if(type == String.class || type.isEnum() || Number.class.isAssignableFrom(type) && type.getName()
+                .startsWith("java.lang.") || type == Boolean.class || type == Character.class)return IMMUTABLE;
+        return OBJECT;
+    }
+
+    /* -- States -- */
+
+    /**
+     * @return A new empty state for this codec.
+     */
+    public State newState(){
+        return new State(fields.length);
+    }
+
+    /**
+     * @return A new instance of the DTO class created via its no-arg constructor.
+     */
+    public D newInstance(){
+        try {
+            return constructor.newInstance();
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new KryoException("Could not create instance of "+type.getSimpleName()+"!", e);
+        }
+    }
+
+    /**
+     * Captures the current field values of a DTO.
+     * @param kryo The kryo instance used to copy mutable object fields.
+     * @param dto The DTO to capture.
+     * @param out The state to write the values to.
+     */
+    public void capture(Kryo kryo, D dto, State out){
+        try {
+            for(int i = 0; i < fields.length; i++){
+                Field field = fields[i];
+                switch (kinds[i]){
+                    case BOOL: out.primitives[i] = field.getBoolean(dto) ? 1 : 0; break;
+                    case BYTE: out.primitives[i] = field.getByte(dto); break;
+                    case SHORT: out.primitives[i] = field.getShort(dto); break;
+                    case CHAR: out.primitives[i] = field.getChar(dto); break;
+                    case INT: out.primitives[i] = field.getInt(dto); break;
+                    case LONG: out.primitives[i] = field.getLong(dto); break;
+                    case FLOAT: out.primitives[i] = Float.floatToRawIntBits(field.getFloat(dto)); break;
+                    case DOUBLE: out.primitives[i] = Double.doubleToRawLongBits(field.getDouble(dto)); break;
+                    case IMMUTABLE: out.objects[i] = field.get(dto); break;
+                    default:
+                        Object value = field.get(dto);
+                        Object old = out.objects[i];
+                        if(!Objects.equals(old, value))out.objects[i] = value == null ? null : kryo.copy(value);
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new KryoException(e);
+        }
+    }
+
+    /**
+     * Writes the values of a state into a DTO.
+     * @param kryo The kryo instance used to copy mutable object fields, so the state is not shared with the DTO.
+     * @param state The state to read from.
+     * @param dto The DTO to write to.
+     */
+    public void apply(Kryo kryo, State state, D dto){
+        try {
+            for(int i = 0; i < fields.length; i++){
+                Field field = fields[i];
+                long bits = state.primitives[i];
+                switch (kinds[i]){
+                    case BOOL: field.setBoolean(dto, bits != 0); break;
+                    case BYTE: field.setByte(dto, (byte) bits); break;
+                    case SHORT: field.setShort(dto, (short) bits); break;
+                    case CHAR: field.setChar(dto, (char) bits); break;
+                    case INT: field.setInt(dto, (int) bits); break;
+                    case LONG: field.setLong(dto, bits); break;
+                    case FLOAT: field.setFloat(dto, Float.intBitsToFloat((int) bits)); break;
+                    case DOUBLE: field.setDouble(dto, Double.longBitsToDouble(bits)); break;
+                    case IMMUTABLE: field.set(dto, state.objects[i]); break;
+                    default:
+                        Object value = state.objects[i];
+                        field.set(dto, value == null ? null : kryo.copy(value));
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new KryoException(e);
+        }
+    }
+
+    /* -- Encoding -- */
+
+    /**
+     * Writes all fields of a state that differ from a baseline.
+     * @param kryo The kryo instance used to write object fields.
+     * @param output The output to write to.
+     * @param baseline The state the reader already knows or {@code null} to write all fields.
+     * @param current The state to write.
+     */
+    public void write(Kryo kryo, Output output, State baseline, State current){
+        for(int chunk = 0; chunk < maskLongs; chunk++){
+            long mask = 0;
+            int end = Math.min(fields.length, (chunk + 1) << 6);
+            for(int i = chunk << 6; i < end; i++){
+                if(baseline == null || changed(i, baseline, current))mask |= 1L << (i & 63);
+            }
+            output.writeVarLong(mask, true);
+        }
+        for(int i = 0; i < fields.length; i++){
+            if(baseline != null && !changed(i, baseline, current))continue;
+            long bits = current.primitives[i];
+            switch (kinds[i]){
+                case BOOL: output.writeBoolean(bits != 0); break;
+                case BYTE: output.writeByte((byte) bits); break;
+                case SHORT: output.writeShort((short) bits); break;
+                case CHAR: output.writeChar((char) bits); break;
+                case INT: output.writeVarInt((int) bits, false); break;
+                case LONG: output.writeVarLong(bits, false); break;
+                case FLOAT: output.writeInt((int) bits); break;
+                case DOUBLE: output.writeLong(bits); break;
+                default: kryo.writeClassAndObject(output, current.objects[i]);
+            }
+        }
+    }
+
+    /**
+     * Reads a state written by {@link #write(Kryo, Output, State, State)}. Fields that were not written are taken from
+     * the baseline.
+     * @param kryo The kryo instance used to read object fields.
+     * @param input The input to read from.
+     * @param baseline The same baseline the writer used or {@code null} if all fields were written.
+     * @param out The state to read into.
+     */
+    public void read(Kryo kryo, Input input, State baseline, State out){
+        if(baseline != null && baseline != out)out.set(baseline);
+        long[] masks = new long[maskLongs];
+        for(int chunk = 0; chunk < maskLongs; chunk++) masks[chunk] = input.readVarLong(true);
+        for(int i = 0; i < fields.length; i++){
+            if((masks[i >>> 6] & (1L << (i & 63))) == 0)continue;
+            switch (kinds[i]){
+                case BOOL: out.primitives[i] = input.readBoolean() ? 1 : 0; break;
+                case BYTE: out.primitives[i] = input.readByte(); break;
+                case SHORT: out.primitives[i] = input.readShort(); break;
+                case CHAR: out.primitives[i] = input.readChar(); break;
+                case INT: out.primitives[i] = input.readVarInt(false); break;
+                case LONG: out.primitives[i] = input.readVarLong(false); break;
+                case FLOAT: out.primitives[i] = input.readInt(); break;
+                case DOUBLE: out.primitives[i] = input.readLong(); break;
+                default: out.objects[i] = kryo.readClassAndObject(input);
+            }
+        }
+    }
+
+    private boolean changed(int i, State baseline, State current){
+        return kinds[i] < IMMUTABLE ? baseline.primitives[i] != current.primitives[i]
+                : !Objects.equals(baseline.objects[i], current.objects[i]);
+    }
+
+    /* -- Getter -- */
+
+    public Class<D> getType(){
+        return type;
+    }
+
+    /**
+     * @return The amount of encoded fields.
+     */
+    public int getFieldCount(){
+        return fields.length;
+    }
+
+}
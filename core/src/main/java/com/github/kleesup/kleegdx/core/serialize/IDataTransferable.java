@@ -1,9 +1,6 @@
 package com.github.kleesup.kleegdx.core.serialize;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
+import java.util.function.Function;
 
 public interface IDataTransferable<T> {
 
@@ -36,7 +33,8 @@ public interface IDataTransferable<T> {
      *         }
      *     }
      * </code></pre>
-     * If all conditions are met, the method is resolved and called.
+     * If all conditions are met, the method is resolved and called. The resolved constructor or method is cached, see
+     * {@link #factoryOf(Class, Class)}.
      * @param clazz The class of the object to build a new instance of.
      * @param dto The data transfer object to deserialize.
      * @return The deserialized object instance.
@@ -44,35 +42,23 @@ public interface IDataTransferable<T> {
      */
     @SuppressWarnings("unchecked")
     static <R extends IDataTransferable<?>> R fromDataTransferObject(Class<R> clazz, Object dto){
-        //search for constructor
-        try {
-            Constructor<R> constructor = clazz.getDeclaredConstructor(dto.getClass());
-            boolean noAccess = !constructor.isAccessible();
-            if(noAccess)constructor.setAccessible(true);
-            R obj = constructor.newInstance(dto);
-            if(noAccess)constructor.setAccessible(false);
-            return obj;
-        } catch (NoSuchMethodException | InvocationTargetException | InstantiationException |
-                 IllegalAccessException ignored) {
-        }
-        //search for static method that takes in the dto instance.
-        for(Method method : clazz.getDeclaredMethods()){
-            if(!Modifier.isStatic(method.getModifiers()))continue; //has to be static
-            if(method.getParameterCount() != 1)continue; //only takes in dto parameter
-            if(!method.getParameterTypes()[0].isAssignableFrom(dto.getClass()))continue; //parameter is dto object
-            if(!method.getReturnType().isAssignableFrom(clazz))continue; //the return value is the deserialized object
-            if(!method.getName().equals("deserialize"))continue; //the methods name is 'deserialize'
-            try {
-                boolean noAccess = !method.isAccessible();
-                if(noAccess)method.setAccessible(true);
-                R obj = (R) method.invoke(null, dto);
-                if(noAccess)method.setAccessible(false);
-                return obj;
-            } catch (IllegalAccessException | InvocationTargetException ignored) {}
-        }
-        throw new RuntimeException("Neither found a static 'deserialize' method nor " +
-                "any constructor taking in the dto object for class "+
-                clazz.getSimpleName()+" and dto "+dto.getClass().getSimpleName()+"!");
+        return ((Function<Object, R>) factoryOf(clazz, dto.getClass())).apply(dto);
+    }
+
+    /**
+     * Returns the factory building instances of a class from data transfer objects of the given dto class, using the
+     * constructor or static 'deserialize' method described in {@link #fromDataTransferObject(Class, Object)}. The
+     * factory is resolved once per combination of classes into a {@link java.lang.invoke.MethodHandle} and cached,
+     * so calling it does not involve any reflective lookups.
+     * @param clazz The class of the objects to build.
+     * @param dtoClass The class of the data transfer objects.
+     * @return The cached factory.
+     * @param <R> The desired object type to build.
+     * @param <D> The type of the data transfer object.
+     * @throws RuntimeException If neither a fitting constructor nor a fitting 'deserialize' method exists.
+     */
+    static <R, D> Function<D, R> factoryOf(Class<R> clazz, Class<D> dtoClass){
+        return DTOFactories.get(clazz, dtoClass);
     }
 
     /**
@@ -0,0 +1,238 @@
+package com.github.kleesup.kleegdx.core.serialize;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.util.Pool;
+import com.github.kleesup.kleegdx.core.util.Verify;
+import lombok.Getter;
+
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A thread-safe pool of {@link Kryo} instances and {@link Input}/{@link Output} buffers. As a single kryo instance
+ * must not be used by multiple threads at once, this pool builds new instances on demand from one registration recipe,
+ * so every instance has the same registrations (and therefore registration ids) as all others.
+ * <p>
+ * Instances are borrowed via {@link #obtain()} and have to be returned via {@link #free(Kryo)} by the same thread
+ * afterwards. For simple cases, {@link #write(Object)} and {@link #read(byte[])} take care of this:
+ * </p>
+ * <pre>{@code
+ * KryoPool pool = new KryoPool(registerer -> {
+ *     registerer.register(PlayerData.class);
+ *     registerer.registerWithDTO(World.class, WorldDTO.class);
+ * });
+ * //on any worker thread
+ * byte[] bytes = pool.write(playerData);
+ * PlayerData read = pool.read(bytes, PlayerData.class);
+ * }</pre>
+ * Note that the recipe is run for every new instance and thus must not depend on state that changes between calls.
+ * Serializers holding state (like pools of {@link com.github.kleesup.kleegdx.core.net.packet.PooledPacket}
+ * instances) should be thread-safe or created within the recipe.
+ */
+public class KryoPool {
+
+    /** Default initial size of pooled output buffers. */
+    public static final int DEFAULT_BUFFER_SIZE = 4096;
+    private static final byte[] EMPTY = new byte[0];
+
+    private final Function<Kryo, ? extends KryoRegisterer> registererFactory;
+    private final Consumer<? super KryoRegisterer> recipe;
+    @Getter
+    private final int bufferSize;
+    @Getter
+    private final int maxBufferSize;
+
+    private final Pool<Kryo> kryoPool;
+    private final Pool<Output> outputPool;
+    private final Pool<Input> inputPool;
+
+    /**
+     * Builds a new pool.
+     * @param registererFactory Creates the registerer for each new kryo instance, e.g. {@code KryoRegisterer::new}.
+     * @param recipe Registers all classes to a new registerer.
+     * @param maxPooled The max amount of kryo instances and buffers that are kept each, e.g. the amount of threads
+     *                  serializing in parallel.
+     * @param bufferSize The initial size of output buffers.
+     * @param maxBufferSize The max size output buffers can grow to, {@code -1} for no limit.
+     */
+    public KryoPool(Function<Kryo, ? extends KryoRegisterer> registererFactory, Consumer<? super KryoRegisterer> recipe,
+                    int maxPooled, int bufferSize, int maxBufferSize){
+        Verify.nonNullArg(registererFactory, "Registerer factory cannot be null!");
+        Verify.nonNullArg(recipe, "Recipe cannot be null!");
+        Verify.checkArg(maxPooled <= 0, "Max pooled amount must be greater than 0!");
+        Verify.checkArg(bufferSize <= 0, "Buffer size must be greater than 0!");
+        Verify.checkArg(maxBufferSize != -1 && maxBufferSize < bufferSize,
+                "Max buffer size cannot be smaller than the buffer size!");
+        this.registererFactory = registererFactory;
+        this.recipe = recipe;
+        this.bufferSize = bufferSize;
+        this.maxBufferSize = maxBufferSize;
+        this.kryoPool = new Pool<Kryo>(true, false, maxPooled) {
+            @Override
+            protected Kryo create() {
+                return newKryo();
+            }
+        };
+        this.outputPool = new Pool<Output>(true, false, maxPooled) {
+            @Override
+            protected Output create() {
+                return new Output(KryoPool.this.bufferSize, KryoPool.this.maxBufferSize);
+            }
+        };
+        this.inputPool = new Pool<Input>(true, false, maxPooled) {
+            @Override
+            protected Input create() {
+                return new Input();
+            }
+        };
+    }
+    public KryoPool(Consumer<? super KryoRegisterer> recipe, int maxPooled){
+        this(KryoRegisterer::new, recipe, maxPooled, DEFAULT_BUFFER_SIZE, -1);
+    }
+    public KryoPool(Consumer<? super KryoRegisterer> recipe){
+        this(recipe, Math.max(1, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Builds a new kryo instance by running the recipe, regardless of the pool. Called whenever the pool is empty.
+     * @return The new kryo instance.
+     */
+    public Kryo newKryo(){
+        Kryo kryo = new Kryo();
+        recipe.accept(registererFactory.apply(kryo));
+        return kryo;
+    }
+
+    /* -- Borrowing -- */
+
+    /**
+     * @return A kryo instance which is used exclusively by the calling thread until it is returned via
+     * {@link #free(Kryo)}.
+     */
+    public Kryo obtain(){
+        return kryoPool.obtain();
+    }
+
+    /**
+     * Returns a kryo instance borrowed via {@link #obtain()}. Its context is cleared, so state like an open tagged
+     * stream (see {@link BaseTaggedSerializer}) does not leak to the next borrower.
+     * @param kryo The instance to return.
+     */
+    public void free(Kryo kryo){
+        Verify.nonNullArg(kryo, "Kryo cannot be null!");
+        kryo.reset();
+        kryo.getContext().clear();
+        kryoPool.free(kryo);
+    }
+
+    /**
+     * @return An empty output buffer which has to be returned via {@link #free(Output)}.
+     */
+    public Output obtainOutput(){
+        return outputPool.obtain();
+    }
+
+    public void free(Output output){
+        Verify.nonNullArg(output, "Output cannot be null!");
+        output.reset();
+        outputPool.free(output);
+    }
+
+    /**
+     * @param bytes The bytes to read.
+     * @return An input reading the given bytes which has to be returned via {@link #free(Input)}.
+     */
+    public Input obtainInput(byte[] bytes){
+        Verify.nonNullArg(bytes, "Bytes cannot be null!");
+        Input input = inputPool.obtain();
+        input.setBuffer(bytes);
+        return input;
+    }
+
+    public void free(Input input){
+        Verify.nonNullArg(input, "Input cannot be null!");
+        input.setBuffer(EMPTY); //don't keep the read bytes alive
+        inputPool.free(input);
+    }
+
+    /**
+     * Runs a function with a borrowed kryo instance, returning the instance afterwards.
+     * @param function The function to run.
+     * @return The result of the function.
+     */
+    public <R> R run(Function<Kryo, R> function){
+        Kryo kryo = obtain();
+        try {
+            return function.apply(kryo);
+        } finally {
+            free(kryo);
+        }
+    }
+
+    /* -- Serialization -- */
+
+    /**
+     * Writes an object together with its class, see {@link Kryo#writeClassAndObject(Output, Object)}.
+     * @param obj The object to write.
+     * @return The written bytes.
+     */
+    public byte[] write(Object obj){
+        Kryo kryo = obtain();
+        Output output = obtainOutput();
+        try {
+            kryo.writeClassAndObject(output, obj);
+            return output.toBytes();
+        } finally {
+            free(output);
+            free(kryo);
+        }
+    }
+
+    /**
+     * Reads an object written by {@link #write(Object)}.
+     * @param bytes The bytes to read.
+     * @return The read object.
+     */
+    public Object read(byte[] bytes){
+        Kryo kryo = obtain();
+        Input input = obtainInput(bytes);
+        try {
+            return kryo.readClassAndObject(input);
+        } finally {
+            free(input);
+            free(kryo);
+        }
+    }
+
+    /**
+     * Reads an object written by {@link #write(Object)} and checks its type.
+     * @param bytes The bytes to read.
+     * @param clazz The expected class of the object.
+     * @return The read object.
+     * @throws ClassCastException If the read object is not an instance of the class.
+     */
+    public <T> T read(byte[] bytes, Class<T> clazz){
+        return clazz.cast(read(bytes));
+    }
+
+    /* -- Statistics -- */
+
+    /**
+     * @return The amount of kryo instances currently available without running the recipe.
+     */
+    public int getFreeKryos(){
+        return kryoPool.getFree();
+    }
+
+    /**
+     * Discards all pooled kryo instances and buffers, e.g. to free memory after a large save.
+     */
+    public void clear(){
+        kryoPool.clear();
+        outputPool.clear();
+        inputPool.clear();
+    }
+
+}
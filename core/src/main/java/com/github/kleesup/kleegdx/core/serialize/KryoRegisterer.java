@@ -4,22 +4,47 @@ import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.math.Vector3;
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
 import com.esotericsoftware.kryo.Registration;
 import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
+import com.github.kleesup.kleegdx.core.net.SerializedPacket;
+import com.github.kleesup.kleegdx.core.net.gateway.GatewayClose;
+import com.github.kleesup.kleegdx.core.net.gateway.GatewayFrame;
+import com.github.kleesup.kleegdx.core.net.gateway.GatewayOpen;
+import com.github.kleesup.kleegdx.core.net.gateway.GatewayTransfer;
+import com.github.kleesup.kleegdx.core.net.packet.PacketPool;
+import com.github.kleesup.kleegdx.core.net.packet.PooledPacket;
+import com.github.kleesup.kleegdx.core.net.snapshot.SnapshotAck;
+import com.github.kleesup.kleegdx.core.net.snapshot.SnapshotPacket;
+import com.github.kleesup.kleegdx.core.net.sync.TimePing;
+import com.github.kleesup.kleegdx.core.net.sync.TimePong;
+import com.github.kleesup.kleegdx.core.util.Verify;
 import lombok.Getter;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Simple class that manages some kleegdx library based serialization to Kryo.
  * Included are the following operations:
  * <l>
  *     <li>registering default gdx classes via {@link #registerDefaults()}</li>
- *     <li>when registering classes without specifying a {@link Serializer}, {@link #checkBaseSerializer(Class)} is
- *     called to find inner {@link Serializer} classes to use.</li>
+ *     <li>registering the {@link SerializedPacket} wrapper for serialize-once broadcasts via
+ *     {@link #registerSerializedPacket()}</li>
+ *     <li>registering the packets of client clock synchronization via {@link #registerTimeSyncPackets()}</li>
+ *     <li>when registering classes without specifying a {@link Serializer}, the generated serializer of
+ *     {@link TaggedSerializable} classes is used, otherwise {@link #checkBaseSerializer(Class)} is called to find
+ *     inner {@link Serializer} classes to use.</li>
+ *     <li>preparing data transfer objects for delta compressed snapshots via {@link #registerDeltaDTO(Class, Class)}</li>
+ *     <li>registering packets that are read into pooled instances via {@link #registerPooled(Class, Supplier)}</li>
+ *     <li>registering the packets of gateway links via {@link #registerGatewayPackets()}</li>
  * </l>
+ * As the wrapped {@link Kryo} is not thread-safe, serializing on multiple threads requires a {@link KryoPool} which
+ * builds identically registered instances from one recipe, see {@link #newPool(Consumer)}.
  */
 @Getter
 public class KryoRegisterer {
@@ -69,15 +94,62 @@ public class KryoRegisterer {
         });
     }
 
+    /**
+     * Registers the {@link SerializedPacket} wrapper, which is required for serialize-once broadcasts like
+     * {@link com.github.kleesup.kleegdx.core.net.GameServer#broadcast(Object, Iterable, boolean)}. Both sides need to
+     * call this method at the same position.
+     */
+    public void registerSerializedPacket(){
+        kryo.register(SerializedPacket.class, new SerializedPacket.PacketSerializer());
+    }
+
+    /**
+     * Builds a pool of kryo instances for parallel serialization. Each instance gets its own registerer with the
+     * default registrations, afterwards the recipe is run on it. To register the same classes to the kryo instance of
+     * a registerer as well, the recipe can be run on it directly.
+     * @param recipe Registers all classes to a new registerer.
+     * @return The new pool.
+     */
+    public static KryoPool newPool(Consumer<? super KryoRegisterer> recipe){
+        return new KryoPool(recipe);
+    }
+
     /**
      * Registers a class to the kryo instance. Before calling {@link Kryo#register(Class)}, the method will try to find
      * an inner class that inherits {@link Serializer}. If so, that class is used as serializer for registration.
      * @param clazz The class to register.
      */
     public void register(Class<?> clazz){
+        if(clazz.isAnnotationPresent(TaggedSerializable.class)){
+            kryo.register(clazz, newTaggedSerializer(clazz));
+            return;
+        }
         if(!checkBaseSerializer(clazz))kryo.register(clazz);
     }
 
+    /**
+     * Creates the serializer generated by the annotation processor for a {@link TaggedSerializable} class.
+     * @param clazz The annotated class.
+     * @return A new instance of the generated serializer.
+     * @throws KryoException If the serializer was not generated.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> BaseTaggedSerializer<T> newTaggedSerializer(Class<T> clazz){
+        String name = clazz.getName();
+        int packageEnd = name.lastIndexOf('.') + 1;
+        name = name.substring(0, packageEnd) + name.substring(packageEnd).replace('$', '_') + "_TaggedSerializer";
+        try {
+            Class<?> serializer = Class.forName(name, true, clazz.getClassLoader());
+            return (BaseTaggedSerializer<T>) serializer.getConstructor().newInstance();
+        } catch (ClassNotFoundException e) {
+            throw new KryoException("No generated serializer found for "+clazz.getName()+", is the annotation " +
+                    "processor enabled?", e);
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException |
+                 NoSuchMethodException e) {
+            throw new KryoException(e);
+        }
+    }
+
     /**
      * See {@link Kryo#register(Class, Serializer)}.
      */
@@ -107,14 +179,52 @@ public class KryoRegisterer {
         return false;
     }
 
+    /**
+     * Registers a packet class whose instances are obtained from a pool when read, see {@link PooledPacket}.
+     * @param clazz The class to register.
+     * @param pool The pool to obtain instances from.
+     */
+    public <T extends PooledPacket> void registerPooled(Class<T> clazz, PacketPool<T> pool){
+        kryo.register(clazz, new PacketPool.PooledSerializer<>(kryo, clazz, pool));
+    }
+
+    /**
+     * Registers a packet class whose instances are obtained from a new, unbounded pool when read.
+     * See {@link #registerPooled(Class, PacketPool)}.
+     * @param clazz The class to register.
+     * @param factory Creates new instances when the pool is empty, e.g. the no-arg constructor.
+     * @return The created pool.
+     */
+    public <T extends PooledPacket> PacketPool<T> registerPooled(Class<T> clazz, Supplier<T> factory){
+        PacketPool<T> pool = new PacketPool<>(factory);
+        registerPooled(clazz, pool);
+        return pool;
+    }
+
     /**
      * Registers a class by acknowledging that it extends {@link IDataTransferable} and will therefore use the build dto
-     * instance for serialization and deserialization.
+     * instance for serialization and deserialization. The constructor or static 'deserialize' method used for
+     * deserialization is resolved once here, see {@link IDataTransferable#factoryOf(Class, Class)}.
      * @param clazz The class to register. Needs to extend {@link IDataTransferable}.
      * @param dtoClass The class of the data transfer object. The dto class will also be tried to
      *                 be registered via {@link #register(Class)}.
+     * @throws RuntimeException If the class provides no way to be built from the dto class.
      */
-    public <T extends IDataTransferable<?>> void registerWithDTO(Class<T> clazz, Class<?> dtoClass){
+    public <T extends IDataTransferable<?>, D> void registerWithDTO(Class<T> clazz, Class<D> dtoClass){
+        registerWithDTO(clazz, dtoClass, IDataTransferable.factoryOf(clazz, dtoClass));
+    }
+
+    /**
+     * Registers a class like {@link #registerWithDTO(Class, Class)}, but builds instances from read dto objects via the
+     * given factory, e.g. a constructor reference like {@code MyEntity::new}.
+     * @param clazz The class to register. Needs to extend {@link IDataTransferable}.
+     * @param dtoClass The class of the data transfer object. The dto class will also be tried to
+     *                 be registered via {@link #register(Class)}.
+     * @param factory The function building an instance from a dto object.
+     */
+    public <T extends IDataTransferable<?>, D> void registerWithDTO(Class<T> clazz, Class<D> dtoClass,
+                                                                    Function<? super D, ? extends T> factory){
+        Verify.nonNullArg(factory, "Factory cannot be null!");
         if(!isRegistered(dtoClass))register(dtoClass);
         kryo.register(clazz, new Serializer<T>() {
             @Override
@@ -123,11 +233,48 @@ public class KryoRegisterer {
             }
             @Override
             public T read(Kryo kryo, Input input, Class type) {
-                return IDataTransferable.fromDataTransferObject(clazz, kryo.readObject(input, dtoClass));
+                return factory.apply(kryo.readObject(input, dtoClass));
             }
         });
     }
 
+    /**
+     * Registers a class like {@link #registerWithDTO(Class, Class)} and additionally prepares its dto class for delta
+     * compressed replication via {@link com.github.kleesup.kleegdx.core.net.snapshot.SnapshotReplicator}. The snapshot
+     * packets are registered on the first call, so both sides need to call this method in the same order.
+     * @param clazz The class to register. Needs to extend {@link IDataTransferable}.
+     * @param dtoClass The class of the data transfer object. Needs a no-arg constructor.
+     * @return The codec encoding deltas of the dto class.
+     */
+    public <T extends IDataTransferable<D>, D> DeltaCodec<D> registerDeltaDTO(Class<T> clazz, Class<D> dtoClass){
+        registerWithDTO(clazz, dtoClass);
+        if(!isRegistered(SnapshotPacket.class))kryo.register(SnapshotPacket.class, new SnapshotPacket.SnapshotSerializer());
+        if(!isRegistered(SnapshotAck.class))kryo.register(SnapshotAck.class);
+        return DeltaCodec.of(dtoClass);
+    }
+
+    /**
+     * Registers the packets used by clients to measure the connection and estimate the server clock, see
+     * {@link com.github.kleesup.kleegdx.core.net.sync.ClockSync}. Both sides need to call this method at the same
+     * position, the server additionally needs a {@link com.github.kleesup.kleegdx.core.net.sync.TimeSyncResponder}.
+     */
+    public void registerTimeSyncPackets(){
+        kryo.register(TimePing.class);
+        kryo.register(TimePong.class);
+    }
+
+    /**
+     * Registers the packets exchanged between a gateway and its backend servers, see
+     * {@link com.github.kleesup.kleegdx.core.net.gateway.GatewayTransport}. Only needed for the kryo instances of the
+     * links, both sides need to call this method at the same position.
+     */
+    public void registerGatewayPackets(){
+        kryo.register(GatewayOpen.class);
+        kryo.register(GatewayFrame.class);
+        kryo.register(GatewayClose.class);
+        kryo.register(GatewayTransfer.class);
+    }
+
     /**
      * Checks whether a class is registered or not.
      * @param clazz The class to check for.
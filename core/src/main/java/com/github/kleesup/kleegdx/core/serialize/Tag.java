@@ -0,0 +1,21 @@
+package com.github.kleesup.kleegdx.core.serialize;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Sets the tag of a field in a {@link TaggedSerializable} class. Renaming a field while keeping its tag keeps old
+ * data readable.
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.FIELD)
+public @interface Tag {
+
+    /**
+     * @return The tag of the field.
+     */
+    String value();
+
+}
@@ -0,0 +1,335 @@
+package com.github.kleesup.kleegdx.core.serialize;
+
+import com.badlogic.gdx.utils.Pool;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.github.kleesup.kleegdx.core.util.Verify;
+
+import java.util.Arrays;
+
+/**
+ * A reusable map from tags to values which stores primitives without boxing. Tags are kept in an open-addressed
+ * hash table with linear probing; primitive values are stored as raw bits in a {@code long[]}, strings and other
+ * objects in an {@code Object[]}. Clearing keeps the arrays, so a record can be filled again without allocating.
+ * <p>
+ * Getters take a default value which is returned if the tag is missing or holds a value of another type, which keeps
+ * reading version independent like with {@link java.util.HashMap#getOrDefault(Object, Object)}.
+ * </p>
+ * <p>
+ * Records are written by the {@link RecordSerializer}: each entry is written as tag, type byte and value. Only
+ * object values are written with their class, int and long values are written as varints.
+ * </p>
+ */
+@SerializationTarget(target = SerializationTarget.Type.BOTH)
+public class TaggedRecord implements Pool.Poolable {
+
+    private static final byte INT = 0, LONG = 1, FLOAT = 2, DOUBLE = 3, BOOL = 4, STRING = 5, OBJECT = 6;
+
+    private String[] tags;
+    private byte[] types;
+    private long[] bits;
+    private Object[] objects;
+    private int size;
+    private int mask;
+    private int threshold;
+
+    public TaggedRecord(){
+        this(16);
+    }
+
+    /**
+     * @param initialCapacity The amount of entries the record can hold before it grows.
+     */
+    public TaggedRecord(int initialCapacity){
+        Verify.checkArg(initialCapacity < 0, "Initial capacity cannot be negative!");
+        int capacity = Integer.highestOneBit(Math.max(8, (int) Math.ceil(initialCapacity / 0.7)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity){
+        this.tags = new String[capacity];
+        this.types = new byte[capacity];
+        this.bits = new long[capacity];
+        this.objects = new Object[capacity];
+        this.mask = capacity - 1;
+        this.threshold = (int) (capacity * 0.7f);
+    }
+
+    /* -- Table -- */
+
+    private static int hash(String tag){
+        int h = tag.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return The slot of the tag or {@code -(insertionSlot + 1)} if the tag is not present.
+     */
+    private int find(String tag){
+        int slot = hash(tag) & mask;
+        while (true) {
+            String current = tags[slot];
+            if(current == null)return -(slot + 1);
+            if(current.equals(tag))return slot;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * @return The slot to store the value of the tag in. As the table may grow, the value arrays must only be read
+     * after calling this method.
+     */
+    private int slotFor(String tag, byte type){
+        Verify.nonNullArg(tag, "Tag cannot be null!");
+        int slot = find(tag);
+        if(slot < 0){
+            if(size >= threshold){
+                grow();
+                slot = find(tag);
+            }
+            slot = -(slot + 1);
+            tags[slot] = tag;
+            size++;
+        }
+        types[slot] = type;
+        objects[slot] = null;
+        return slot;
+    }
+
+    private void grow(){
+        String[] oldTags = tags;
+        byte[] oldTypes = types;
+        long[] oldBits = bits;
+        Object[] oldObjects = objects;
+        allocate(oldTags.length << 1);
+        for(int i = 0; i < oldTags.length; i++){
+            if(oldTags[i] == null)continue;
+            int slot = -(find(oldTags[i]) + 1);
+            tags[slot] = oldTags[i];
+            types[slot] = oldTypes[i];
+            bits[slot] = oldBits[i];
+            objects[slot] = oldObjects[i];
+        }
+    }
+
+    /**
+     * Removes a tag, moving following entries of the probe sequence back so no tombstones are needed.
+     * @param tag The tag to remove.
+     * @return {@code true} if the tag was present.
+     */
+    public boolean remove(String tag){
+        int slot = find(tag);
+        if(slot < 0)return false;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (tags[next] != null) {
+            int home = hash(tags[next]) & mask;
+            //move the entry if the hole lies between its home slot and its current slot
+            if(((next - home) & mask) >= ((next - hole) & mask)){
+                tags[hole] = tags[next];
+                types[hole] = types[next];
+                bits[hole] = bits[next];
+                objects[hole] = objects[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        tags[hole] = null;
+        objects[hole] = null;
+        size--;
+        return true;
+    }
+
+    /**
+     * Removes all entries, keeping the allocated capacity.
+     */
+    public void clear(){
+        if(size == 0)return;
+        Arrays.fill(tags, null);
+        Arrays.fill(objects, null);
+        size = 0;
+    }
+
+    @Override
+    public void reset() {
+        clear();
+    }
+
+    public boolean has(String tag){
+        return find(tag) >= 0;
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public boolean isEmpty(){
+        return size == 0;
+    }
+
+    /* -- Putting -- */
+
+    public TaggedRecord putInt(String tag, int value){
+        int slot = slotFor(tag, INT);
+        bits[slot] = value;
+        return this;
+    }
+
+    public TaggedRecord putLong(String tag, long value){
+        int slot = slotFor(tag, LONG);
+        bits[slot] = value;
+        return this;
+    }
+
+    public TaggedRecord putFloat(String tag, float value){
+        int slot = slotFor(tag, FLOAT);
+        bits[slot] = Float.floatToRawIntBits(value);
+        return this;
+    }
+
+    public TaggedRecord putDouble(String tag, double value){
+        int slot = slotFor(tag, DOUBLE);
+        bits[slot] = Double.doubleToRawLongBits(value);
+        return this;
+    }
+
+    public TaggedRecord putBoolean(String tag, boolean value){
+        int slot = slotFor(tag, BOOL);
+        bits[slot] = value ? 1 : 0;
+        return this;
+    }
+
+    public TaggedRecord putString(String tag, String value){
+        int slot = slotFor(tag, STRING);
+        objects[slot] = value;
+        return this;
+    }
+
+    /**
+     * Puts an object value, which is written together with its class. Primitive wrappers should be put via the
+     * primitive methods instead.
+     * @param tag The tag of the value.
+     * @param value The value, can be {@code null}.
+     * @return This record for chaining.
+     */
+    public TaggedRecord putObject(String tag, Object value){
+        int slot = slotFor(tag, OBJECT);
+        objects[slot] = value;
+        return this;
+    }
+
+    /* -- Getting -- */
+
+    private int slotOf(String tag, byte type){
+        int slot = find(tag);
+        return slot >= 0 && types[slot] == type ? slot : -1;
+    }
+
+    /**
+     * @param tag The tag of the value.
+     * @param defaultValue The value returned if the tag is missing or holds another type.
+     * @return The value of the tag or the default value.
+     */
+    public int getInt(String tag, int defaultValue){
+        int slot = slotOf(tag, INT);
+        return slot >= 0 ? (int) bits[slot] : defaultValue;
+    }
+
+    public long getLong(String tag, long defaultValue){
+        int slot = slotOf(tag, LONG);
+        return slot >= 0 ? bits[slot] : defaultValue;
+    }
+
+    public float getFloat(String tag, float defaultValue){
+        int slot = slotOf(tag, FLOAT);
+        return slot >= 0 ? Float.intBitsToFloat((int) bits[slot]) : defaultValue;
+    }
+
+    public double getDouble(String tag, double defaultValue){
+        int slot = slotOf(tag, DOUBLE);
+        return slot >= 0 ? Double.longBitsToDouble(bits[slot]) : defaultValue;
+    }
+
+    public boolean getBoolean(String tag, boolean defaultValue){
+        int slot = slotOf(tag, BOOL);
+        return slot >= 0 ? bits[slot] != 0 : defaultValue;
+    }
+
+    public String getString(String tag, String defaultValue){
+        int slot = slotOf(tag, STRING);
+        return slot >= 0 ? (String) objects[slot] : defaultValue;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T getObject(String tag, T defaultValue){
+        int slot = slotOf(tag, OBJECT);
+        return slot >= 0 ? (T) objects[slot] : defaultValue;
+    }
+
+    /* -- Serialization -- */
+
+    /**
+     * Writes all entries of a record and reads them into new or existing records.
+     */
+    public static class RecordSerializer extends Serializer<TaggedRecord> {
+
+        @Override
+        public void write(Kryo kryo, Output output, TaggedRecord record) {
+            output.writeVarInt(record.size, true);
+            for(int slot = 0; slot < record.tags.length; slot++){
+                String tag = record.tags[slot];
+                if(tag == null)continue;
+                byte type = record.types[slot];
+                output.writeString(tag);
+                output.writeByte(type);
+                long bits = record.bits[slot];
+                switch (type){
+                    case INT: output.writeVarInt((int) bits, false); break;
+                    case LONG: output.writeVarLong(bits, false); break;
+                    case FLOAT: output.writeInt((int) bits); break;
+                    case DOUBLE: output.writeLong(bits); break;
+                    case BOOL: output.writeBoolean(bits != 0); break;
+                    case STRING: output.writeString((String) record.objects[slot]); break;
+                    default: kryo.writeClassAndObject(output, record.objects[slot]);
+                }
+            }
+        }
+
+        @Override
+        public TaggedRecord read(Kryo kryo, Input input, Class<? extends TaggedRecord> type) {
+            TaggedRecord record = new TaggedRecord();
+            readInto(kryo, input, record);
+            return record;
+        }
+
+        /**
+         * Reads the entries of a record into an existing record, which is cleared first.
+         * @param kryo The kryo instance to read object values with.
+         * @param input The input to read from.
+         * @param record The record to fill.
+         */
+        public void readInto(Kryo kryo, Input input, TaggedRecord record){
+            record.clear();
+            int size = input.readVarInt(true);
+            for(int i = 0; i < size; i++){
+                String tag = input.readString();
+                byte type = input.readByte();
+                switch (type){
+                    case INT: record.putInt(tag, input.readVarInt(false)); break;
+                    case LONG: record.putLong(tag, input.readVarLong(false)); break;
+                    case FLOAT: record.putFloat(tag, input.readFloat()); break;
+                    case DOUBLE: record.putDouble(tag, input.readDouble()); break;
+                    case BOOL: record.putBoolean(tag, input.readBoolean()); break;
+                    case STRING: record.putString(tag, input.readString()); break;
+                    case OBJECT: record.putObject(tag, kryo.readClassAndObject(input)); break;
+                    default: throw new KryoException("Unknown record value type "+type+"!");
+                }
+            }
+        }
+
+    }
+
+}
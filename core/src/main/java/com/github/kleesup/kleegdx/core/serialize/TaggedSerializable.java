@@ -0,0 +1,38 @@
+package com.github.kleesup.kleegdx.core.serialize;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class for which the kleegdx annotation processor generates a {@link BaseTaggedSerializer} named
+ * {@code <ClassName>_TaggedSerializer} in the same package. The generated serializer accesses the fields directly,
+ * without reflection or boxing of primitives, and is registered by {@link KryoRegisterer#register(Class)}.
+ * <p>
+ * All non-static, non-transient fields are serialized under their name or the name given via {@link Tag}. Private
+ * fields need a getter ({@code getName}/{@code isName}) and a setter ({@code setName}) declared in the class, all
+ * other fields are accessed directly. The class needs a non-private no-arg constructor.
+ * </p>
+ * <pre>{@code
+ *     @TaggedSerializable(version = 1)
+ *     public class PlayerData {
+ *         int xp;
+ *         float health;
+ *         @Tag("name") String displayName;
+ *         transient Object cache; //not serialized
+ *     }
+ * }</pre>
+ * The processor is enabled via {@code annotationProcessor project(':processor')}.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@SerializationTarget(target = SerializationTarget.Type.STORING)
+public @interface TaggedSerializable {
+
+    /**
+     * @return The schema version of the class, see {@link BaseTaggedSerializer#getSchemaVersion()}.
+     */
+    int version() default 0;
+
+}
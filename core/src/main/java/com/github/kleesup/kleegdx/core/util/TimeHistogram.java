@@ -0,0 +1,105 @@
+package com.github.kleesup.kleegdx.core.util;
+
+import java.util.Arrays;
+
+/**
+ * A fixed size histogram for nanosecond durations which never allocates after construction. Values are sorted into
+ * logarithmic buckets where each power of two is split into {@link #SUB_BUCKETS} linear sub-buckets, so every
+ * recorded value is kept with a relative error of at most 12.5%.
+ * <p>
+ * The histogram is meant to be written by a single thread. Reading from other threads is possible but may return
+ * slightly stale results.
+ * </p>
+ */
+public class TimeHistogram {
+
+    /** Amount of linear sub-buckets per power of two. */
+    public static final int SUB_BUCKETS = 8;
+    private static final int SUB_BITS = 3;
+    private static final int BUCKET_COUNT = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long total;
+    private long max;
+    private long sum;
+
+    /**
+     * Records a single value.
+     * @param nanos The duration to record, negative values are counted as {@code 0}.
+     */
+    public void record(long nanos){
+        if(nanos < 0)nanos = 0;
+        counts[indexOf(nanos)]++;
+        total++;
+        sum += nanos;
+        if(nanos > max)max = nanos;
+    }
+
+    /**
+     * Returns the approximated value at a specific percentile.
+     * @param percentile The percentile between {@code 0} and {@code 1} (e.g. {@code 0.99} for p99).
+     * @return The upper bound of the bucket that holds the percentile or {@code 0} if nothing was recorded.
+     */
+    public long getPercentile(double percentile){
+        long count = total;
+        if(count == 0)return 0;
+        long target = Math.max(1, (long) Math.ceil(count * Math.min(1, Math.max(0, percentile))));
+        long seen = 0;
+        for(int i = 0; i < BUCKET_COUNT; i++){
+            seen += counts[i];
+            if(seen >= target)return Math.min(upperBoundOf(i), max);
+        }
+        return max;
+    }
+
+    public long getMax(){
+        return max;
+    }
+
+    public long getCount(){
+        return total;
+    }
+
+    public double getMean(){
+        return total == 0 ? 0 : (double) sum / total;
+    }
+
+    /**
+     * Adds all values recorded by another histogram to this one, e.g. to combine histograms of multiple threads.
+     * @param other The histogram to add.
+     */
+    public void add(TimeHistogram other){
+        for(int i = 0; i < BUCKET_COUNT; i++) counts[i] += other.counts[i];
+        total += other.total;
+        sum += other.sum;
+        if(other.max > max)max = other.max;
+    }
+
+    /**
+     * Clears all recorded values.
+     */
+    public void reset(){
+        Arrays.fill(counts, 0);
+        total = 0;
+        max = 0;
+        sum = 0;
+    }
+
+    /* -- Buckets -- */
+
+    private static int indexOf(long value){
+        if(value < SUB_BUCKETS)return (int) value;
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exp - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBoundOf(int index){
+        if(index < SUB_BUCKETS)return index;
+        int exp = index / SUB_BUCKETS + SUB_BITS - 1;
+        int sub = index % SUB_BUCKETS;
+        long lower = (1L << exp) | ((long) sub << (exp - SUB_BITS));
+        return lower + (1L << (exp - SUB_BITS)) - 1;
+    }
+
+}
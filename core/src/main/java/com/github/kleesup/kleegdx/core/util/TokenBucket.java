@@ -0,0 +1,72 @@
+package com.github.kleesup.kleegdx.core.util;
+
+/**
+ * A token bucket allowing a steady rate of operations with short bursts. The bucket holds up to {@link #getBurst()}
+ * tokens and is refilled continuously with {@link #getRate()} tokens per second. Each operation consumes one token,
+ * if none is left the operation exceeds the limit.
+ * <p>
+ * The bucket is not thread-safe, callers have to synchronize if it is used by multiple threads.
+ * </p>
+ */
+public class TokenBucket {
+
+    private final double tokensPerNano;
+    private final int burst;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * Builds a new, full token bucket.
+     * @param rate The amount of tokens added per second, must be greater than {@code 0}.
+     * @param burst The max amount of stored tokens, must be greater than {@code 0}.
+     */
+    public TokenBucket(double rate, int burst){
+        Verify.checkArg(rate <= 0, "Rate must be greater than 0!");
+        Verify.checkArg(burst <= 0, "Burst must be greater than 0!");
+        this.tokensPerNano = rate / 1_000_000_000d;
+        this.burst = burst;
+        this.tokens = burst;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Tries to consume a single token.
+     * @param now The current time, see {@link System#nanoTime()}.
+     * @return {@code true} if a token was consumed, {@code false} if the bucket is empty.
+     */
+    public boolean tryConsume(long now){
+        refill(now);
+        if(tokens < 1)return false;
+        tokens--;
+        return true;
+    }
+
+    /**
+     * Checks whether a token is available without consuming it.
+     * @param now The current time, see {@link System#nanoTime()}.
+     * @return {@code true} if at least one token is available.
+     */
+    public boolean hasToken(long now){
+        refill(now);
+        return tokens >= 1;
+    }
+
+    private void refill(long now){
+        long elapsed = now - lastRefill;
+        if(elapsed <= 0)return;
+        lastRefill = now;
+        tokens = Math.min(burst, tokens + elapsed * tokensPerNano);
+    }
+
+    /**
+     * @return The amount of tokens added per second.
+     */
+    public double getRate(){
+        return tokensPerNano * 1_000_000_000d;
+    }
+
+    public int getBurst(){
+        return burst;
+    }
+
+}
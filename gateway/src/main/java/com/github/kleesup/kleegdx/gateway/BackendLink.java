@@ -0,0 +1,57 @@
+package com.github.kleesup.kleegdx.gateway;
+
+import com.github.kleesup.kleegdx.client.net.Communicator;
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The link of a {@link GatewayServer} to one backend server. All client sessions assigned to the backend are
+ * multiplexed over the {@link Communicator} of the link.
+ */
+public class BackendLink {
+
+    @Getter
+    private final int id;
+    @Getter
+    private Communicator communicator;
+    private final AtomicInteger sessions = new AtomicInteger();
+
+    BackendLink(int id){
+        this.id = id;
+    }
+
+    void setCommunicator(Communicator communicator){
+        this.communicator = communicator;
+    }
+
+    void send(Object obj){
+        Communicator communicator = this.communicator;
+        if(communicator != null)communicator.sendTCP(obj);
+    }
+
+    void sessionAdded(){
+        sessions.incrementAndGet();
+    }
+
+    void sessionRemoved(){
+        sessions.decrementAndGet();
+    }
+
+    /**
+     * @return The amount of client sessions currently assigned to the backend.
+     */
+    public int getSessionCount(){
+        return sessions.get();
+    }
+
+    public boolean isConnected(){
+        Communicator communicator = this.communicator;
+        return communicator != null && communicator.isConnected();
+    }
+
+    @Override
+    public String toString() {
+        return "BackendLink " + id;
+    }
+}
@@ -0,0 +1,21 @@
+package com.github.kleesup.kleegdx.gateway;
+
+import com.esotericsoftware.kryonet.Connection;
+
+/**
+ * A client connected to a {@link GatewayServer} and the backend it is currently assigned to. Changes of the backend
+ * and forwarding to it are synchronized on the session, so no packet is sent to a backend after the session was
+ * handed over.
+ */
+final class ClientSession {
+
+    final int id;
+    final Connection connection;
+    BackendLink backend;
+
+    ClientSession(int id, Connection connection){
+        this.id = id;
+        this.connection = connection;
+    }
+
+}
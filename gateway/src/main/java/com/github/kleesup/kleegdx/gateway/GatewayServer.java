@@ -0,0 +1,367 @@
+package com.github.kleesup.kleegdx.gateway;
+
+import com.esotericsoftware.kryonet.Client;
+import com.esotericsoftware.kryonet.Connection;
+import com.esotericsoftware.kryonet.FrameworkMessage;
+import com.esotericsoftware.kryonet.Listener;
+import com.github.kleesup.kleegdx.client.net.LoopbackCommunicator;
+import com.github.kleesup.kleegdx.client.net.RemoteCommunicator;
+import com.github.kleesup.kleegdx.core.net.GameServer;
+import com.github.kleesup.kleegdx.core.net.gateway.GatewayClose;
+import com.github.kleesup.kleegdx.core.net.gateway.GatewayFrame;
+import com.github.kleesup.kleegdx.core.net.gateway.GatewayOpen;
+import com.github.kleesup.kleegdx.core.net.gateway.GatewayTransfer;
+import com.github.kleesup.kleegdx.core.net.gateway.GatewayTransport;
+import com.github.kleesup.kleegdx.core.net.transport.LoopbackTransport;
+import com.github.kleesup.kleegdx.core.util.Verify;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A front server that accepts client connections and forwards their traffic to multiple backend {@link GameServer}s.
+ * Each backend is reached over a single link, a {@link RemoteCommunicator} or for backends in the same JVM a
+ * {@link LoopbackCommunicator}, on which all clients assigned to it are multiplexed. The backends accept the links via
+ * a {@link GatewayTransport} and see every client as a separate connection.
+ * <p>
+ * New clients are assigned to the backend with the fewest sessions, a custom assignment can be set via
+ * {@link #setBackendSelector(Function)}. Clients can be handed over to another backend by the gateway via
+ * {@link #handoff(Connection, int, Object)} or by the backend via {@link GatewayTransport#transfer}, the client stays
+ * connected to the gateway.
+ * </p>
+ * <p>
+ * Packets are forwarded on the network threads as soon as they arrive. The kryo instances of the gateway, the links
+ * and the backends need the same registrations, the link ones additionally the gateway packets (see
+ * {@link com.github.kleesup.kleegdx.core.serialize.KryoRegisterer#registerGatewayPackets()}).
+ * </p>
+ * <p>Everything can run in one JVM, e.g. for tests:</p>
+ * <pre>{@code
+ *     GatewayTransport link = new GatewayTransport();
+ *     backend.openTransport(link);
+ *     gateway.addBackend(1, link.getLoopback());
+ *     LoopbackTransport clients = new LoopbackTransport();
+ *     gateway.openTransport(clients);
+ *     new LoopbackCommunicator(clients, 10);
+ * }</pre>
+ */
+public abstract class GatewayServer extends GameServer {
+
+    private final ConcurrentHashMap<Integer, BackendLink> backends = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Connection, ClientSession> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, ClientSession> sessionsById = new ConcurrentHashMap<>();
+    private final AtomicInteger nextSession = new AtomicInteger(1);
+    private volatile Function<Connection, BackendLink> backendSelector;
+
+    /* -- Statistics -- */
+    private final LongAdder forwardedToBackend = new LongAdder();
+    private final LongAdder forwardedToClient = new LongAdder();
+    private final LongAdder handoffs = new LongAdder();
+
+    public GatewayServer(boolean useUDP) {
+        super(useUDP);
+        addListener(new ClientListener());
+    }
+
+    /* -- Backends -- */
+
+    /**
+     * Links a backend in the same JVM.
+     * @param id The id of the backend, used for handoffs.
+     * @param transport The loopback of the backends {@link GatewayTransport}, see {@link GatewayTransport#getLoopback()}.
+     * @return The link.
+     */
+    public BackendLink addBackend(int id, LoopbackTransport transport){
+        BackendLink link = newLink(id);
+        LoopbackCommunicator communicator = new LoopbackCommunicator(transport, -1){
+            @Override
+            public void received(Connection connection, Object object) {
+                if(!handleBackendPacket(link, object))super.received(connection, object);
+            }
+            @Override
+            public void disconnected(Connection connection) {
+                super.disconnected(connection);
+                backendDisconnected(link);
+            }
+        };
+        link.setCommunicator(communicator);
+        return link;
+    }
+
+    /**
+     * Links a remote backend, connecting to the link server of its {@link GatewayTransport}.
+     * @param id The id of the backend, used for handoffs.
+     * @param client The client to connect with, its kryo instance needs the gateway packets.
+     * @param host The host of the backend.
+     * @param port The port of the link server.
+     * @return The link.
+     */
+    public BackendLink addBackend(int id, Client client, String host, int port){
+        BackendLink link = newLink(id);
+        RemoteCommunicator communicator = new RemoteCommunicator(client, host, port, false, -1){
+            @Override
+            public void received(Connection connection, Object object) {
+                if(!handleBackendPacket(link, object))super.received(connection, object);
+            }
+            @Override
+            public void disconnected(Connection connection) {
+                super.disconnected(connection);
+                backendDisconnected(link);
+            }
+        };
+        link.setCommunicator(communicator);
+        return link;
+    }
+
+    private BackendLink newLink(int id){
+        BackendLink link = new BackendLink(id);
+        Verify.checkArg(backends.putIfAbsent(id, link) != null, "Backend "+id+" already exists!");
+        return link;
+    }
+
+    /**
+     * Removes a backend and disconnects all clients assigned to it.
+     * @param id The id of the backend.
+     */
+    public void removeBackend(int id){
+        BackendLink link = backends.remove(id);
+        if(link == null)return;
+        backendDisconnected(link);
+        if(link.getCommunicator() != null)link.getCommunicator().dispose();
+    }
+
+    /**
+     * @param id The id of the backend.
+     * @return The link or {@code null} if there is no backend with that id.
+     */
+    public BackendLink getBackend(int id){
+        return backends.get(id);
+    }
+
+    public Collection<BackendLink> getBackends(){
+        return Collections.unmodifiableCollection(backends.values());
+    }
+
+    /**
+     * Sets the function deciding which backend a new client is assigned to.
+     * @param selector The function returning a backend of this gateway or {@code null} to use the connected backend
+     *                 with the fewest sessions.
+     */
+    public void setBackendSelector(Function<Connection, BackendLink> selector){
+        this.backendSelector = selector;
+    }
+
+    private BackendLink selectBackend(Connection connection){
+        Function<Connection, BackendLink> selector = backendSelector;
+        if(selector != null)return selector.apply(connection);
+        BackendLink best = null;
+        for(BackendLink link : backends.values()){
+            if(!link.isConnected())continue;
+            if(best == null || link.getSessionCount() < best.getSessionCount())best = link;
+        }
+        return best;
+    }
+
+    /* -- Sessions -- */
+
+    /**
+     * Hands a client over to another backend. The current backend sees the client disconnect, the target backend sees
+     * it connect and receives the payload as first packet.
+     * @param connection The connection of the client.
+     * @param backendId The id of the target backend.
+     * @param payload The first packet for the target backend (e.g. the player state) or {@code null}.
+     * @return {@code true} if the client was handed over, {@code false} if it is not connected, the backend does not
+     * exist or the client is already assigned to it.
+     */
+    public boolean handoff(Connection connection, int backendId, Object payload){
+        ClientSession session = sessions.get(connection);
+        BackendLink target = backends.get(backendId);
+        if(session == null || target == null)return false;
+        synchronized (session){
+            BackendLink current = session.backend;
+            if(current == null || current == target)return false;
+            current.send(new GatewayClose(session.id));
+            assign(session, current, target, payload);
+        }
+        return true;
+    }
+
+    /**
+     * @param connection The connection of a client.
+     * @return The backend the client is assigned to or {@code null} if it is not connected.
+     */
+    public BackendLink getBackend(Connection connection){
+        ClientSession session = sessions.get(connection);
+        if(session == null)return null;
+        synchronized (session){
+            return session.backend;
+        }
+    }
+
+    public int getSessionCount(){
+        return sessions.size();
+    }
+
+    /** Must be called while holding the lock of the session. */
+    private void assign(ClientSession session, BackendLink from, BackendLink to, Object payload){
+        if(from != null)from.sessionRemoved();
+        session.backend = to;
+        to.sessionAdded();
+        to.send(new GatewayOpen(session.id, payload));
+        if(from != null)handoffs.increment();
+    }
+
+    /* -- Backend packets -- */
+
+    /**
+     * Handles a packet received over a backend link on the network thread of the link.
+     * @return {@code true} if it was a gateway packet, {@code false} otherwise.
+     */
+    private boolean handleBackendPacket(BackendLink link, Object object){
+        if(object instanceof GatewayFrame){
+            GatewayFrame frame = (GatewayFrame) object;
+            ClientSession session = sessionsById.get(frame.session);
+            if(session == null || frame.packet == null)return true;
+            synchronized (session){
+                if(session.backend != link)return true; //sent before the session was handed over
+            }
+            if(frame.udp)session.connection.sendUDP(frame.packet);
+            else session.connection.sendTCP(frame.packet);
+            forwardedToClient.increment();
+            return true;
+        }
+        if(object instanceof GatewayTransfer){
+            GatewayTransfer transfer = (GatewayTransfer) object;
+            ClientSession session = sessionsById.get(transfer.session);
+            if(session == null)return true;
+            BackendLink target = backends.get(transfer.backend);
+            boolean close;
+            synchronized (session){
+                if(session.backend != link)return true;
+                close = target == null;
+                if(!close)assign(session, link, target, transfer.payload);
+            }
+            if(close)session.connection.close();
+            return true;
+        }
+        if(object instanceof GatewayClose){
+            ClientSession session = sessionsById.get(((GatewayClose) object).session);
+            if(session == null)return true;
+            synchronized (session){
+                if(session.backend != link)return true;
+            }
+            session.connection.close();
+            return true;
+        }
+        return false;
+    }
+
+    private void backendDisconnected(BackendLink link){
+        for(ClientSession session : sessions.values()){
+            boolean assigned;
+            synchronized (session){
+                assigned = session.backend == link;
+            }
+            if(assigned)session.connection.close();
+        }
+    }
+
+    /* -- Statistics -- */
+
+    /**
+     * @return The amount of packets forwarded from clients to backends.
+     */
+    public long getForwardedToBackend(){
+        return forwardedToBackend.sum();
+    }
+
+    /**
+     * @return The amount of packets forwarded from backends to clients.
+     */
+    public long getForwardedToClient(){
+        return forwardedToClient.sum();
+    }
+
+    /**
+     * @return The amount of handoffs between backends.
+     */
+    public long getHandoffs(){
+        return handoffs.sum();
+    }
+
+    /* -- Lifecycle -- */
+
+    /**
+     * Updates all listeners and backend links.
+     * @param delta The delta time since the last update.
+     */
+    @Override
+    public void update(float delta) {
+        super.update(delta);
+        for(BackendLink link : backends.values()){
+            if(link.getCommunicator() != null)link.getCommunicator().update(delta);
+        }
+    }
+
+    /**
+     * Closes all client connections and backend links.
+     */
+    @Override
+    public void close() {
+        super.close();
+        for(Integer id : backends.keySet()) removeBackend(id);
+    }
+
+    /* -- Client listener -- */
+
+    /**
+     * Assigns connecting clients to a backend and forwards their packets on the network thread.
+     */
+    private class ClientListener implements Listener {
+
+        @Override
+        public void connected(Connection connection) {
+            BackendLink backend = selectBackend(connection);
+            if(backend == null){
+                connection.close(); //no backend available
+                return;
+            }
+            ClientSession session = new ClientSession(nextSession.getAndIncrement(), connection);
+            sessionsById.put(session.id, session);
+            sessions.put(connection, session);
+            synchronized (session){
+                assign(session, null, backend, null);
+            }
+        }
+
+        @Override
+        public void received(Connection connection, Object object) {
+            if(object instanceof FrameworkMessage)return;
+            ClientSession session = sessions.get(connection);
+            if(session == null)return;
+            synchronized (session){
+                if(session.backend == null)return;
+                session.backend.send(new GatewayFrame(session.id, object, false));
+            }
+            forwardedToBackend.increment();
+        }
+
+        @Override
+        public void disconnected(Connection connection) {
+            ClientSession session = sessions.remove(connection);
+            if(session == null)return;
+            sessionsById.remove(session.id);
+            synchronized (session){
+                BackendLink backend = session.backend;
+                session.backend = null;
+                if(backend == null)return;
+                backend.sessionRemoved();
+                backend.send(new GatewayClose(session.id));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.github.kleesup.kleegdx.loadtest;
+
+import com.esotericsoftware.kryonet.Client;
+import com.github.kleesup.kleegdx.client.net.Communicator;
+import com.github.kleesup.kleegdx.client.net.LoopbackCommunicator;
+import com.github.kleesup.kleegdx.client.net.RemoteCommunicator;
+import com.github.kleesup.kleegdx.core.net.listener.QueuedTypeListenerClient;
+import com.github.kleesup.kleegdx.core.util.TimeHistogram;
+
+import java.util.Random;
+
+/**
+ * A single headless client of a {@link LoadTest}. Bots are driven by exactly one thread, which also handles their
+ * received packets, so no synchronization is needed.
+ */
+class Bot {
+
+    private final int id;
+    private final Communicator communicator;
+    private TimeHistogram roundTrips;
+    private double packetCredit, pingCredit;
+    long sentPackets, sentPings, receivedPongs;
+
+    Bot(int id, LoadTestConfig config){
+        this.id = id;
+        QueuedTypeListenerClient listener;
+        if(config.getLoopback() != null){
+            LoopbackCommunicator loopback = new LoopbackCommunicator(config.getLoopback(),
+                    config.getMaxPacketsPerRead());
+            listener = loopback;
+            this.communicator = loopback;
+        }else{
+            Client client = new Client();
+            config.getRegistration().accept(client.getKryo());
+            LoadTest.registerPackets(client.getKryo());
+            RemoteCommunicator remote = new RemoteCommunicator(client, config.getHost(), config.getPort(),
+                    config.isUdp(), config.getMaxPacketsPerRead());
+            listener = remote;
+            this.communicator = remote;
+        }
+        listener.register(BotPing.class, (connection, ping) -> {
+            if(ping.bot != this.id || roundTrips == null)return;
+            roundTrips.record(System.nanoTime() - ping.sentNanos);
+            receivedPongs++;
+        });
+    }
+
+    /**
+     * Assigns the bot to a driver thread.
+     * @param roundTrips The histogram of the driver to record round-trip times to.
+     */
+    void adopt(TimeHistogram roundTrips){
+        this.roundTrips = roundTrips;
+    }
+
+    /**
+     * Handles received packets and sends all packets that are due.
+     * @param delta The time since the last call in seconds.
+     */
+    void tick(float delta, LoadTestConfig config, Random random){
+        communicator.update(delta);
+        if(!communicator.isConnected())return;
+        PacketMix mix = config.getMix();
+        if(!mix.isEmpty()){
+            packetCredit += config.getPacketsPerSecond() * delta;
+            while (packetCredit >= 1){
+                packetCredit--;
+                PacketMix.Entry entry = mix.next(random);
+                if(entry.isUdp())communicator.sendUPD(entry.create());
+                else communicator.sendTCP(entry.create());
+                sentPackets++;
+            }
+        }
+        pingCredit += config.getPingsPerSecond() * delta;
+        while (pingCredit >= 1){
+            pingCredit--;
+            BotPing ping = new BotPing(id, System.nanoTime());
+            if(config.isUdp())communicator.sendUPD(ping);
+            else communicator.sendTCP(ping);
+            sentPings++;
+        }
+    }
+
+    boolean isConnected(){
+        return communicator.isConnected();
+    }
+
+    void dispose(){
+        communicator.dispose();
+    }
+
+}
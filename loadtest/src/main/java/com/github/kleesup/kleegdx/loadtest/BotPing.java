@@ -0,0 +1,18 @@
+package com.github.kleesup.kleegdx.loadtest;
+
+/**
+ * Packet sent by bots to measure the round-trip time. The server sends it back unchanged, see
+ * {@link LoadTest#installEcho(com.github.kleesup.kleegdx.core.net.packet.TypePacketProcessor)}.
+ */
+public class BotPing {
+
+    public int bot;
+    public long sentNanos;
+
+    public BotPing(){}
+    public BotPing(int bot, long sentNanos){
+        this.bot = bot;
+        this.sentNanos = sentNanos;
+    }
+
+}
@@ -0,0 +1,156 @@
+package com.github.kleesup.kleegdx.loadtest;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.github.kleesup.kleegdx.core.net.GameServer;
+import com.github.kleesup.kleegdx.core.net.packet.TypePacketProcessor;
+import com.github.kleesup.kleegdx.core.util.TimeHistogram;
+import com.github.kleesup.kleegdx.core.util.Verify;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs headless bot clients against a server to find out how many players it can sustain. Bots are connected one
+ * after another over the ramp-up time, send packets of the configured {@link PacketMix} at a fixed rate and measure
+ * the round-trip time with {@link BotPing}s. After the run, a {@link LoadTestReport} is returned.
+ * <p>
+ * The server has to echo pings (see {@link #installEcho(TypePacketProcessor)}) and, when bots connect via sockets,
+ * register the same packets in the same order as the bots, followed by {@link #registerPackets(Kryo)}:
+ * </p>
+ * <pre>{@code
+ *     LoadTestConfig config = new LoadTestConfig();
+ *     config.setPort(54555);
+ *     config.setBots(500);
+ *     config.setRegistration(MyPackets::register);
+ *     config.getMix().add(10, MoveInput::new, true).add(1, ChatMessage::random, false);
+ *     System.out.println(new LoadTest(config).run());
+ * }</pre>
+ */
+public class LoadTest {
+
+    private static final long DRIVER_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Registers the packets used by the load test itself. Needs to be called on the server after all other packets
+     * were registered.
+     * @param kryo The kryo instance to register to.
+     */
+    public static void registerPackets(Kryo kryo){
+        kryo.register(BotPing.class);
+    }
+
+    /**
+     * Registers a handler on the server that sends every received {@link BotPing} back to its sender.
+     * @param processor The packet processor of the server, e.g. its
+     *                  {@link com.github.kleesup.kleegdx.core.net.listener.QueuedTypeListenerServer}.
+     */
+    public static void installEcho(TypePacketProcessor processor){
+        processor.register(BotPing.class, (connection, ping) -> {
+            if(connection != null && connection.isConnected())connection.sendTCP(ping);
+        });
+    }
+
+    /**
+     * Thread driving a share of the bots.
+     */
+    private final class Driver extends Thread {
+        private final ConcurrentLinkedQueue<Bot> adopted = new ConcurrentLinkedQueue<>();
+        private final ArrayList<Bot> bots = new ArrayList<>();
+        private final TimeHistogram roundTrips = new TimeHistogram();
+        private final Random random;
+        private volatile boolean running = true;
+        private Driver(int index){
+            super("LoadTestDriver-" + index);
+            setDaemon(true);
+            this.random = new Random(config.getSeed() + index);
+        }
+        @Override
+        public void run() {
+            long last = System.nanoTime();
+            while (running){
+                Bot bot;
+                while ((bot = adopted.poll()) != null){
+                    bot.adopt(roundTrips);
+                    bots.add(bot);
+                }
+                long now = System.nanoTime();
+                float delta = (now - last) / 1_000_000_000f;
+                last = now;
+                for(int i = 0; i < bots.size(); i++) bots.get(i).tick(delta, config, random);
+                LockSupport.parkNanos(DRIVER_INTERVAL_NANOS);
+            }
+        }
+    }
+
+    private final LoadTestConfig config;
+    public LoadTest(LoadTestConfig config){
+        Verify.nonNullArg(config, "Config cannot be null!");
+        Verify.checkArg(config.getBots() <= 0, "Amount of bots must be greater than 0!");
+        Verify.checkArg(config.getThreads() <= 0, "Amount of threads must be greater than 0!");
+        this.config = config;
+    }
+
+    /**
+     * Runs the load test and blocks until it is finished.
+     * @return The results.
+     * @throws InterruptedException If the calling thread was interrupted while waiting.
+     */
+    public LoadTestReport run() throws InterruptedException {
+        GameServer server = config.getServer();
+        if(server != null)server.getTickStatistics().reset();
+        Driver[] drivers = new Driver[config.getThreads()];
+        for(int i = 0; i < drivers.length; i++){
+            drivers[i] = new Driver(i);
+            drivers[i].start();
+        }
+        long start = System.nanoTime();
+        long end = start + (long) (config.getDurationSeconds() * 1_000_000_000d);
+        long rampInterval = (long) (config.getRampUpSeconds() * 1_000_000_000d / config.getBots());
+        ArrayList<Bot> bots = new ArrayList<>(config.getBots());
+        int failed = 0;
+        try {
+            for(int i = 0; i < config.getBots() && System.nanoTime() < end; i++){
+                try {
+                    Bot bot = new Bot(i, config);
+                    bots.add(bot);
+                    drivers[i % drivers.length].adopted.add(bot);
+                } catch (RuntimeException e){ //connection refused or timed out
+                    failed++;
+                }
+                long next = start + rampInterval * (i + 1);
+                while (System.nanoTime() < next) sleepUntil(next);
+            }
+            while (System.nanoTime() < end) sleepUntil(end);
+        } finally {
+            for(Driver driver : drivers){
+                driver.running = false;
+                driver.join();
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000d;
+
+        TimeHistogram roundTrips = new TimeHistogram();
+        for(Driver driver : drivers) roundTrips.add(driver.roundTrips);
+        long sentPackets = 0, sentPings = 0, receivedPongs = 0;
+        int disconnected = 0;
+        for(Bot bot : bots){
+            sentPackets += bot.sentPackets;
+            sentPings += bot.sentPings;
+            receivedPongs += bot.receivedPongs;
+            if(!bot.isConnected())disconnected++;
+        }
+        LoadTestReport report = new LoadTestReport(bots.size(), failed, disconnected, seconds, sentPackets, sentPings,
+                receivedPongs, roundTrips, server);
+        for(Bot bot : bots) bot.dispose();
+        return report;
+    }
+
+    private static void sleepUntil(long deadline) throws InterruptedException {
+        long remaining = deadline - System.nanoTime();
+        if(remaining > 0)TimeUnit.NANOSECONDS.sleep(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(100)));
+    }
+
+}
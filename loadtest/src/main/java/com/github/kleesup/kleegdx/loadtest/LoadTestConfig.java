@@ -0,0 +1,47 @@
+package com.github.kleesup.kleegdx.loadtest;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.github.kleesup.kleegdx.core.net.GameServer;
+import com.github.kleesup.kleegdx.core.net.transport.LoopbackTransport;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.function.Consumer;
+
+/**
+ * Configuration of a {@link LoadTest}. Bots connect to {@link #host}:{@link #port} via sockets, unless a
+ * {@link #loopback} transport is set.
+ */
+@Getter
+@Setter
+public class LoadTestConfig {
+
+    /* -- Connection -- */
+    private String host = "127.0.0.1";
+    private int port;
+    private boolean udp;
+    /** Connects bots through this transport instead of sockets if set. */
+    private LoopbackTransport loopback;
+    /** Registers all packets on the kryo instance of each bot, in the same order as the server. */
+    private Consumer<Kryo> registration = kryo -> {};
+
+    /* -- Load -- */
+    private int bots = 100;
+    /** Time over which the bots are connected one after another. */
+    private float rampUpSeconds = 5;
+    private float durationSeconds = 30;
+    /** Packets of the {@link #mix} sent per second by each bot. */
+    private float packetsPerSecond = 20;
+    /** Round-trip measurements per second by each bot. */
+    private float pingsPerSecond = 2;
+    private PacketMix mix = new PacketMix();
+    private int maxPacketsPerRead = 100;
+    /** Amount of threads driving the bots. */
+    private int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private long seed = 42;
+
+    /* -- Reporting -- */
+    /** The server under test if it runs in the same JVM, used to report its tick statistics. */
+    private GameServer server;
+
+}
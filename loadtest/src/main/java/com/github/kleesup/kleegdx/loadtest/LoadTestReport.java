@@ -0,0 +1,93 @@
+package com.github.kleesup.kleegdx.loadtest;
+
+import com.github.kleesup.kleegdx.core.net.GameServer;
+import com.github.kleesup.kleegdx.core.net.TickStatistics;
+import com.github.kleesup.kleegdx.core.util.TimeHistogram;
+import lombok.Getter;
+
+import java.util.Locale;
+
+/**
+ * The results of a {@link LoadTest} run. Server values are only available if the server under test was set in the
+ * {@link LoadTestConfig}.
+ */
+@Getter
+public class LoadTestReport {
+
+    private static final double NANOS_TO_MILLIS = 1d / 1_000_000d;
+
+    private final int connectedBots;
+    private final int failedBots;
+    private final int disconnectedBots;
+    private final double seconds;
+    private final long sentPackets;
+    private final long sentPings;
+    private final long receivedPongs;
+    private final TimeHistogram roundTrips;
+
+    /* -- Server -- */
+    private final boolean hasServerStatistics;
+    private long tickCount, tickP50, tickP99, tickMax, tickOverruns, skippedTicks, drainedPackets;
+    private double tickMean;
+
+    LoadTestReport(int connectedBots, int failedBots, int disconnectedBots, double seconds, long sentPackets,
+                   long sentPings, long receivedPongs, TimeHistogram roundTrips, GameServer server){
+        this.connectedBots = connectedBots;
+        this.failedBots = failedBots;
+        this.disconnectedBots = disconnectedBots;
+        this.seconds = seconds;
+        this.sentPackets = sentPackets;
+        this.sentPings = sentPings;
+        this.receivedPongs = receivedPongs;
+        this.roundTrips = roundTrips;
+        this.hasServerStatistics = server != null;
+        if(server == null)return;
+        TickStatistics statistics = server.getTickStatistics();
+        this.tickCount = statistics.getTickCount();
+        this.tickP50 = statistics.getTickP50();
+        this.tickP99 = statistics.getTickP99();
+        this.tickMax = statistics.getTickMax();
+        this.tickMean = statistics.getTickMean();
+        this.tickOverruns = statistics.getOverrunTicks();
+        this.skippedTicks = server.getSkippedTicks();
+        this.drainedPackets = statistics.getTotalPackets();
+    }
+
+    /**
+     * @return The amount of sent packets per second, excluding pings.
+     */
+    public double getThroughput(){
+        return seconds > 0 ? sentPackets / seconds : 0;
+    }
+
+    /**
+     * @param percentile The percentile between {@code 0} and {@code 1}.
+     * @return The round-trip time at the percentile in milliseconds.
+     */
+    public double getRoundTripMillis(double percentile){
+        return roundTrips.getPercentile(percentile) * NANOS_TO_MILLIS;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format(Locale.ROOT, "Bots: %d connected, %d failed, %d disconnected%n",
+                connectedBots, failedBots, disconnectedBots));
+        builder.append(String.format(Locale.ROOT, "Duration: %.1fs%n", seconds));
+        builder.append(String.format(Locale.ROOT, "Sent: %d packets (%.1f/s), %d pings, %d pongs received%n",
+                sentPackets, getThroughput(), sentPings, receivedPongs));
+        builder.append(String.format(Locale.ROOT, "RTT: p50 %.2fms, p90 %.2fms, p99 %.2fms, max %.2fms%n",
+                getRoundTripMillis(0.5), getRoundTripMillis(0.9), getRoundTripMillis(0.99),
+                roundTrips.getMax() * NANOS_TO_MILLIS));
+        if(hasServerStatistics){
+            builder.append(String.format(Locale.ROOT,
+                    "Server ticks: %d, p50 %.2fms, p99 %.2fms, max %.2fms, mean %.2fms, %d overruns, %d skipped%n",
+                    tickCount, tickP50 * NANOS_TO_MILLIS, tickP99 * NANOS_TO_MILLIS, tickMax * NANOS_TO_MILLIS,
+                    tickMean * NANOS_TO_MILLIS, tickOverruns, skippedTicks));
+            builder.append(String.format(Locale.ROOT, "Server drained: %d packets (%.1f/s)%n", drainedPackets,
+                    seconds > 0 ? drainedPackets / seconds : 0));
+        }
+        return builder.toString();
+    }
+
+}
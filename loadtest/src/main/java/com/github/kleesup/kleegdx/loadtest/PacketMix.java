@@ -0,0 +1,71 @@
+package com.github.kleesup.kleegdx.loadtest;
+
+import com.github.kleesup.kleegdx.core.util.Verify;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * A weighted set of packets a bot sends. Each time a bot sends a packet, one entry is chosen randomly according to its
+ * weight and its factory creates the packet.
+ */
+public class PacketMix {
+
+    /** A packet factory of the mix. */
+    public static final class Entry {
+        private final int weight;
+        private final Supplier<?> factory;
+        private final boolean udp;
+        private Entry(int weight, Supplier<?> factory, boolean udp){
+            this.weight = weight;
+            this.factory = factory;
+            this.udp = udp;
+        }
+        public Object create(){
+            return factory.get();
+        }
+        public boolean isUdp(){
+            return udp;
+        }
+    }
+
+    private final ArrayList<Entry> entries = new ArrayList<>();
+    private int totalWeight;
+
+    /**
+     * Adds a packet to the mix.
+     * @param weight The relative frequency of the packet, must be greater than {@code 0}.
+     * @param factory Creates the packet to send. Called on the thread of the sending bot.
+     * @param udp Whether to send the packet via UDP.
+     * @return This mix for chaining.
+     */
+    public PacketMix add(int weight, Supplier<?> factory, boolean udp){
+        Verify.checkArg(weight <= 0, "Weight must be greater than 0!");
+        Verify.nonNullArg(factory, "Factory cannot be null!");
+        entries.add(new Entry(weight, factory, udp));
+        totalWeight += weight;
+        return this;
+    }
+
+    /**
+     * Chooses a random entry according to the weights.
+     * @param random The random to use.
+     * @return The chosen entry or {@code null} if the mix is empty.
+     */
+    public Entry next(Random random){
+        if(entries.isEmpty())return null;
+        int roll = random.nextInt(totalWeight);
+        for(int i = 0; i < entries.size(); i++){
+            Entry entry = entries.get(i);
+            roll -= entry.weight;
+            if(roll < 0)return entry;
+        }
+        return entries.get(entries.size() - 1);
+    }
+
+    public boolean isEmpty(){
+        return entries.isEmpty();
+    }
+
+}
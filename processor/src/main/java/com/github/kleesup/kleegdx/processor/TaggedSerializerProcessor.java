@@ -0,0 +1,358 @@
+package com.github.kleesup.kleegdx.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates a {@code BaseTaggedSerializer} for every class annotated with {@code TaggedSerializable}. The generated
+ * serializer registers one typed supplier per field which reads and writes the field directly (or via its getter and
+ * setter if it is not accessible), so neither reflection nor boxing of primitives is needed at runtime.
+ * <p>
+ * Fields declared by superclasses are serialized as well, starting with the topmost superclass. A field the generated
+ * serializer cannot access (private fields, or package-private and protected fields of a superclass in another
+ * package) needs an accessible getter and setter. Accessors generated by Lombok are detected through {@code @Getter},
+ * {@code @Setter} and {@code @Data} on the field or its class, so the order in which both processors run does not
+ * matter.
+ * </p>
+ * <p>
+ * The annotations are referenced by name, so this processor does not depend on the core module.
+ * </p>
+ */
+@SupportedAnnotationTypes(TaggedSerializerProcessor.TAGGED_SERIALIZABLE)
+public class TaggedSerializerProcessor extends AbstractProcessor {
+
+    static final String TAGGED_SERIALIZABLE = "com.github.kleesup.kleegdx.core.serialize.TaggedSerializable";
+    static final String TAG = "com.github.kleesup.kleegdx.core.serialize.Tag";
+    static final String BASE_SERIALIZER = "com.github.kleesup.kleegdx.core.serialize.BaseTaggedSerializer";
+    static final String SUFFIX = "_TaggedSerializer";
+    static final String LOMBOK_GETTER = "lombok.Getter";
+    static final String LOMBOK_SETTER = "lombok.Setter";
+    static final String LOMBOK_DATA = "lombok.Data";
+
+    /** A serialized field and how it is accessed. */
+    private static final class FieldInfo {
+        private String tag;
+        private String supplier;
+        private String type;
+        private String getter;
+        private String setter;
+        private boolean object;
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement annotation = processingEnv.getElementUtils().getTypeElement(TAGGED_SERIALIZABLE);
+        if(annotation == null)return false;
+        for(Element element : roundEnv.getElementsAnnotatedWith(annotation)){
+            if(element.getKind() != ElementKind.CLASS){
+                error(element, "@TaggedSerializable can only be used on classes!");
+                continue;
+            }
+            TypeElement type = (TypeElement) element;
+            if(!checkClass(type))continue;
+            List<FieldInfo> fields = collectFields(type);
+            if(fields == null)continue;
+            try {
+                write(type, fields, getVersion(type));
+            } catch (IOException e) {
+                error(type, "Could not write serializer: "+e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    /* -- Validation -- */
+
+    private boolean checkClass(TypeElement type){
+        Set<Modifier> modifiers = type.getModifiers();
+        if(modifiers.contains(Modifier.ABSTRACT)){
+            error(type, "@TaggedSerializable classes cannot be abstract!");
+            return false;
+        }
+        if(modifiers.contains(Modifier.PRIVATE)){
+            error(type, "@TaggedSerializable classes cannot be private!");
+            return false;
+        }
+        if(type.getNestingKind() == NestingKind.MEMBER && !modifiers.contains(Modifier.STATIC)){
+            error(type, "Nested @TaggedSerializable classes must be static!");
+            return false;
+        }
+        if(!type.getTypeParameters().isEmpty()){
+            error(type, "@TaggedSerializable classes cannot be generic!");
+            return false;
+        }
+        for(ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())){
+            if(constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE))
+                return true;
+        }
+        error(type, "@TaggedSerializable classes need a non-private no-arg constructor!");
+        return false;
+    }
+
+    private List<FieldInfo> collectFields(TypeElement type){
+        List<FieldInfo> fields = new ArrayList<>();
+        Set<String> tags = new HashSet<>();
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+        List<ExecutableElement> methods =
+                ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type));
+        boolean valid = true;
+        for(TypeElement declaring : getHierarchy(type)){
+            boolean samePackage = processingEnv.getElementUtils().getPackageOf(declaring).equals(pkg);
+            for(VariableElement field : ElementFilter.fieldsIn(declaring.getEnclosedElements())){
+                Set<Modifier> modifiers = field.getModifiers();
+                if(modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT))continue;
+                FieldInfo info = new FieldInfo();
+                String name = field.getSimpleName().toString();
+                info.tag = getTag(field, name);
+                if(!tags.add(info.tag)){
+                    error(field, "Tag '"+info.tag+"' is used twice!");
+                    valid = false;
+                    continue;
+                }
+                TypeMirror fieldType = field.asType();
+                if(fieldType.getKind() == TypeKind.TYPEVAR){
+                    error(field, "Serialized fields cannot have a type variable as type, mark it transient to " +
+                            "skip it!");
+                    valid = false;
+                    continue;
+                }
+                info.type = processingEnv.getTypeUtils().erasure(fieldType).toString();
+                info.supplier = supplierOf(fieldType);
+                info.object = info.supplier.equals("VarSupplierObject");
+                if(modifiers.contains(Modifier.FINAL)){
+                    error(field, "Serialized fields cannot be final, mark it transient to skip it!");
+                    valid = false;
+                    continue;
+                }
+                if(isAccessible(modifiers, samePackage)){
+                    info.getter = "instance."+name;
+                    info.setter = "instance."+name+" = %s";
+                    fields.add(info);
+                    continue;
+                }
+                boolean bool = fieldType.getKind() == TypeKind.BOOLEAN;
+                String getter = findGetter(methods, pkg, field, declaring, name, bool, samePackage);
+                String setter = findSetter(methods, pkg, field, declaring, name, bool, samePackage);
+                if(getter == null || setter == null){
+                    error(field, "Field '"+name+"' is not accessible by the generated serializer and needs an " +
+                            "accessible getter and setter, make it package-private or mark it transient!");
+                    valid = false;
+                    continue;
+                }
+                info.getter = "instance."+getter+"()";
+                info.setter = "instance."+setter+"(%s)";
+                fields.add(info);
+            }
+        }
+        return valid ? fields : null;
+    }
+
+    /**
+     * @return The type and all its superclasses except {@link Object}, starting with the topmost superclass.
+     */
+    private static List<TypeElement> getHierarchy(TypeElement type){
+        List<TypeElement> hierarchy = new ArrayList<>();
+        TypeElement current = type;
+        while (current != null && !current.getQualifiedName().contentEquals("java.lang.Object")){
+            hierarchy.add(0, current);
+            TypeMirror superclass = current.getSuperclass();
+            current = superclass.getKind() == TypeKind.DECLARED ?
+                    (TypeElement) ((DeclaredType) superclass).asElement() : null;
+        }
+        return hierarchy;
+    }
+
+    private static boolean isAccessible(Set<Modifier> modifiers, boolean samePackage){
+        if(modifiers.contains(Modifier.PUBLIC))return true;
+        return samePackage && !modifiers.contains(Modifier.PRIVATE);
+    }
+
+    private String findGetter(List<ExecutableElement> methods, PackageElement pkg, VariableElement field,
+                              TypeElement declaring, String name, boolean bool, boolean samePackage){
+        String capitalized = capitalize(name);
+        if(findMethod(methods, pkg, "get"+capitalized, 0))return "get"+capitalized;
+        if(bool && findMethod(methods, pkg, "is"+capitalized, 0))return "is"+capitalized;
+        if(!hasLombokAccessor(field, declaring, LOMBOK_GETTER, samePackage))return null;
+        if(!bool)return "get"+capitalized;
+        return isPrefixed(name) ? name : "is"+capitalized; //lombok keeps the prefix of boolean fields like isAlive
+    }
+
+    private String findSetter(List<ExecutableElement> methods, PackageElement pkg, VariableElement field,
+                              TypeElement declaring, String name, boolean bool, boolean samePackage){
+        String capitalized = capitalize(name);
+        if(findMethod(methods, pkg, "set"+capitalized, 1))return "set"+capitalized;
+        if(!hasLombokAccessor(field, declaring, LOMBOK_SETTER, samePackage))return null;
+        return bool && isPrefixed(name) ? "set"+name.substring(2) : "set"+capitalized;
+    }
+
+    private boolean findMethod(List<ExecutableElement> methods, PackageElement pkg, String name, int parameters){
+        for(ExecutableElement method : methods){
+            if(method.getModifiers().contains(Modifier.STATIC))continue;
+            if(!method.getSimpleName().contentEquals(name) || method.getParameters().size() != parameters)continue;
+            boolean samePackage = processingEnv.getElementUtils().getPackageOf(method).equals(pkg);
+            if(isAccessible(method.getModifiers(), samePackage))return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether Lombok generates an accessible accessor for a field. An annotation on the field takes precedence
+     * over one on its class.
+     * @param annotation {@link #LOMBOK_GETTER} or {@link #LOMBOK_SETTER}.
+     */
+    private static boolean hasLombokAccessor(VariableElement field, TypeElement declaring, String annotation,
+                                             boolean samePackage){
+        String level;
+        if(hasAnnotation(field, annotation))level = getAccessLevel(field, annotation);
+        else if(hasAnnotation(declaring, annotation))level = getAccessLevel(declaring, annotation);
+        else if(hasAnnotation(declaring, LOMBOK_DATA))level = "PUBLIC";
+        else return false;
+        switch (level){
+            case "PUBLIC": return true;
+            case "PRIVATE":
+            case "NONE": return false;
+            default: return samePackage; //PROTECTED, PACKAGE and MODULE
+        }
+    }
+
+    private static String getAccessLevel(Element element, String annotation){
+        Object level = getAnnotationValue(element, annotation, "value");
+        return level != null ? level.toString() : "PUBLIC";
+    }
+
+    private static boolean hasAnnotation(Element element, String annotation){
+        for(AnnotationMirror mirror : element.getAnnotationMirrors())
+            if(mirror.getAnnotationType().toString().equals(annotation))return true;
+        return false;
+    }
+
+    private static String capitalize(String name){
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private static boolean isPrefixed(String name){
+        return name.length() > 2 && name.startsWith("is") && Character.isUpperCase(name.charAt(2));
+    }
+
+    private String supplierOf(TypeMirror type){
+        switch (type.getKind()){
+            case BOOLEAN: return "VarSupplierBool";
+            case BYTE: return "VarSupplierByte";
+            case SHORT: return "VarSupplierShort";
+            case CHAR: return "VarSupplierChar";
+            case INT: return "VarSupplierInt";
+            case LONG: return "VarSupplierLong";
+            case FLOAT: return "VarSupplierFloat";
+            case DOUBLE: return "VarSupplierDouble";
+            default:
+                return type.toString().equals("java.lang.String") ? "VarSupplierString" : "VarSupplierObject";
+        }
+    }
+
+    private static String getTag(VariableElement field, String name){
+        String tag = (String) getAnnotationValue(field, TAG, "value");
+        return tag != null && !tag.isEmpty() ? tag : name;
+    }
+
+    private static int getVersion(TypeElement type){
+        Object version = getAnnotationValue(type, TAGGED_SERIALIZABLE, "version");
+        return version != null ? (Integer) version : 0;
+    }
+
+    private static Object getAnnotationValue(Element element, String annotation, String key){
+        for(AnnotationMirror mirror : element.getAnnotationMirrors()){
+            if(!mirror.getAnnotationType().toString().equals(annotation))continue;
+            for(Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry :
+                    mirror.getElementValues().entrySet()){
+                if(entry.getKey().getSimpleName().contentEquals(key))return entry.getValue().getValue();
+            }
+        }
+        return null;
+    }
+
+    /* -- Generation -- */
+
+    private void write(TypeElement type, List<FieldInfo> fields, int version) throws IOException {
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+        String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+        String typeName = type.getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        String simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1))
+                .replace('$', '_') + SUFFIX;
+        String qualifiedName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, type);
+        try (Writer writer = file.openWriter()) {
+            StringBuilder out = new StringBuilder();
+            if(!packageName.isEmpty())out.append("package ").append(packageName).append(";\n\n");
+            out.append("/**\n * Generated tagged serializer of {@link ").append(typeName).append("}.\n */\n");
+            out.append("public final class ").append(simpleName).append(" extends ").append(BASE_SERIALIZER)
+                    .append("<").append(typeName).append("> {\n\n");
+            out.append("    @Override\n    protected ").append(typeName).append(" buildNewInstance() {\n")
+                    .append("        return new ").append(typeName).append("();\n    }\n\n");
+            out.append("    @Override\n    protected int getSchemaVersion() {\n        return ").append(version)
+                    .append(";\n    }\n\n");
+            out.append("    @Override\n    protected void init() {\n");
+            for(FieldInfo field : fields) writeField(out, typeName, field);
+            out.append("    }\n\n}\n");
+            writer.write(out.toString());
+        }
+    }
+
+    private static void writeField(StringBuilder out, String typeName, FieldInfo field){
+        String valueType = field.object ? "T" : field.type;
+        String setValue = field.object ? "("+field.type+") value" : "value";
+        String returnType = field.object ? "Object" : field.type;
+        out.append("        register(\"").append(escape(field.tag)).append("\", new ").append(field.supplier)
+                .append("() {\n");
+        out.append("            @Override\n");
+        if(field.object)out.append("            @SuppressWarnings(\"unchecked\")\n");
+        out.append("            public ").append(field.object ? "<T> " : "").append("void set(").append(typeName)
+                .append(" instance, ").append(valueType).append(" value) {\n");
+        out.append("                ").append(String.format(field.setter, setValue)).append(";\n")
+                .append("            }\n");
+        out.append("            @Override\n            public ").append(returnType).append(" get(").append(typeName)
+                .append(" instance) {\n                return ").append(field.getter).append(";\n            }\n");
+        out.append("        });\n");
+    }
+
+    private static String escape(String tag){
+        return tag.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private void error(Element element, String message){
+        Messager messager = processingEnv.getMessager();
+        messager.printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+}